@@ -0,0 +1,155 @@
+package com.revpay;
+
+import com.revpay.dao.*;
+import com.revpay.services.AccountLocks;
+import com.revpay.services.AuthService;
+import com.revpay.services.BulkPayoutService;
+import com.revpay.services.EncryptionService;
+import com.revpay.services.ExportService;
+import com.revpay.services.NotificationService;
+import com.revpay.services.PaymentService;
+import com.revpay.utils.AppConfig;
+
+/**
+ * Shared instances of the configuration, DAOs and services.
+ *
+ * Everything is created on first use and reused afterwards, so the welcome
+ * menu doesn't wait for services that are only needed after login, and all
+ * services share one set of DAOs.
+ */
+public final class AppContext {
+    private static UserDAO userDAO;
+    private static TransactionDAO transactionDAO;
+    private static NotificationDAO notificationDAO;
+    private static PaymentMethodDAO paymentMethodDAO;
+    private static MoneyRequestDAO moneyRequestDAO;
+    private static InvoiceDAO invoiceDAO;
+    private static LoanDAO loanDAO;
+    private static LedgerDAO ledgerDAO;
+    private static IdempotencyDAO idempotencyDAO;
+    private static AccountLocks accountLocks;
+    private static EncryptionService encryptionService;
+    private static AuthService authService;
+    private static PaymentService paymentService;
+    private static NotificationService notificationService;
+    private static BulkPayoutService bulkPayoutService;
+    private static ExportService exportService;
+
+    private AppContext() {}
+
+    public static AppConfig config() {
+        return AppConfig.get();
+    }
+
+    public static synchronized UserDAO userDAO() {
+        if (userDAO == null) {
+            userDAO = new UserDAO();
+        }
+        return userDAO;
+    }
+
+    public static synchronized TransactionDAO transactionDAO() {
+        if (transactionDAO == null) {
+            transactionDAO = new TransactionDAO();
+        }
+        return transactionDAO;
+    }
+
+    public static synchronized NotificationDAO notificationDAO() {
+        if (notificationDAO == null) {
+            notificationDAO = new NotificationDAO();
+        }
+        return notificationDAO;
+    }
+
+    public static synchronized PaymentMethodDAO paymentMethodDAO() {
+        if (paymentMethodDAO == null) {
+            paymentMethodDAO = new PaymentMethodDAO(encryptionService());
+        }
+        return paymentMethodDAO;
+    }
+
+    public static synchronized MoneyRequestDAO moneyRequestDAO() {
+        if (moneyRequestDAO == null) {
+            moneyRequestDAO = new MoneyRequestDAO();
+        }
+        return moneyRequestDAO;
+    }
+
+    public static synchronized InvoiceDAO invoiceDAO() {
+        if (invoiceDAO == null) {
+            invoiceDAO = new InvoiceDAO();
+        }
+        return invoiceDAO;
+    }
+
+    public static synchronized LoanDAO loanDAO() {
+        if (loanDAO == null) {
+            loanDAO = new LoanDAO();
+        }
+        return loanDAO;
+    }
+
+    public static synchronized LedgerDAO ledgerDAO() {
+        if (ledgerDAO == null) {
+            ledgerDAO = new LedgerDAO();
+        }
+        return ledgerDAO;
+    }
+
+    public static synchronized IdempotencyDAO idempotencyDAO() {
+        if (idempotencyDAO == null) {
+            idempotencyDAO = new IdempotencyDAO(transactionDAO());
+        }
+        return idempotencyDAO;
+    }
+
+    public static synchronized AccountLocks accountLocks() {
+        if (accountLocks == null) {
+            accountLocks = new AccountLocks();
+        }
+        return accountLocks;
+    }
+
+    public static synchronized EncryptionService encryptionService() {
+        if (encryptionService == null) {
+            encryptionService = new EncryptionService();
+        }
+        return encryptionService;
+    }
+
+    public static synchronized AuthService authService() {
+        if (authService == null) {
+            authService = new AuthService();
+        }
+        return authService;
+    }
+
+    public static synchronized PaymentService paymentService() {
+        if (paymentService == null) {
+            paymentService = new PaymentService();
+        }
+        return paymentService;
+    }
+
+    public static synchronized NotificationService notificationService() {
+        if (notificationService == null) {
+            notificationService = new NotificationService();
+        }
+        return notificationService;
+    }
+
+    public static synchronized BulkPayoutService bulkPayoutService() {
+        if (bulkPayoutService == null) {
+            bulkPayoutService = new BulkPayoutService();
+        }
+        return bulkPayoutService;
+    }
+
+    public static synchronized ExportService exportService() {
+        if (exportService == null) {
+            exportService = new ExportService();
+        }
+        return exportService;
+    }
+}
@@ -1,28 +1,42 @@
 package com.revpay;
 
 import com.revpay.dao.DatabaseConnection;
+import com.revpay.dao.IdempotencyDAO;
+import com.revpay.dao.LedgerDAO;
+import com.revpay.dao.QueryStats;
+import com.revpay.dao.TransactionArchiveDAO;
+import com.revpay.engine.TransferEngine;
+import com.revpay.models.Money;
 import com.revpay.models.User;
-import com.revpay.services.AuthService;
-import com.revpay.services.PaymentService;
-import com.revpay.services.NotificationService;
+import com.revpay.services.TransferPipeline;
+import com.revpay.utils.AppConfig;
 import com.revpay.utils.LoggerUtil;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.util.Scanner;
+import java.util.UUID;
 
 public class Main {
     private static Scanner scanner = new Scanner(System.in);
-    private static AuthService authService = new AuthService();
-    private static PaymentService paymentService = new PaymentService();
-    private static NotificationService notificationService = new NotificationService();
     private static User currentUser = null;
 //    for logging
     private static final Logger logger = LoggerUtil.getLogger(Main.class);
 
     public static void main(String[] args) {
+        long startNanos = System.nanoTime();
+        // --startup-timing: report how long it takes to reach the first menu, then exit
+        boolean startupTiming = args.length > 0 && "--startup-timing".equals(args[0]);
+        // --rebuild-rollups: regenerate the daily transaction rollups from raw history, then exit
+        boolean rebuildRollups = args.length > 0 && "--rebuild-rollups".equals(args[0]);
         try {
+            AppConfig.get();
+            long configNanos = System.nanoTime();
+
             // Initialize database connection
             DatabaseConnection.initialize();
+            long databaseNanos = System.nanoTime();
 
             logger.info("Starting RevPay application...");
 
@@ -30,6 +44,21 @@ public class Main {
             System.out.println("      WELCOME TO REVPAY FINANCIAL");
             System.out.println("=========================================\n");
 
+            if (startupTiming) {
+                reportStartupTime(startNanos, configNanos, databaseNanos);
+                return;
+            }
+            if (rebuildRollups) {
+                long rows = AppContext.transactionDAO().getRollupDAO().rebuild();
+                System.out.println("Rebuilt " + rows + " rollup rows.");
+                return;
+            }
+
+            LedgerDAO.startCompaction();
+            IdempotencyDAO.startPurge(AppContext.idempotencyDAO());
+            TransactionArchiveDAO.startArchiver(AppContext.transactionDAO().getArchiveDAO());
+            TransferEngine.start();
+
             boolean running = true;
             while (running) {
                 if (currentUser == null) {
@@ -42,11 +71,27 @@ public class Main {
         } catch (Exception e) {
             logger.error("Application failed to start", e);
         } finally {
+            TransferEngine.stop();
+            LedgerDAO.stopCompaction();
+            IdempotencyDAO.stopPurge();
+            TransactionArchiveDAO.stopArchiver();
             DatabaseConnection.closeConnection();
             scanner.close();
         }
     }
 
+    private static void reportStartupTime(long startNanos, long configNanos, long databaseNanos) {
+        long now = System.nanoTime();
+        long jvmUptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.println("--- Startup Timing ---");
+        System.out.println("Load configuration:  " + (configNanos - startNanos) / 1_000_000 + " ms");
+        System.out.println("Database pool:       " + (databaseNanos - configNanos) / 1_000_000 + " ms");
+        System.out.println("main() to menu:      " + (now - startNanos) / 1_000_000 + " ms");
+        System.out.println("JVM start to menu:   " + jvmUptimeMs + " ms");
+        logger.info("Time to first menu: {} ms ({} ms since JVM start)",
+                (now - startNanos) / 1_000_000, jvmUptimeMs);
+    }
+
     private static void showWelcomeMenu() {
         System.out.println("\n--- Welcome Menu ---");
         System.out.println("1. Login");
@@ -54,6 +99,9 @@ public class Main {
         System.out.println("3. Register Business Account");
         System.out.println("4. Forgot Password");
         System.out.println("5. Exit");
+        if (QueryStats.isEnabled()) {
+            System.out.println("6. Database Statistics");
+        }
         System.out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
@@ -73,20 +121,50 @@ public class Main {
                 forgotPassword();
                 break;
             case 5:
+                if (QueryStats.isEnabled()) {
+                    logger.info("Query statistics at exit:\n{}", QueryStats.report(topStatements()));
+                }
                 System.out.println("Thank you for using RevPay. Goodbye!");
                 System.exit(0);
                 break;
+            case 6:
+                if (QueryStats.isEnabled()) {
+                    showDatabaseStatistics();
+                } else {
+                    System.out.println("Invalid option. Please try again.");
+                }
+                break;
             default:
                 System.out.println("Invalid option. Please try again.");
         }
     }
 
+    private static int topStatements() {
+        return AppConfig.get().getStatsTopN();
+    }
+
+    private static void showDatabaseStatistics() {
+        System.out.println("\n--- Database Statistics ---");
+        System.out.println(DatabaseConnection.getPoolStats());
+        System.out.println(AppContext.accountLocks());
+        System.out.println(TransferPipeline.report());
+        System.out.println(AppContext.transactionDAO().getSearchIndex());
+        System.out.println(AppContext.transactionDAO().getArchiveDAO());
+        System.out.println("\nTop statements by total time:");
+        System.out.print(QueryStats.report(topStatements()));
+    }
+
     private static void showMainMenu() {
         if (currentUser == null) return;
 
         System.out.println("\n=========================================");
         System.out.println("   Welcome, " + currentUser.getFullName());
-        System.out.println("   Balance: $" + paymentService.getWalletBalance(currentUser.getId()));
+        try {
+            Money balance = AppContext.paymentService().getWalletBalance(currentUser.getId());
+            System.out.println("   Balance: " + balance.format());
+        } catch (SQLException e) {
+            System.out.println("   Balance: unavailable (" + e.getMessage() + ")");
+        }
         System.out.println("=========================================\n");
 
         System.out.println("--- Main Menu ---");
@@ -176,7 +254,9 @@ public class Main {
         System.out.println("4. View Loan Applications");
         System.out.println("5. Business Analytics");
         System.out.println("6. Accept Payments");
-        System.out.println("7. Back to Main Menu");
+        System.out.println("7. Bulk Payout");
+        System.out.println("8. Export History");
+        System.out.println("9. Back to Main Menu");
         System.out.print("Choose an option: ");
 
         int choice = scanner.nextInt();
@@ -202,6 +282,12 @@ public class Main {
                 acceptPayments();
                 break;
             case 7:
+                bulkPayout();
+                break;
+            case 8:
+                exportHistory();
+                break;
+            case 9:
                 return;
             default:
                 System.out.println("Invalid option.");
@@ -217,11 +303,11 @@ public class Main {
         String password = scanner.nextLine();
 
         try {
-            currentUser = authService.login(identifier, password);
+            currentUser = AppContext.authService().login(identifier, password);
             if (currentUser != null) {
                 System.out.println("Login successful!");
                 // Show unread notifications count
-                int unreadCount = notificationService.getUnreadNotificationsCount(currentUser.getId());
+                int unreadCount = AppContext.notificationService().getUnreadNotificationsCount(currentUser.getId());
                 if (unreadCount > 0) {
                     System.out.println("You have " + unreadCount + " unread notifications.");
                 }
@@ -255,7 +341,7 @@ public class Main {
         String a2 = scanner.nextLine();
 
         try {
-            boolean success = authService.registerPersonalUser(
+            boolean success = AppContext.authService().registerPersonalUser(
                     fullName, email, phone, username, password, q1, a1, q2, a2);
             if (success) {
                 System.out.println("Registration successful! Please login.");
@@ -289,7 +375,7 @@ public class Main {
         String address = scanner.nextLine();
 
         try {
-            boolean success = authService.registerBusinessUser(
+            boolean success = AppContext.authService().registerBusinessUser(
                     fullName, email, phone, username, password,
                     businessName, businessType, taxId, address);
             if (success) {
@@ -308,7 +394,7 @@ public class Main {
         String identifier = scanner.nextLine();
 
         try {
-            boolean success = authService.initiatePasswordReset(identifier);
+            boolean success = AppContext.authService().initiatePasswordReset(identifier);
             if (success) {
                 System.out.println("Password reset instructions sent to your email/phone.");
             } else {
@@ -320,7 +406,7 @@ public class Main {
     }
 
     private static void logout() {
-        authService.logout(currentUser);
+        AppContext.authService().logout(currentUser);
         currentUser = null;
         System.out.println("Logged out successfully.");
     }
@@ -331,14 +417,17 @@ public class Main {
         System.out.print("Enter recipient (username/email/phone): ");
         String recipientIdentifier = scanner.nextLine();
         System.out.print("Amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // Consume newline
+        Money amount = readAmount();
         System.out.print("Note (optional): ");
         String note = scanner.nextLine();
 
+        String idempotencyKey = newIdempotencyKey();
         try {
-            boolean success = paymentService.sendMoney(
-                    currentUser, recipientIdentifier, amount, note);
+            boolean success;
+            do {
+                success = AppContext.paymentService().sendMoney(
+                        currentUser, recipientIdentifier, amount, note, idempotencyKey);
+            } while (!success && retrySameRequest());
             if (success) {
                 System.out.println("Money sent successfully!");
             } else {
@@ -354,13 +443,12 @@ public class Main {
         System.out.print("Enter requester (username/email/phone): ");
         String requesterIdentifier = scanner.nextLine();
         System.out.print("Amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // Consume newline
+        Money amount = readAmount();
         System.out.print("Note (optional): ");
         String note = scanner.nextLine();
 
         try {
-            boolean success = paymentService.requestMoney(
+            boolean success = AppContext.paymentService().requestMoney(
                     currentUser, requesterIdentifier, amount, note);
             if (success) {
                 System.out.println("Money request sent!");
@@ -375,7 +463,7 @@ public class Main {
     private static void viewTransactions() {
         System.out.println("\n--- Transaction History ---");
         try {
-            paymentService.viewTransactionHistory(currentUser.getId());
+            AppContext.paymentService().viewTransactionHistory(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -435,7 +523,7 @@ public class Main {
         String cardType = scanner.nextLine();
 
         try {
-            boolean success = paymentService.addPaymentMethod(
+            boolean success = AppContext.paymentService().addPaymentMethod(
                     currentUser.getId(), cardNumber, holderName,
                     expiryMonth, expiryYear, cvv, cardType);
             if (success) {
@@ -450,7 +538,7 @@ public class Main {
 
     private static void viewPaymentMethods() {
         try {
-            paymentService.viewPaymentMethods(currentUser.getId());
+            AppContext.paymentService().viewPaymentMethods(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -462,7 +550,7 @@ public class Main {
         scanner.nextLine();
 
         try {
-            boolean success = paymentService.setDefaultPaymentMethod(
+            boolean success = AppContext.paymentService().setDefaultPaymentMethod(
                     currentUser.getId(), paymentMethodId);
             if (success) {
                 System.out.println("Default payment method updated!");
@@ -480,7 +568,7 @@ public class Main {
         scanner.nextLine();
 
         try {
-            boolean success = paymentService.removePaymentMethod(
+            boolean success = AppContext.paymentService().removePaymentMethod(
                     currentUser.getId(), paymentMethodId);
             if (success) {
                 System.out.println("Payment method removed!");
@@ -523,15 +611,18 @@ public class Main {
 
     private static void addMoneyToWallet() {
         System.out.print("Amount to add: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine();
+        Money amount = readAmount();
         System.out.print("Payment Method ID: ");
         int paymentMethodId = scanner.nextInt();
         scanner.nextLine();
 
+        String idempotencyKey = newIdempotencyKey();
         try {
-            boolean success = paymentService.addMoneyToWallet(
-                    currentUser.getId(), amount, paymentMethodId);
+            boolean success;
+            do {
+                success = AppContext.paymentService().addMoneyToWallet(
+                        currentUser.getId(), amount, paymentMethodId, idempotencyKey);
+            } while (!success && retrySameRequest());
             if (success) {
                 System.out.println("Money added to wallet!");
             } else {
@@ -544,12 +635,15 @@ public class Main {
 
     private static void withdrawFromWallet() {
         System.out.print("Amount to withdraw: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine();
+        Money amount = readAmount();
 
+        String idempotencyKey = newIdempotencyKey();
         try {
-            boolean success = paymentService.withdrawFromWallet(
-                    currentUser.getId(), amount);
+            boolean success;
+            do {
+                success = AppContext.paymentService().withdrawFromWallet(
+                        currentUser.getId(), amount, idempotencyKey);
+            } while (!success && retrySameRequest());
             if (success) {
                 System.out.println("Withdrawal initiated!");
             } else {
@@ -560,15 +654,42 @@ public class Main {
         }
     }
 
+    // Reads an amount such as 12.50 from its own line, asking again until it parses
+    private static Money readAmount() {
+        while (true) {
+            try {
+                return Money.parse(scanner.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.print("Enter an amount with at most two decimals: $");
+            }
+        }
+    }
+
+    // One key per money-moving action; retrying the action reuses it, so the money moves at most once
+    private static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static boolean retrySameRequest() {
+        System.out.print("Try the same request again? (y/n): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
+    }
+
     private static void viewWalletBalance() {
         System.out.println("\n--- Wallet Balance ---");
-        System.out.println("Current Balance: $" + currentUser.getWalletBalance());
+        try {
+            // The session copy misses incoming transfers; the ledger is current
+            currentUser.setBalance(AppContext.ledgerDAO().getBalance(currentUser.getId()));
+            System.out.println("Current Balance: " + currentUser.getBalance().format());
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
     }
 
     private static void viewNotifications() {
         System.out.println("\n--- Notifications ---");
         try {
-            notificationService.viewNotifications(currentUser.getId());
+            AppContext.notificationService().viewNotifications(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -582,15 +703,14 @@ public class Main {
         System.out.print("Customer Name: ");
         String customerName = scanner.nextLine();
         System.out.print("Amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine(); // Consume newline
+        Money amount = readAmount();
         System.out.print("Description: ");
         String description = scanner.nextLine();
         System.out.print("Due Date (YYYY-MM-DD): ");
         String dueDateStr = scanner.nextLine();
 
         try {
-            boolean success = paymentService.createInvoice(
+            boolean success = AppContext.paymentService().createInvoice(
                     currentUser.getId(), customerEmail, customerName,
                     amount, description, dueDateStr);
             if (success) {
@@ -606,7 +726,7 @@ public class Main {
     private static void viewInvoices() {
         System.out.println("\n--- Invoices ---");
         try {
-            paymentService.viewInvoices(currentUser.getId());
+            AppContext.paymentService().viewInvoices(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -624,7 +744,7 @@ public class Main {
         scanner.nextLine();
 
         try {
-            boolean success = paymentService.applyForLoan(
+            boolean success = AppContext.paymentService().applyForLoan(
                     currentUser.getId(), amount, purpose, term);
             if (success) {
                 System.out.println("Loan application submitted!");
@@ -639,7 +759,7 @@ public class Main {
     private static void viewLoanApplications() {
         System.out.println("\n--- Loan Applications ---");
         try {
-            paymentService.viewLoanApplications(currentUser.getId());
+            AppContext.paymentService().viewLoanApplications(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -648,7 +768,7 @@ public class Main {
     private static void viewBusinessAnalytics() {
         System.out.println("\n--- Business Analytics ---");
         try {
-            paymentService.viewBusinessAnalytics(currentUser.getId());
+            AppContext.paymentService().viewBusinessAnalytics(currentUser.getId());
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -659,12 +779,15 @@ public class Main {
         System.out.print("Enter customer identifier: ");
         String customerIdentifier = scanner.nextLine();
         System.out.print("Amount: $");
-        double amount = scanner.nextDouble();
-        scanner.nextLine();
+        Money amount = readAmount();
 
+        String idempotencyKey = newIdempotencyKey();
         try {
-            boolean success = paymentService.acceptPayment(
-                    currentUser.getId(), customerIdentifier, amount);
+            boolean success;
+            do {
+                success = AppContext.paymentService().acceptPayment(
+                        currentUser.getId(), customerIdentifier, amount, idempotencyKey);
+            } while (!success && retrySameRequest());
             if (success) {
                 System.out.println("Payment accepted!");
             } else {
@@ -675,11 +798,61 @@ public class Main {
         }
     }
 
+    private static void bulkPayout() {
+        System.out.println("\n--- Bulk Payout ---");
+        System.out.println("File rows: recipient,amount[,note] (CSV) or one JSON object per line (.jsonl)");
+        System.out.print("Payout file: ");
+        String inputFile = scanner.nextLine().trim();
+        String defaultReport = inputFile + ".report.csv";
+        System.out.print("Report file [" + defaultReport + "]: ");
+        String reportFile = scanner.nextLine().trim();
+        if (reportFile.isEmpty()) {
+            reportFile = defaultReport;
+        }
+
+        try {
+            AppContext.bulkPayoutService().bulkPayout(currentUser, inputFile, reportFile);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void exportHistory() {
+        System.out.println("\n--- Export History ---");
+        System.out.println("1. Transactions");
+        System.out.println("2. Invoices");
+        System.out.print("Choose an option: ");
+        String choice = scanner.nextLine().trim();
+        if (!choice.equals("1") && !choice.equals("2")) {
+            System.out.println("Invalid option.");
+            return;
+        }
+        boolean transactions = choice.equals("1");
+
+        System.out.println("Files ending in .jsonl are written as JSON lines, anything else as CSV; add .gz to compress.");
+        String defaultFile = (transactions ? "transactions-" : "invoices-") + currentUser.getId() + ".csv.gz";
+        System.out.print("Export file [" + defaultFile + "]: ");
+        String file = scanner.nextLine().trim();
+        if (file.isEmpty()) {
+            file = defaultFile;
+        }
+
+        try {
+            if (transactions) {
+                AppContext.exportService().exportTransactions(currentUser.getId(), file);
+            } else {
+                AppContext.exportService().exportInvoices(currentUser.getId(), file);
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
 //    Set/Update Transaction Pin
     public static void setTransactionPin(){
         System.out.print("Enter 6 digit Transaction Pin: ");
         String pin = scanner.nextLine();
 
-        authService.setTransactionPin(currentUser,pin);
+        AppContext.authService().setTransactionPin(currentUser,pin);
     }
 }
\ No newline at end of file
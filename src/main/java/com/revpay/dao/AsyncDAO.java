@@ -0,0 +1,77 @@
+package com.revpay.dao;
+
+import com.revpay.utils.AppConfig;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs DAO calls on virtual threads so screens that need several independent
+ * queries can issue them concurrently and wait for the slowest one instead of
+ * the sum of all of them.
+ *
+ * At most {@code db.pool.max.size} calls run at once, so a wide fan-out queues
+ * here instead of timing out on the connection pool. Each call borrows its own
+ * connection: async calls never join the caller's TransactionTemplate block,
+ * so use them for reads only. Read-your-writes stickiness of the calling
+ * thread is carried over to the task.
+ *
+ * <pre>
+ * CompletableFuture&lt;Money&gt; sent = AsyncDAO.supply(() -&gt; transactionDAO.getTotalSentAmount(id, from, to));
+ * CompletableFuture&lt;Money&gt; paid = AsyncDAO.supply(() -&gt; invoiceDAO.getTotalPaidAmount(id, from, to));
+ * Money total = AsyncDAO.await(sent).plus(AsyncDAO.await(paid));
+ * </pre>
+ */
+public final class AsyncDAO {
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Semaphore permits = new Semaphore(AppConfig.get().getPoolMaxSize(), true);
+
+    private AsyncDAO() {}
+
+    public static <T> CompletableFuture<T> supply(TransactionTemplate.SqlCallable<T> query) {
+        long callerLastWrite = DatabaseConnection.getLastWriteNanos();
+        return CompletableFuture.supplyAsync(() -> {
+            DatabaseConnection.setLastWriteNanos(callerLastWrite);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new SQLException("Interrupted while waiting for a connection", e));
+            }
+            try {
+                return query.call();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * Wait for a future from {@link #supply} and rethrow a failed query as the
+     * original SQLException.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for query result", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+}
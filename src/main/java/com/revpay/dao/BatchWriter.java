@@ -0,0 +1,190 @@
+package com.revpay.dao;
+
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects rows for one INSERT/UPDATE statement and writes them with
+ * addBatch/executeBatch, flushing every {@code batchSize} rows.
+ *
+ * Each flush borrows one connection (or joins the current TransactionTemplate
+ * block), and every row gets an outcome so callers can tell which rows were
+ * written when part of a batch fails.
+ *
+ * Usage:
+ * <pre>
+ * try (BatchWriter&lt;Notification&gt; writer = new BatchWriter&lt;&gt;(sql, binder)) {
+ *     for (Notification n : notifications) writer.add(n);
+ *     BatchWriter.BatchResult&lt;Notification&gt; result = writer.finish();
+ * }
+ * </pre>
+ */
+public class BatchWriter<T> implements AutoCloseable {
+    private static final Logger logger = LoggerUtil.getLogger(BatchWriter.class);
+
+    @FunctionalInterface
+    public interface RowBinder<T> {
+        void bind(PreparedStatement stmt, T row) throws SQLException;
+    }
+
+    private final String sql;
+    private final RowBinder<T> binder;
+    private final int batchSize;
+    private final List<T> pending;
+    private final List<RowOutcome<T>> outcomes = new ArrayList<>();
+
+    public BatchWriter(String sql, RowBinder<T> binder) {
+        this(sql, binder, defaultBatchSize());
+    }
+
+    public BatchWriter(String sql, RowBinder<T> binder, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.sql = sql;
+        this.binder = binder;
+        this.batchSize = batchSize;
+        this.pending = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Batch size configured by {@code notification.batch.size}.
+     */
+    public static int defaultBatchSize() {
+        return AppConfig.get().getBatchSize();
+    }
+
+    public void add(T row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    public void addAll(Iterable<? extends T> rows) throws SQLException {
+        for (T row : rows) {
+            add(row);
+        }
+    }
+
+    /**
+     * Write all buffered rows. A failing batch does not throw: its rows are
+     * recorded as failed and the writer keeps going with the next batch.
+     * Inside a TransactionTemplate block the error is rethrown instead, so the
+     * surrounding transaction rolls back as a whole.
+     */
+    public void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<T> rows = new ArrayList<>(pending);
+        pending.clear();
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (T row : rows) {
+                binder.bind(stmt, row);
+                stmt.addBatch();
+            }
+            recordCounts(rows, stmt.executeBatch(), null);
+        } catch (BatchUpdateException e) {
+            logger.error("Batch write failed for {} rows: {}", rows.size(), e.getMessage());
+            recordCounts(rows, e.getUpdateCounts(), e);
+            if (DatabaseConnection.isInTransaction()) {
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Batch write failed for {} rows: {}", rows.size(), e.getMessage());
+            for (T row : rows) {
+                outcomes.add(new RowOutcome<>(row, Statement.EXECUTE_FAILED, e));
+            }
+            if (DatabaseConnection.isInTransaction()) {
+                throw e;
+            }
+        }
+    }
+
+    private void recordCounts(List<T> rows, int[] counts, SQLException error) {
+        for (int i = 0; i < rows.size(); i++) {
+            // Drivers that stop at the first error report fewer counts than rows
+            int count = counts != null && i < counts.length ? counts[i] : Statement.EXECUTE_FAILED;
+            outcomes.add(new RowOutcome<>(rows.get(i), count,
+                    count == Statement.EXECUTE_FAILED ? error : null));
+        }
+    }
+
+    /**
+     * Flush remaining rows and return the outcome of every row added so far.
+     */
+    public BatchResult<T> finish() throws SQLException {
+        flush();
+        return new BatchResult<>(new ArrayList<>(outcomes));
+    }
+
+    @Override
+    public void close() throws SQLException {
+        flush();
+    }
+
+    public static final class RowOutcome<T> {
+        private final T row;
+        private final int updateCount;
+        private final SQLException error;
+
+        RowOutcome(T row, int updateCount, SQLException error) {
+            this.row = row;
+            this.updateCount = updateCount;
+            this.error = error;
+        }
+
+        public T getRow() { return row; }
+        public int getUpdateCount() { return updateCount; }
+        public SQLException getError() { return error; }
+
+        public boolean isSuccess() {
+            return updateCount >= 0 || updateCount == Statement.SUCCESS_NO_INFO;
+        }
+    }
+
+    public static final class BatchResult<T> {
+        private final List<RowOutcome<T>> outcomes;
+        private final int successCount;
+
+        BatchResult(List<RowOutcome<T>> outcomes) {
+            this.outcomes = Collections.unmodifiableList(outcomes);
+            int ok = 0;
+            for (RowOutcome<T> outcome : outcomes) {
+                if (outcome.isSuccess()) {
+                    ok++;
+                }
+            }
+            this.successCount = ok;
+        }
+
+        public List<RowOutcome<T>> getOutcomes() { return outcomes; }
+        public int getSuccessCount() { return successCount; }
+        public int getFailureCount() { return outcomes.size() - successCount; }
+        public boolean isAllSuccessful() { return successCount == outcomes.size(); }
+
+        public List<T> getFailedRows() {
+            List<T> failed = new ArrayList<>();
+            for (RowOutcome<T> outcome : outcomes) {
+                if (!outcome.isSuccess()) {
+                    failed.add(outcome.getRow());
+                }
+            }
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.revpay.dao;
+
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Connections are handed out as proxies whose close() returns the physical
+ * connection to the pool. At most {@code maxSize} connections are leased at
+ * any time; borrowers beyond that wait up to the connection timeout.
+ */
+public class ConnectionPool {
+    private static final Logger logger = LoggerUtil.getLogger(ConnectionPool.class);
+
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final int validationTimeoutSeconds;
+    private final long leakDetectionThresholdMs;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Boolean> leased = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+    private volatile Runnable writeListener;
+
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private volatile long maxWaitNanos = 0;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+
+    public ConnectionPool(Properties properties) {
+        this("primary", properties);
+    }
+
+    public ConnectionPool(String name, Properties properties) {
+        this.name = name;
+        this.url = properties.getProperty("db.url");
+        this.username = properties.getProperty("db.username");
+        this.password = properties.getProperty("db.password");
+        this.minSize = Integer.parseInt(properties.getProperty("db.pool.min.size", "2"));
+        this.maxSize = Integer.parseInt(properties.getProperty("db.pool.max.size", "10"));
+        this.connectionTimeoutMs = Long.parseLong(properties.getProperty("db.pool.connection.timeout.ms", "30000"));
+        this.idleTimeoutMs = Long.parseLong(properties.getProperty("db.pool.idle.timeout.ms", "600000"));
+        this.maxLifetimeMs = Long.parseLong(properties.getProperty("db.pool.max.lifetime.ms", "1800000"));
+        this.validationTimeoutSeconds = Integer.parseInt(properties.getProperty("db.pool.validation.timeout.seconds", "5"));
+        this.leakDetectionThresholdMs = Long.parseLong(properties.getProperty("db.pool.leak.detection.threshold.ms", "60000"));
+        this.statementCacheSize = Integer.parseInt(properties.getProperty("db.statement.cache.size", "64"));
+        long housekeepingMs = Long.parseLong(properties.getProperty("db.pool.housekeeping.interval.ms", "30000"));
+
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "revpay-pool-" + name + "-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                housekeepingMs, housekeepingMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Connection pool '{}' created - min: {}, max: {}, timeout: {}ms, statement cache: {}",
+                name, minSize, maxSize, connectionTimeoutMs, statementCacheSize);
+    }
+
+    /**
+     * Open the minimum number of connections up front so that a bad URL or
+     * credentials fail at startup rather than on the first query.
+     */
+    public void warmUp() throws SQLException {
+        fillToMinimum();
+        if (minSize == 0) {
+            // Still verify that the database is reachable
+            Connection probe = borrow();
+            probe.close();
+        }
+    }
+
+    /**
+     * Borrow a connection from the pool. The caller must close it to give it back.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long start = System.nanoTime();
+        waiters.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        if (waited > maxWaitNanos) {
+            maxWaitNanos = waited;
+        }
+
+        if (!acquired) {
+            timeoutCount.increment();
+            logger.error("Timed out after {}ms waiting for a '{}' database connection. {}",
+                    connectionTimeoutMs, name, getStats());
+            throw new SQLTimeoutException("Timed out waiting for a database connection after "
+                    + connectionTimeoutMs + "ms");
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            pooled.leasedAt = System.currentTimeMillis();
+            leased.put(pooled, Boolean.TRUE);
+            borrowCount.increment();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isExpired(pooled) || !isValid(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return createConnection();
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            logger.warn("Connection validation failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled) {
+        return maxLifetimeMs > 0 && System.currentTimeMillis() - pooled.createdAt > maxLifetimeMs;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        createdCount.increment();
+        logger.debug("Opened new pooled connection ({} total)", getTotalConnections());
+        return new PooledConnection(physical);
+    }
+
+    void release(PooledConnection pooled) {
+        leased.remove(pooled);
+        try {
+            if (shutdown || pooled.broken || isExpired(pooled) || !resetState(pooled)) {
+                destroy(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            Connection c = pooled.physical;
+            if (c.isClosed()) {
+                return false;
+            }
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) {
+                c.setReadOnly(false);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Discarding connection that could not be reset: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.increment();
+        pooled.statementCache.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing physical connection", e);
+        }
+    }
+
+    private void fillToMinimum() throws SQLException {
+        while (!shutdown && getTotalConnections() < minSize && permits.tryAcquire()) {
+            try {
+                idle.offerLast(createConnection());
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // Evict connections that sat idle too long, keeping at least minSize around
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && getTotalConnections() > minSize) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed > idleTimeoutMs || isExpired(pooled)) {
+                    if (idle.remove(pooled)) {
+                        destroy(pooled);
+                    }
+                }
+            }
+
+            if (leakDetectionThresholdMs > 0) {
+                for (PooledConnection pooled : leased.keySet()) {
+                    long heldFor = now - pooled.leasedAt;
+                    if (heldFor > leakDetectionThresholdMs) {
+                        logger.warn("Connection leased for {}ms, possible leak", heldFor);
+                    }
+                }
+            }
+
+            fillToMinimum();
+        } catch (Exception e) {
+            logger.error("Connection pool housekeeping failed", e);
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        logger.info("Connection pool '{}' shut down. {}", name, getStats());
+    }
+
+    /**
+     * Register a callback run on the calling thread whenever a statement from
+     * this pool executes a write.
+     */
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    private void fireWrite() {
+        Runnable listener = writeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotalConnections() {
+        return leased.size() + idle.size();
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(leased.size(), idle.size(), waiters.get(),
+                borrowCount.sum(), timeoutCount.sum(), totalWaitNanos.sum(), maxWaitNanos,
+                createdCount.sum(), destroyedCount.sum(), maxSize,
+                statementCacheHits.sum(), statementCacheMisses.sum(), statementCacheEvictions.sum());
+    }
+
+    /**
+     * One physical connection owned by the pool.
+     */
+    final class PooledConnection {
+        final Connection physical;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsed = createdAt;
+        volatile long leasedAt;
+        volatile boolean broken = false;
+        final StatementCache statementCache = new StatementCache(statementCacheSize,
+                statementCacheHits, statementCacheMisses, statementCacheEvictions,
+                ConnectionPool.this::fireWrite);
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Handler behind the Connection handed to callers. Each lease gets its own
+     * handler so a stale reference cannot be used after it was returned.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed = false;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if ("prepareStatement".equals(method.getName()) && args.length <= 2
+                    && (args.length == 1 || args[1] instanceof Integer)) {
+                int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                return pooled.statementCache.prepare(pooled.physical, (Connection) proxy,
+                        (String) args[0], autoGeneratedKeys);
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    // SQL state class 08 = connection exception
+                    if (state != null && state.startsWith("08")) {
+                        pooled.broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+
+    /**
+     * Point-in-time snapshot of pool metrics.
+     */
+    public static final class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final int maxSize;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        PoolStats(int active, int idle, int waiters, long borrowCount, long timeoutCount,
+                  long totalWaitNanos, long maxWaitNanos, long createdCount,
+                  long destroyedCount, int maxSize, long statementCacheHits,
+                  long statementCacheMisses, long statementCacheEvictions) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.maxSize = maxSize;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getWaiters() { return waiters; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getDestroyedCount() { return destroyedCount; }
+        public int getMaxSize() { return maxSize; }
+        public long getStatementCacheHits() { return statementCacheHits; }
+        public long getStatementCacheMisses() { return statementCacheMisses; }
+        public long getStatementCacheEvictions() { return statementCacheEvictions; }
+
+        public double getStatementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0.0 : (double) statementCacheHits / lookups;
+        }
+
+        public double getAverageWaitMillis() {
+            return borrowCount == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Pool{active=%d, idle=%d, max=%d, waiters=%d, borrows=%d, " +
+                            "timeouts=%d, avgWait=%.2fms, maxWait=%.2fms, created=%d, destroyed=%d, " +
+                            "stmtCache[hits=%d, misses=%d, evictions=%d, hitRatio=%.2f]}",
+                    active, idle, maxSize, waiters, borrowCount, timeoutCount,
+                    getAverageWaitMillis(), getMaxWaitMillis(), createdCount, destroyedCount,
+                    statementCacheHits, statementCacheMisses, statementCacheEvictions,
+                    getStatementCacheHitRatio());
+        }
+    }
+}
@@ -1,108 +1,274 @@
 package com.revpay.dao;
 
+import com.revpay.utils.AppConfig;
 import com.revpay.utils.LoggerUtil;
 import org.apache.logging.log4j.Logger;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseConnection {
-    private static Connection connection = null;
-    private static Properties properties = new Properties();
+    private static volatile ConnectionPool pool = null;
+    private static volatile List<ConnectionPool> replicaPools = Collections.emptyList();
+    private static final AtomicInteger replicaCursor = new AtomicInteger();
+    private static volatile long stickyWindowNanos = 0;
+    // Time of the last write on this thread, for read-your-writes
+    private static final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[]{0L});
+    // Connection of the TransactionTemplate block running on this thread, if any
+    private static final ThreadLocal<Connection> boundConnection = new ThreadLocal<>();
+
+    private static final Properties properties = new Properties();
+    private static volatile boolean propertiesLoaded = false;
     private static final Logger logger = LoggerUtil.getLogger(DatabaseConnection.class);
-    private static volatile boolean isInitializing = false; // Add this flag
 
-    public static void initialize() {
-        // Prevent multiple simultaneous initializations
-        if (isInitializing) {
-            logger.debug("Another thread is already initializing, waiting...");
+    public static synchronized void initialize() {
+        if (pool != null) {
+            logger.debug("Connection pool already initialized");
             return;
         }
 
-        isInitializing = true;
+        logger.info("Initializing database connection pool...");
+
+        List<ConnectionPool> replicas = new ArrayList<>();
+        ConnectionPool primary = null;
         try {
-            if (connection != null && !connection.isClosed()) {
-                logger.debug("Connection already exists and is open");
-                return;
-            }
+            loadProperties();
+            logger.debug("Attempting to connect to: {}", properties.getProperty("db.url"));
 
-            logger.info("Initializing database connection...");
+            Class.forName(properties.getProperty("db.driver", "com.mysql.cj.jdbc.Driver"));
+            primary = new ConnectionPool("primary", properties);
+            primary.setWriteListener(DatabaseConnection::markWrite);
+            primary.warmUp();
 
-            InputStream input = DatabaseConnection.class.getClassLoader()
-                    .getResourceAsStream("application.properties");
-            if (input == null) {
-                logger.error("Unable to find application.properties file");
-                throw new RuntimeException("Unable to find application.properties");
+            String replicaUrls = properties.getProperty("db.replica.urls", "").trim();
+            if (!replicaUrls.isEmpty()) {
+                String[] urls = replicaUrls.split(",");
+                for (int i = 0; i < urls.length; i++) {
+                    ConnectionPool replica = new ConnectionPool("replica-" + (i + 1),
+                            replicaProperties(urls[i].trim()));
+                    replicas.add(replica);
+                    try {
+                        replica.warmUp();
+                    } catch (SQLException e) {
+                        // A replica that is down at startup just sends reads to the primary
+                        logger.warn("Read replica {} is unavailable: {}", urls[i].trim(), e.getMessage());
+                    }
+                }
             }
 
-            properties.load(input);
-            String url = properties.getProperty("db.url");
-            String username = properties.getProperty("db.username");
-            String password = properties.getProperty("db.password");
+            stickyWindowNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.get().getReadStickyWindowMs());
+            replicaPools = Collections.unmodifiableList(replicas);
+            pool = primary;
 
-            logger.debug("Attempting to connect to: {}", url);
+            logger.info("Database connection pool established successfully ({} read replica(s))",
+                    replicas.size());
 
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            connection = DriverManager.getConnection(url, username, password);
-
-            logger.info("Database connection established successfully");
-
-        } catch (IOException e) {
-            logger.error("Failed to load application.properties", e);
-            throw new RuntimeException(e);
         } catch (ClassNotFoundException e) {
             logger.error("MySQL JDBC driver not found", e);
             throw new RuntimeException(e);
         } catch (SQLException e) {
+            if (primary != null) {
+                primary.shutdown();
+            }
+            replicas.forEach(ConnectionPool::shutdown);
             logger.error("Failed to establish database connection", e);
             logger.error("SQL State: {}, Error Code: {}", e.getSQLState(), e.getErrorCode());
             throw new RuntimeException(e);
-        } finally {
-            isInitializing = false;
         }
     }
 
-    public static Connection getConnection() {
+    private static Properties replicaProperties(String url) {
+        Properties replicaProps = new Properties();
+        replicaProps.putAll(properties);
+        replicaProps.setProperty("db.url", url);
+        replicaProps.setProperty("db.username",
+                properties.getProperty("db.replica.username", properties.getProperty("db.username")));
+        replicaProps.setProperty("db.password",
+                properties.getProperty("db.replica.password", properties.getProperty("db.password")));
+        return replicaProps;
+    }
+
+    private static synchronized void loadProperties() {
+        if (propertiesLoaded) {
+            return;
+        }
+
+        properties.putAll(AppConfig.get().toProperties());
+        propertiesLoaded = true;
+    }
+
+    private static ConnectionPool primaryPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            initialize();
+            current = pool;
+        }
+        return current;
+    }
+
+    /**
+     * Borrow a connection to the primary database. Callers own the returned
+     * connection for the duration of one operation and must close it
+     * (try-with-resources) to hand it back. Inside a TransactionTemplate
+     * block this returns the transaction's connection instead.
+     */
+    public static Connection getConnection() throws SQLException {
+        Connection bound = boundConnection.get();
+        if (bound != null) {
+            return bound;
+        }
+        return primaryPool().borrow();
+    }
+
+    /**
+     * Borrow a connection for a read-only query. Goes to a read replica unless
+     * none are configured or this thread wrote within the sticky window
+     * ({@code db.read.sticky.window.ms}); falls back to the primary if the
+     * replica cannot hand out a connection.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection bound = boundConnection.get();
+        if (bound != null) {
+            return bound;
+        }
+
+        ConnectionPool primary = primaryPool();
+        List<ConnectionPool> replicas = replicaPools;
+        if (replicas.isEmpty() || isStickyToPrimary()) {
+            return primary.borrow();
+        }
+
+        ConnectionPool replica = replicas.get(Math.floorMod(replicaCursor.getAndIncrement(), replicas.size()));
         try {
-            if (connection == null || connection.isClosed()) {
-                initialize();
-            }
+            return replica.borrow();
         } catch (SQLException e) {
-            logger.error("Error checking connection status, reinitializing...", e);
-            initialize();
+            logger.warn("Read replica '{}' unavailable, reading from primary: {}",
+                    replica.getName(), e.getMessage());
+            return primary.borrow();
         }
-        return connection;
     }
 
-    public static void closeConnection() {
-        if (connection != null) {
-            try {
-                if (!connection.isClosed()) {
-                    connection.close();
-                    logger.info("Database connection closed");
-                }
-            } catch (SQLException e) {
-                logger.error("Error closing database connection", e);
-            } finally {
-                connection = null; // Reset connection
-            }
+    /**
+     * Prepare a query whose rows the driver hands over one at a time as they
+     * arrive, instead of buffering the whole result. The statement bypasses
+     * the statement cache, and nothing else can run on the connection until
+     * its ResultSet is closed.
+     */
+    static PreparedStatement prepareStreaming(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // Connector/J's signal for row-by-row streaming
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    /**
+     * Whether reads on this thread are currently pinned to the primary because
+     * it wrote recently.
+     */
+    public static boolean isStickyToPrimary() {
+        long last = lastWrite.get()[0];
+        return last != 0 && System.nanoTime() - last < stickyWindowNanos;
+    }
+
+    /**
+     * Start the read-your-writes window for the current thread. Called by the
+     * primary pool whenever a statement executes a write.
+     */
+    static void markWrite() {
+        lastWrite.get()[0] = System.nanoTime();
+    }
+
+    // Used to carry read-your-writes stickiness over to AsyncDAO tasks
+    static long getLastWriteNanos() {
+        return lastWrite.get()[0];
+    }
+
+    static void setLastWriteNanos(long nanos) {
+        lastWrite.get()[0] = nanos;
+    }
+
+    /**
+     * Make every borrow on this thread return {@code connection} until
+     * {@link #unbind()}. The handle given out ignores close() so DAO
+     * try-with-resources blocks don't end the transaction early.
+     */
+    static void bind(Connection connection) {
+        boundConnection.set((Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }));
+    }
+
+    static void unbind() {
+        boundConnection.remove();
+    }
+
+    public static boolean isInTransaction() {
+        return boundConnection.get() != null;
+    }
+
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            replicaPools.forEach(ConnectionPool::shutdown);
+            replicaPools = Collections.emptyList();
+            logger.info("Database connection pool closed");
         }
     }
 
+    public static ConnectionPool.PoolStats getPoolStats() {
+        ConnectionPool current = pool;
+        return current != null ? current.getStats() : null;
+    }
+
+    public static List<ConnectionPool.PoolStats> getReplicaPoolStats() {
+        List<ConnectionPool.PoolStats> stats = new ArrayList<>();
+        for (ConnectionPool replica : replicaPools) {
+            stats.add(replica.getStats());
+        }
+        return stats;
+    }
+
     public static Properties getProperties() {
+        if (!propertiesLoaded) {
+            loadProperties();
+        }
         return properties;
     }
 
     // Method for JDBC appender (optional)
     public static Connection getLoggingConnection() throws SQLException {
         // Use a separate connection for logging to avoid conflicts
-        String url = properties.getProperty("db.url");
-        String username = properties.getProperty("db.username");
-        String password = properties.getProperty("db.password");
+        Properties props = getProperties();
+        String url = props.getProperty("db.url");
+        String username = props.getProperty("db.username");
+        String password = props.getProperty("db.password");
         return DriverManager.getConnection(url, username, password);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,244 @@
+package com.revpay.dao;
+
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency keys for money-moving operations.
+ *
+ * A caller-supplied key is claimed in the same database transaction that
+ * moves the money, so of two concurrent attempts with the same key only one
+ * commits; the other waits on the key row and then finds it taken. A key
+ * records the operation and amount it was used for, so callers can tell a
+ * retry of the same request from a different request that reuses the key.
+ * Keys expire after {@code idempotency.ttl.hours}. Recently used keys are
+ * also kept in memory with their transaction, so a retry usually needs no
+ * query.
+ */
+public class IdempotencyDAO {
+    private static final Logger logger = LoggerUtil.getLogger(IdempotencyDAO.class);
+
+    private static ScheduledExecutorService purger;
+
+    private final TransactionDAO transactionDAO;
+    private final long ttlMinutes;
+    private final Map<String, CachedKey> recentKeys;
+
+    /**
+     * What a key was used for: the operation, the amount and the resulting
+     * transaction.
+     */
+    public record UsedKey(String operation, Money amount, Transaction transaction) {
+        public boolean matches(String operation, Money amount) {
+            return this.operation.equals(operation) && this.amount.equals(amount);
+        }
+    }
+
+    private record CachedKey(UsedKey used, LocalDateTime expiresAt) {}
+
+    public IdempotencyDAO(TransactionDAO transactionDAO) {
+        this.transactionDAO = transactionDAO;
+        AppConfig config = AppConfig.get();
+        this.ttlMinutes = config.getIdempotencyTtlHours() * 60L;
+        int cacheSize = config.getIdempotencyCacheSize();
+        // Access-ordered, so the least recently used key is dropped first
+        this.recentKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    private static String cacheKey(int userId, String key) {
+        return userId + ":" + key;
+    }
+
+    /**
+     * What an unexpired key was used for, or null if the key is unused or
+     * expired.
+     */
+    public UsedKey findKey(int userId, String key) throws SQLException {
+        synchronized (recentKeys) {
+            CachedKey cached = recentKeys.get(cacheKey(userId, key));
+            if (cached != null) {
+                if (cached.expiresAt().isAfter(LocalDateTime.now())) {
+                    return cached.used();
+                }
+                recentKeys.remove(cacheKey(userId, key));
+            }
+        }
+
+        // One block, so the transaction is read on the primary with the key; a replica may not have it yet
+        CachedKey found = TransactionTemplate.execute(() -> readKey(userId, key));
+        if (found == null) {
+            return null;
+        }
+        synchronized (recentKeys) {
+            recentKeys.put(cacheKey(userId, key), found);
+        }
+        return found.used();
+    }
+
+    private CachedKey readKey(int userId, String key) throws SQLException {
+        String sql = "SELECT operation, amount, transaction_id, expires_at FROM idempotency_keys " +
+                "WHERE user_id = ? AND idempotency_key = ? AND expires_at > ?";
+        String operation;
+        BigDecimal amount;
+        String transactionId;
+        LocalDateTime expiresAt;
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, key);
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                operation = rs.getString(1);
+                amount = rs.getBigDecimal(2);
+                transactionId = rs.getString(3);
+                expiresAt = rs.getTimestamp(4).toLocalDateTime();
+            }
+        }
+
+        Transaction transaction = transactionDAO.getTransactionById(transactionId);
+        if (transaction == null) {
+            return null;
+        }
+        // Keys claimed before amounts were recorded go by their transaction's
+        UsedKey used = new UsedKey(operation, amount != null ? Money.of(amount) : transaction.getAmount(),
+                transaction);
+        return new CachedKey(used, expiresAt);
+    }
+
+    /**
+     * Claim a key for a transaction about to be created, recording the
+     * operation and the transaction's amount. Must run inside the
+     * TransactionTemplate block that creates it. Returns false if the key is
+     * already in use; if another attempt holds it uncommitted, this waits for
+     * that attempt to finish.
+     */
+    public boolean claim(int userId, String key, String operation, Transaction transaction) throws SQLException {
+        String deleteSql = "DELETE FROM idempotency_keys " +
+                "WHERE user_id = ? AND idempotency_key = ? AND expires_at <= ?";
+        String insertSql = "INSERT INTO idempotency_keys (user_id, idempotency_key, operation, amount, " +
+                "transaction_id, created_at, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        LocalDateTime now = LocalDateTime.now();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            // An expired key that hasn't been purged yet may be reused
+            try (PreparedStatement stmt = connection.prepareStatement(deleteSql)) {
+                stmt.setInt(1, userId);
+                stmt.setString(2, key);
+                stmt.setTimestamp(3, Timestamp.valueOf(now));
+                stmt.executeUpdate();
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+                stmt.setInt(1, userId);
+                stmt.setString(2, key);
+                stmt.setString(3, operation);
+                stmt.setBigDecimal(4, transaction.getAmount().toBigDecimal());
+                stmt.setString(5, transaction.getTransactionId());
+                stmt.setTimestamp(6, Timestamp.valueOf(now));
+                stmt.setTimestamp(7, Timestamp.valueOf(now.plusMinutes(ttlMinutes)));
+                stmt.executeUpdate();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Cache a key's use once the claiming transaction has committed.
+     */
+    public void remember(int userId, String key, String operation, Transaction transaction) {
+        UsedKey used = new UsedKey(operation, transaction.getAmount(), transaction);
+        synchronized (recentKeys) {
+            recentKeys.put(cacheKey(userId, key),
+                    new CachedKey(used, LocalDateTime.now().plusMinutes(ttlMinutes)));
+        }
+    }
+
+    /**
+     * Delete expired keys, {@code batchSize} rows per statement and at most
+     * {@code maxBatches} statements, so one run never holds locks for long.
+     * Returns the number of keys deleted.
+     */
+    public int purgeExpired(int batchSize, int maxBatches) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE expires_at < ? LIMIT ?";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted;
+            try (Connection connection = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setTimestamp(1, now);
+                stmt.setInt(2, batchSize);
+                deleted = stmt.executeUpdate();
+            }
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Purged {} expired idempotency key(s)", total);
+        }
+        return total;
+    }
+
+    /**
+     * Run {@link #purgeExpired} in the background every
+     * {@code idempotency.purge.interval.ms}.
+     */
+    public static synchronized void startPurge(IdempotencyDAO dao) {
+        if (purger != null) {
+            return;
+        }
+        AppConfig config = AppConfig.get();
+        long intervalMs = config.getIdempotencyPurgeIntervalMs();
+        int batchSize = config.getIdempotencyPurgeBatchSize();
+        int maxBatches = config.getIdempotencyPurgeMaxBatches();
+        if (intervalMs <= 0) {
+            return;
+        }
+
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "idempotency-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(() -> {
+            try {
+                dao.purgeExpired(batchSize, maxBatches);
+            } catch (SQLException | RuntimeException e) {
+                logger.error("Idempotency key purge failed", e);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopPurge() {
+        if (purger != null) {
+            purger.shutdownNow();
+            purger = null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.revpay.dao;
+
+import com.revpay.models.Money;
+
+import java.sql.SQLException;
+
+/**
+ * A ledger posting would take a wallet below zero. Nothing was written; if
+ * the posting ran inside a TransactionTemplate block, the block rolls back.
+ */
+public class InsufficientFundsException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final int accountId;
+
+    public InsufficientFundsException(int accountId, Money balance, Money amount) {
+        super("Insufficient balance in account " + accountId + ": balance " + balance +
+                ", debit " + amount, "45000");
+        this.accountId = accountId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+}
@@ -1,7 +1,10 @@
 package com.revpay.dao;
 
 import com.revpay.models.Invoice;
+import com.revpay.models.Money;
+import com.revpay.utils.IdGenerator;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -9,11 +12,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class InvoiceDAO {
-    private Connection connection;
-
-    public InvoiceDAO() {
-        this.connection = DatabaseConnection.getConnection();
-    }
+    private static final String INVOICE_COLUMNS = "id, invoice_number, business_user_id, customer_email, " +
+            "customer_name, amount, tax_amount, total_amount, currency, " +
+            "items, description, due_date, status, payment_terms, " +
+            "created_at, updated_at";
 
     public Invoice createInvoice(Invoice invoice) throws SQLException {
         String sql = "INSERT INTO invoices (invoice_number, business_user_id, " +
@@ -22,14 +24,15 @@ public class InvoiceDAO {
                 "created_at, updated_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, invoice.getInvoiceNumber());
             stmt.setInt(2, invoice.getBusinessUserId());
             stmt.setString(3, invoice.getCustomerEmail());
             stmt.setString(4, invoice.getCustomerName());
-            stmt.setDouble(5, invoice.getAmount());
-            stmt.setDouble(6, invoice.getTaxAmount());
-            stmt.setDouble(7, invoice.getTotalAmount());
+            stmt.setBigDecimal(5, invoice.getAmount().toBigDecimal());
+            stmt.setBigDecimal(6, invoice.getTaxAmount().toBigDecimal());
+            stmt.setBigDecimal(7, invoice.getTotalAmount().toBigDecimal());
             stmt.setString(8, invoice.getCurrency());
             stmt.setString(9, invoice.getItems());
             stmt.setString(10, invoice.getDescription());
@@ -61,9 +64,10 @@ public class InvoiceDAO {
 
     public List<Invoice> getInvoicesByBusinessUserId(int businessUserId) throws SQLException {
         List<Invoice> invoices = new ArrayList<>();
-        String sql = "SELECT * FROM invoices WHERE business_user_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + INVOICE_COLUMNS + " FROM invoices WHERE business_user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, businessUserId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -75,11 +79,35 @@ public class InvoiceDAO {
         return invoices;
     }
 
+    /**
+     * Every invoice of a business, oldest first, handed to {@code handler} as
+     * it is read; nothing is buffered. For exports.
+     */
+    public long streamInvoicesByBusinessUserId(int businessUserId, RowHandler<Invoice> handler)
+            throws SQLException, IOException {
+        String sql = "SELECT " + INVOICE_COLUMNS + " FROM invoices WHERE business_user_id = ? ORDER BY created_at, id";
+
+        long rows = 0;
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = DatabaseConnection.prepareStreaming(connection, sql)) {
+            stmt.setInt(1, businessUserId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapResultSetToInvoice(rs));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
     public List<Invoice> getInvoicesByCustomerEmail(String customerEmail) throws SQLException {
         List<Invoice> invoices = new ArrayList<>();
-        String sql = "SELECT * FROM invoices WHERE customer_email = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + INVOICE_COLUMNS + " FROM invoices WHERE customer_email = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, customerEmail);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -92,9 +120,10 @@ public class InvoiceDAO {
     }
 
     public Invoice getInvoiceByNumber(String invoiceNumber) throws SQLException {
-        String sql = "SELECT * FROM invoices WHERE invoice_number = ?";
+        String sql = "SELECT " + INVOICE_COLUMNS + " FROM invoices WHERE invoice_number = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, invoiceNumber);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -109,7 +138,8 @@ public class InvoiceDAO {
     public boolean updateInvoiceStatus(String invoiceNumber, String status) throws SQLException {
         String sql = "UPDATE invoices SET status = ?, updated_at = ? WHERE invoice_number = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, status);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(3, invoiceNumber);
@@ -121,7 +151,8 @@ public class InvoiceDAO {
     public boolean markInvoiceAsPaid(String invoiceNumber) throws SQLException {
         String sql = "UPDATE invoices SET status = 'PAID', updated_at = ? WHERE invoice_number = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(2, invoiceNumber);
 
@@ -131,10 +162,11 @@ public class InvoiceDAO {
 
     public List<Invoice> getOverdueInvoices() throws SQLException {
         List<Invoice> invoices = new ArrayList<>();
-        String sql = "SELECT * FROM invoices WHERE status IN ('SENT', 'VIEWED') " +
+        String sql = "SELECT " + INVOICE_COLUMNS + " FROM invoices WHERE status IN ('SENT', 'VIEWED') " +
                 "AND due_date < ? ORDER BY due_date ASC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setDate(1, Date.valueOf(LocalDate.now()));
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -146,45 +178,48 @@ public class InvoiceDAO {
         return invoices;
     }
 
-    public double getTotalOutstandingAmount(int businessUserId) throws SQLException {
+    public Money getTotalOutstandingAmount(int businessUserId) throws SQLException {
         String sql = "SELECT COALESCE(SUM(total_amount), 0) FROM invoices " +
                 "WHERE business_user_id = ? AND status IN ('SENT', 'VIEWED')";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, businessUserId);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return Money.of(rs.getBigDecimal(1));
                 }
             }
         }
-        return 0.0;
+        return Money.ZERO;
     }
 
-    public double getTotalPaidAmount(int businessUserId, LocalDateTime start, LocalDateTime end) throws SQLException {
+    public Money getTotalPaidAmount(int businessUserId, LocalDateTime start, LocalDateTime end) throws SQLException {
         String sql = "SELECT COALESCE(SUM(total_amount), 0) FROM invoices " +
                 "WHERE business_user_id = ? AND status = 'PAID' " +
                 "AND updated_at BETWEEN ? AND ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, businessUserId);
             stmt.setTimestamp(2, Timestamp.valueOf(start));
             stmt.setTimestamp(3, Timestamp.valueOf(end));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return Money.of(rs.getBigDecimal(1));
                 }
             }
         }
-        return 0.0;
+        return Money.ZERO;
     }
 
     public int getInvoiceCountByStatus(int businessUserId, String status) throws SQLException {
         String sql = "SELECT COUNT(*) FROM invoices WHERE business_user_id = ? AND status = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, businessUserId);
             stmt.setString(2, status);
 
@@ -197,34 +232,35 @@ public class InvoiceDAO {
         return 0;
     }
 
+    // Reads INVOICE_COLUMNS by position
     private Invoice mapResultSetToInvoice(ResultSet rs) throws SQLException {
         Invoice invoice = new Invoice();
-        invoice.setId(rs.getInt("id"));
-        invoice.setInvoiceNumber(rs.getString("invoice_number"));
-        invoice.setBusinessUserId(rs.getInt("business_user_id"));
-        invoice.setCustomerEmail(rs.getString("customer_email"));
-        invoice.setCustomerName(rs.getString("customer_name"));
-        invoice.setAmount(rs.getDouble("amount"));
-        invoice.setTaxAmount(rs.getDouble("tax_amount"));
-        invoice.setTotalAmount(rs.getDouble("total_amount"));
-        invoice.setCurrency(rs.getString("currency"));
-        invoice.setItems(rs.getString("items"));
-        invoice.setDescription(rs.getString("description"));
-
-        Date dueDate = rs.getDate("due_date");
+        invoice.setId(rs.getInt(1));
+        invoice.setInvoiceNumber(rs.getString(2));
+        invoice.setBusinessUserId(rs.getInt(3));
+        invoice.setCustomerEmail(rs.getString(4));
+        invoice.setCustomerName(rs.getString(5));
+        invoice.setAmount(Money.of(rs.getBigDecimal(6)));
+        invoice.setTaxAmount(Money.of(rs.getBigDecimal(7)));
+        invoice.setTotalAmount(Money.of(rs.getBigDecimal(8)));
+        invoice.setCurrency(rs.getString(9));
+        invoice.setItems(rs.getString(10));
+        invoice.setDescription(rs.getString(11));
+
+        Date dueDate = rs.getDate(12);
         if (dueDate != null) {
             invoice.setDueDate(dueDate.toLocalDate());
         }
 
-        invoice.setStatus(rs.getString("status"));
-        invoice.setPaymentTerms(rs.getString("payment_terms"));
+        invoice.setStatus(rs.getString(13));
+        invoice.setPaymentTerms(rs.getString(14));
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(15);
         if (createdAt != null) {
             invoice.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(16);
         if (updatedAt != null) {
             invoice.setUpdatedAt(updatedAt.toLocalDateTime());
         }
@@ -233,7 +269,7 @@ public class InvoiceDAO {
     }
 
     public String generateInvoiceNumber() {
-        return "INV" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+        return IdGenerator.shared().next("INV");
     }
 
     public LocalDate getDefaultDueDate() {
@@ -0,0 +1,526 @@
+package com.revpay.dao;
+
+import com.revpay.models.JournalEntry;
+import com.revpay.models.LedgerEntry;
+import com.revpay.models.Money;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only double-entry ledger behind wallet balances.
+ *
+ * Postings only insert rows, so credits to a busy merchant never wait on each
+ * other. A balance is the account's snapshot plus its lines not yet folded
+ * into it; the compaction job periodically folds lines into the snapshot,
+ * marking each one folded in the same transaction, and refreshes the cached
+ * users.wallet_balance.
+ *
+ * Debits of user wallets are the one place that locks: the wallet's snapshot
+ * row is locked while its balance is checked, so two debits of the same
+ * wallet can't both spend the same money.
+ *
+ * Hot accounts listed in {@code ledger.hot.accounts} split their balance
+ * across several slots, each with its own snapshot row. Each line lands on a
+ * randomly picked slot, and a debit locks only its slot when it covers the
+ * amount, falling back to locking every slot and drawing from several. The
+ * background job evens the slots out again.
+ */
+public class LedgerDAO {
+    private static final Logger logger = LoggerUtil.getLogger(LedgerDAO.class);
+
+    // account id -> slot count, for hot accounts only
+    private static final Map<Integer, Integer> hotAccounts = AppConfig.get().getLedgerHotAccounts();
+
+    private static ScheduledExecutorService compactor;
+
+    public static int slotCount(int accountId) {
+        return hotAccounts.getOrDefault(accountId, 1);
+    }
+
+    // Picked per posting, so postings to a hot account spread over its slots whichever thread makes them
+    private static int slotFor(int slots) {
+        return slots == 1 ? 0 : ThreadLocalRandom.current().nextInt(slots);
+    }
+
+    /**
+     * Append a balanced journal entry and return its id. Every user wallet the
+     * entry debits must cover the debit, otherwise InsufficientFundsException
+     * is thrown and nothing is written. Joins the current TransactionTemplate
+     * block, if any.
+     */
+    public long post(JournalEntry entry) throws SQLException {
+        validate(entry);
+
+        // Net debit per user wallet, in account order so concurrent postings lock in the same order
+        Map<Integer, Long> debitCents = new TreeMap<>();
+        for (LedgerEntry line : entry.getLines()) {
+            if (line.getAccountId() > 0 && line.getAmount().isNegative()) {
+                debitCents.merge(line.getAccountId(), -line.getAmount().getCents(), Long::sum);
+            }
+        }
+
+        return TransactionTemplate.execute(() -> {
+            // User wallet debits are replaced by lines for the slots they are drawn from
+            List<LedgerEntry> lines = new ArrayList<>();
+            for (LedgerEntry line : entry.getLines()) {
+                if (!debitCents.containsKey(line.getAccountId()) || line.getAmount().isPositive()) {
+                    line.setSlot(slotFor(slotCount(line.getAccountId())));
+                    lines.add(line);
+                }
+            }
+            for (Map.Entry<Integer, Long> debit : debitCents.entrySet()) {
+                int accountId = debit.getKey();
+                for (Map.Entry<Integer, Long> part : drawDebit(accountId, debit.getValue()).entrySet()) {
+                    lines.add(new LedgerEntry(accountId, part.getKey(), Money.ofCents(-part.getValue())));
+                }
+            }
+            entry.setLines(lines);
+            return insert(entry);
+        });
+    }
+
+    /**
+     * Lock the slots a debit of {@code cents} will come out of and return how
+     * much to take from each: one randomly picked slot alone when it covers
+     * the debit, otherwise several slots, fullest first.
+     */
+    private Map<Integer, Long> drawDebit(int accountId, long cents) throws SQLException {
+        int slots = slotCount(accountId);
+        int preferred = slotFor(slots);
+        long balance = lockBalance(accountId, preferred);
+        if (balance >= cents) {
+            return Map.of(preferred, cents);
+        }
+        if (slots == 1) {
+            throw new InsufficientFundsException(accountId, Money.ofCents(balance), Money.ofCents(cents));
+        }
+
+        // Fallback sweep; it locks the other slots out of order, and a resulting deadlock is retried
+        Map<Integer, Long> balances = lockAllSlots(accountId, slots);
+        long total = 0;
+        for (long slotCents : balances.values()) {
+            total += slotCents;
+        }
+        if (total < cents) {
+            throw new InsufficientFundsException(accountId, Money.ofCents(total), Money.ofCents(cents));
+        }
+
+        List<Map.Entry<Integer, Long>> fullestFirst = new ArrayList<>(balances.entrySet());
+        fullestFirst.sort(Map.Entry.<Integer, Long>comparingByValue().reversed());
+        Map<Integer, Long> parts = new TreeMap<>();
+        long remaining = cents;
+        for (Map.Entry<Integer, Long> slot : fullestFirst) {
+            if (remaining == 0 || slot.getValue() <= 0) {
+                break;
+            }
+            long take = Math.min(remaining, slot.getValue());
+            parts.put(slot.getKey(), take);
+            remaining -= take;
+        }
+        return parts;
+    }
+
+    private long insert(JournalEntry entry) throws SQLException {
+        long journalId = insertJournalEntry(entry);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String sql = "INSERT INTO ledger_entries (journal_entry_id, account_id, slot, amount, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        try (BatchWriter<LedgerEntry> writer = new BatchWriter<>(sql, (stmt, line) -> {
+            stmt.setLong(1, journalId);
+            stmt.setInt(2, line.getAccountId());
+            stmt.setInt(3, line.getSlot());
+            stmt.setBigDecimal(4, line.getAmount().toBigDecimal());
+            stmt.setTimestamp(5, now);
+        })) {
+            writer.addAll(entry.getLines());
+        }
+
+        entry.setId(journalId);
+        for (LedgerEntry line : entry.getLines()) {
+            line.setJournalEntryId(journalId);
+        }
+        return journalId;
+    }
+
+    private void validate(JournalEntry entry) throws SQLException {
+        if (entry.getLines().size() < 2) {
+            throw new SQLException("Journal entry " + entry.getReference() + " needs at least two lines");
+        }
+        long sum = 0;
+        for (LedgerEntry line : entry.getLines()) {
+            long cents = line.getAmount().getCents();
+            if (cents == 0) {
+                throw new SQLException("Journal entry " + entry.getReference() + " has a zero line");
+            }
+            sum += cents;
+        }
+        if (sum != 0) {
+            throw new SQLException("Journal entry " + entry.getReference() + " is not balanced");
+        }
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return Money.of(amount).getCents();
+    }
+
+    private long insertJournalEntry(JournalEntry entry) throws SQLException {
+        String sql = "INSERT INTO journal_entries (reference, description, created_at) VALUES (?, ?, ?)";
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, entry.getReference());
+            stmt.setString(2, entry.getDescription());
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getLong(1);
+                }
+            }
+        }
+        throw new SQLException("Creating journal entry failed, no ID obtained.");
+    }
+
+    /**
+     * Current balance of one slot, holding its snapshot row lock until the
+     * surrounding transaction ends. The snapshot lock already serializes
+     * debits of the slot, so the unfolded lines are read without locking; at
+     * READ COMMITTED that read sees the latest committed lines and takes no
+     * gap locks that would hold up credits to the account.
+     */
+    private long lockBalance(int accountId, int slot) throws SQLException {
+        String lockSql = "SELECT balance FROM ledger_balance_snapshots " +
+                "WHERE account_id = ? AND slot = ? FOR UPDATE";
+        String tailSql = "SELECT COALESCE(SUM(amount), 0) FROM ledger_entries " +
+                "WHERE account_id = ? AND slot = ? AND folded = FALSE";
+
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            long balance = 0;
+            boolean found = false;
+
+            for (int attempt = 0; attempt < 2 && !found; attempt++) {
+                try (PreparedStatement stmt = connection.prepareStatement(lockSql)) {
+                    stmt.setInt(1, accountId);
+                    stmt.setInt(2, slot);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            balance = toCents(rs.getBigDecimal(1));
+                            found = true;
+                        }
+                    }
+                }
+                if (!found) {
+                    createSnapshot(connection, accountId, slot);
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(tailSql)) {
+                stmt.setInt(1, accountId);
+                stmt.setInt(2, slot);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        balance += toCents(rs.getBigDecimal(1));
+                    }
+                }
+            }
+            return balance;
+        }
+    }
+
+    /**
+     * Lock every slot of the account, creating slots 0..slots-1 if missing,
+     * and return each slot's balance in cents. Slots above the configured
+     * count, left over from a larger setting, are included.
+     */
+    private Map<Integer, Long> lockAllSlots(int accountId, int slots) throws SQLException {
+        String lockSql = "SELECT slot, balance FROM ledger_balance_snapshots " +
+                "WHERE account_id = ? ORDER BY slot FOR UPDATE";
+        String tailSql = "SELECT slot, SUM(amount) FROM ledger_entries " +
+                "WHERE account_id = ? AND folded = FALSE GROUP BY slot";
+
+        Map<Integer, Long> balances = new TreeMap<>();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            for (int slot = 0; slot < slots; slot++) {
+                createSnapshot(connection, accountId, slot);
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(lockSql)) {
+                stmt.setInt(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        balances.put(rs.getInt(1), toCents(rs.getBigDecimal(2)));
+                    }
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(tailSql)) {
+                stmt.setInt(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        balances.merge(rs.getInt(1), toCents(rs.getBigDecimal(2)), Long::sum);
+                    }
+                }
+            }
+        }
+        return balances;
+    }
+
+    private void createSnapshot(Connection connection, int accountId, int slot) throws SQLException {
+        String sql = "INSERT IGNORE INTO ledger_balance_snapshots (account_id, slot, balance) VALUES (?, ?, 0)";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, accountId);
+            stmt.setInt(2, slot);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Snapshots plus the lines not yet folded into them, over all slots.
+     */
+    public Money getBalance(int accountId) throws SQLException {
+        String sql = "SELECT (SELECT COALESCE(SUM(balance), 0) FROM ledger_balance_snapshots " +
+                "WHERE account_id = ?) + " +
+                "(SELECT COALESCE(SUM(amount), 0) FROM ledger_entries WHERE account_id = ? AND folded = FALSE)";
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, accountId);
+            stmt.setInt(2, accountId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Money.of(rs.getBigDecimal(1));
+                }
+            }
+        }
+        return Money.ZERO;
+    }
+
+    public List<LedgerEntry> getEntriesByJournalId(long journalEntryId) throws SQLException {
+        List<LedgerEntry> entries = new ArrayList<>();
+        String sql = "SELECT id, journal_entry_id, account_id, slot, amount, created_at " +
+                "FROM ledger_entries WHERE journal_entry_id = ? ORDER BY id";
+
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, journalEntryId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    LedgerEntry entry = new LedgerEntry();
+                    entry.setId(rs.getLong(1));
+                    entry.setJournalEntryId(rs.getLong(2));
+                    entry.setAccountId(rs.getInt(3));
+                    entry.setSlot(rs.getInt(4));
+                    entry.setAmount(Money.of(rs.getBigDecimal(5)));
+
+                    Timestamp createdAt = rs.getTimestamp(6);
+                    if (createdAt != null) {
+                        entry.setCreatedAt(createdAt.toLocalDateTime());
+                    }
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Fold ledger lines older than {@code lagMs} into the balance snapshots and
+     * refresh users.wallet_balance for the accounts touched. Each line is
+     * marked folded in the transaction that adds it to its snapshot, so a line
+     * whose posting commits late is simply folded by a later run. Returns the
+     * number of lines folded.
+     */
+    public int compact(long lagMs) throws SQLException {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusNanos(lagMs * 1_000_000));
+        int chunkSize = AppConfig.get().getBatchSize();
+        int total = 0;
+        while (true) {
+            int folded = TransactionTemplate.execute(() -> compactChunk(cutoff, chunkSize));
+            total += folded;
+            if (folded < chunkSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Folded {} ledger line(s) into balance snapshots", total);
+        }
+        return total;
+    }
+
+    private int compactChunk(Timestamp cutoff, int chunkSize) throws SQLException {
+        // Lines of postings still in flight are locked by them and skipped, as are lines another run is folding
+        String pickSql = "SELECT id, account_id, slot, amount FROM ledger_entries " +
+                "WHERE folded = FALSE AND created_at < ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+        List<Long> ids = new ArrayList<>(chunkSize);
+        // (account_id, slot) -> cents, in account order so snapshots are locked in the same order as debits lock them
+        Map<List<Integer>, Long> sums = new TreeMap<>(
+                Comparator.<List<Integer>>comparingInt(k -> k.get(0)).thenComparingInt(k -> k.get(1)));
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(pickSql)) {
+            stmt.setTimestamp(1, cutoff);
+            stmt.setInt(2, chunkSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    sums.merge(List.of(rs.getInt(2), rs.getInt(3)), toCents(rs.getBigDecimal(4)), Long::sum);
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String createSql = "INSERT IGNORE INTO ledger_balance_snapshots (account_id, slot, balance) VALUES (?, ?, 0)";
+        try (BatchWriter<List<Integer>> writer = new BatchWriter<>(createSql, (stmt, key) -> {
+            stmt.setInt(1, key.get(0));
+            stmt.setInt(2, key.get(1));
+        })) {
+            writer.addAll(sums.keySet());
+        }
+
+        String foldSql = "UPDATE ledger_balance_snapshots SET balance = balance + ? WHERE account_id = ? AND slot = ?";
+        try (BatchWriter<Map.Entry<List<Integer>, Long>> writer = new BatchWriter<>(foldSql, (stmt, sum) -> {
+            stmt.setBigDecimal(1, BigDecimal.valueOf(sum.getValue(), 2));
+            stmt.setInt(2, sum.getKey().get(0));
+            stmt.setInt(3, sum.getKey().get(1));
+        })) {
+            writer.addAll(sums.entrySet());
+        }
+
+        try (BatchWriter<Long> writer = new BatchWriter<>("UPDATE ledger_entries SET folded = TRUE WHERE id = ?",
+                (stmt, id) -> stmt.setLong(1, id))) {
+            writer.addAll(ids);
+        }
+
+        Set<Integer> userAccounts = new TreeSet<>();
+        for (List<Integer> key : sums.keySet()) {
+            if (key.get(0) > 0) {
+                userAccounts.add(key.get(0));
+            }
+        }
+
+        // Cached copy for screens that read the users row; may trail the ledger by one interval
+        String syncSql = "UPDATE users SET wallet_balance = " +
+                "(SELECT SUM(balance) FROM ledger_balance_snapshots WHERE account_id = ?) WHERE id = ?";
+        try (BatchWriter<Integer> writer = new BatchWriter<>(syncSql, (stmt, accountId) -> {
+            stmt.setInt(1, accountId);
+            stmt.setInt(2, accountId);
+        })) {
+            writer.addAll(userAccounts);
+        }
+        return ids.size();
+    }
+
+    /**
+     * Even out the slots of every hot account whose slots have drifted apart:
+     * a slot holding less than half its share, or a slot above the configured
+     * count still holding money. The move is posted as an ordinary journal
+     * entry between slots of the same account. Returns the number of accounts
+     * rebalanced.
+     */
+    public int rebalanceHotAccounts() throws SQLException {
+        int rebalanced = 0;
+        for (Map.Entry<Integer, Integer> hot : hotAccounts.entrySet()) {
+            if (hot.getValue() > 1 && rebalance(hot.getKey(), hot.getValue())) {
+                rebalanced++;
+            }
+        }
+        if (rebalanced > 0) {
+            logger.info("Rebalanced slots of {} hot account(s)", rebalanced);
+        }
+        return rebalanced;
+    }
+
+    private boolean rebalance(int accountId, int slots) throws SQLException {
+        return TransactionTemplate.execute(() -> {
+            Map<Integer, Long> balances = lockAllSlots(accountId, slots);
+            long total = 0;
+            for (long cents : balances.values()) {
+                total += cents;
+            }
+            if (total <= 0) {
+                return false;
+            }
+
+            long share = total / slots;
+            boolean drifted = false;
+            Map<Integer, Long> deltas = new TreeMap<>();
+            for (Map.Entry<Integer, Long> slot : balances.entrySet()) {
+                int index = slot.getKey();
+                long target = index < slots ? share + (index < total % slots ? 1 : 0) : 0;
+                if (index < slots ? slot.getValue() * 2 < share : slot.getValue() != 0) {
+                    drifted = true;
+                }
+                if (slot.getValue() != target) {
+                    deltas.put(index, target - slot.getValue());
+                }
+            }
+            if (!drifted) {
+                return false;
+            }
+
+            JournalEntry entry = new JournalEntry("REBALANCE-" + accountId, "Hot account slot rebalance");
+            List<LedgerEntry> lines = new ArrayList<>();
+            for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+                lines.add(new LedgerEntry(accountId, delta.getKey(), Money.ofCents(delta.getValue())));
+            }
+            entry.setLines(lines);
+            validate(entry);
+            insert(entry);
+            return true;
+        });
+    }
+
+    /**
+     * Run {@link #compact} and {@link #rebalanceHotAccounts} in the background
+     * every {@code ledger.compaction.interval.ms}.
+     */
+    public static synchronized void startCompaction() {
+        if (compactor != null) {
+            return;
+        }
+        AppConfig config = AppConfig.get();
+        long intervalMs = config.getLedgerCompactionIntervalMs();
+        long lagMs = config.getLedgerCompactionLagMs();
+        if (intervalMs <= 0) {
+            return;
+        }
+
+        LedgerDAO dao = new LedgerDAO();
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                dao.compact(lagMs);
+                dao.rebalanceHotAccounts();
+            } catch (SQLException | RuntimeException e) {
+                logger.error("Ledger compaction failed", e);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopCompaction() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.revpay.dao;
 
 import com.revpay.models.LoanApplication;
+import com.revpay.utils.IdGenerator;
 
 import java.sql.*;
 import java.time.LocalDate;
@@ -9,11 +10,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class LoanDAO {
-    private Connection connection;
-
-    public LoanDAO() {
-        this.connection = DatabaseConnection.getConnection();
-    }
+    private static final String LOAN_COLUMNS = "id, application_id, business_user_id, loan_amount, purpose, " +
+            "term_months, interest_rate, status, financial_documents, " +
+            "monthly_revenue, credit_score, disbursed_amount, " +
+            "disbursed_date, created_at, updated_at";
 
     public LoanApplication createLoanApplication(LoanApplication loan) throws SQLException {
         String sql = "INSERT INTO loan_applications (application_id, business_user_id, " +
@@ -22,7 +22,8 @@ public class LoanDAO {
                 "disbursed_amount, disbursed_date, created_at, updated_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, loan.getApplicationId());
             stmt.setInt(2, loan.getBusinessUserId());
             stmt.setDouble(3, loan.getLoanAmount());
@@ -81,9 +82,10 @@ public class LoanDAO {
 
     public List<LoanApplication> getLoanApplicationsByUserId(int userId) throws SQLException {
         List<LoanApplication> loans = new ArrayList<>();
-        String sql = "SELECT * FROM loan_applications WHERE business_user_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + LOAN_COLUMNS + " FROM loan_applications WHERE business_user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -96,9 +98,10 @@ public class LoanDAO {
     }
 
     public LoanApplication getLoanApplicationById(String applicationId) throws SQLException {
-        String sql = "SELECT * FROM loan_applications WHERE application_id = ?";
+        String sql = "SELECT " + LOAN_COLUMNS + " FROM loan_applications WHERE application_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, applicationId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -113,7 +116,8 @@ public class LoanDAO {
     public boolean updateLoanApplicationStatus(String applicationId, String status) throws SQLException {
         String sql = "UPDATE loan_applications SET status = ?, updated_at = ? WHERE application_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, status);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(3, applicationId);
@@ -129,7 +133,8 @@ public class LoanDAO {
                 "disbursed_amount = ?, disbursed_date = ?, updated_at = ? " +
                 "WHERE application_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setDouble(1, loan.getLoanAmount());
             stmt.setString(2, loan.getPurpose());
             stmt.setInt(3, loan.getTermMonths());
@@ -176,9 +181,10 @@ public class LoanDAO {
 
     public List<LoanApplication> getPendingLoanApplications() throws SQLException {
         List<LoanApplication> loans = new ArrayList<>();
-        String sql = "SELECT * FROM loan_applications WHERE status = 'PENDING' ORDER BY created_at ASC";
+        String sql = "SELECT " + LOAN_COLUMNS + " FROM loan_applications WHERE status = 'PENDING' ORDER BY created_at ASC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     loans.add(mapResultSetToLoanApplication(rs));
@@ -191,7 +197,8 @@ public class LoanDAO {
     public int getLoanApplicationCountByStatus(int userId, String status) throws SQLException {
         String sql = "SELECT COUNT(*) FROM loan_applications WHERE business_user_id = ? AND status = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setString(2, status);
 
@@ -208,7 +215,8 @@ public class LoanDAO {
         String sql = "SELECT COALESCE(SUM(loan_amount), 0) FROM loan_applications " +
                 "WHERE business_user_id = ? AND status IN ('APPROVED', 'DISBURSED')";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -220,49 +228,50 @@ public class LoanDAO {
         return 0.0;
     }
 
+    // Reads LOAN_COLUMNS by position
     private LoanApplication mapResultSetToLoanApplication(ResultSet rs) throws SQLException {
         LoanApplication loan = new LoanApplication();
-        loan.setId(rs.getInt("id"));
-        loan.setApplicationId(rs.getString("application_id"));
-        loan.setBusinessUserId(rs.getInt("business_user_id"));
-        loan.setLoanAmount(rs.getDouble("loan_amount"));
-        loan.setPurpose(rs.getString("purpose"));
-        loan.setTermMonths(rs.getInt("term_months"));
-
-        double interestRate = rs.getDouble("interest_rate");
+        loan.setId(rs.getInt(1));
+        loan.setApplicationId(rs.getString(2));
+        loan.setBusinessUserId(rs.getInt(3));
+        loan.setLoanAmount(rs.getDouble(4));
+        loan.setPurpose(rs.getString(5));
+        loan.setTermMonths(rs.getInt(6));
+
+        double interestRate = rs.getDouble(7);
         if (!rs.wasNull()) {
             loan.setInterestRate(interestRate);
         }
 
-        loan.setStatus(rs.getString("status"));
-        loan.setFinancialDocuments(rs.getString("financial_documents"));
+        loan.setStatus(rs.getString(8));
+        loan.setFinancialDocuments(rs.getString(9));
 
-        double monthlyRevenue = rs.getDouble("monthly_revenue");
+        double monthlyRevenue = rs.getDouble(10);
         if (!rs.wasNull()) {
             loan.setMonthlyRevenue(monthlyRevenue);
         }
 
-        int creditScore = rs.getInt("credit_score");
+        int creditScore = rs.getInt(11);
         if (!rs.wasNull()) {
             loan.setCreditScore(creditScore);
         }
 
-        double disbursedAmount = rs.getDouble("disbursed_amount");
+        double disbursedAmount = rs.getDouble(12);
         if (!rs.wasNull()) {
             loan.setDisbursedAmount(disbursedAmount);
         }
 
-        Date disbursedDate = rs.getDate("disbursed_date");
+        Date disbursedDate = rs.getDate(13);
         if (disbursedDate != null) {
             loan.setDisbursedDate(disbursedDate.toLocalDate());
         }
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(14);
         if (createdAt != null) {
             loan.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(15);
         if (updatedAt != null) {
             loan.setUpdatedAt(updatedAt.toLocalDateTime());
         }
@@ -271,32 +280,58 @@ public class LoanDAO {
     }
 
     public String generateApplicationId() {
-        return "LOAN" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+        return IdGenerator.shared().next("LOAN");
     }
 
+    private static final String INSERT_REPAYMENT_SQL = "INSERT INTO loan_repayments (loan_application_id, " +
+            "installment_number, due_date, amount_due, status, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
     public boolean createLoanRepayment(int loanApplicationId, int installmentNumber,
                                        LocalDate dueDate, double amountDue) throws SQLException {
-        String sql = "INSERT INTO loan_repayments (loan_application_id, installment_number, " +
-                "due_date, amount_due, status, created_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, loanApplicationId);
-            stmt.setInt(2, installmentNumber);
-            stmt.setDate(3, Date.valueOf(dueDate));
-            stmt.setDouble(4, amountDue);
-            stmt.setString(5, "PENDING");
-            stmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(INSERT_REPAYMENT_SQL)) {
+            bindRepayment(stmt, loanApplicationId, installmentNumber, dueDate, amountDue);
 
             return stmt.executeUpdate() > 0;
         }
     }
 
+    /**
+     * Insert the full monthly installment schedule of a loan in batches,
+     * starting at {@code firstDueDate}. Returns the number of installments written.
+     */
+    public int createLoanRepaymentSchedule(int loanApplicationId, LocalDate firstDueDate,
+                                           int termMonths, double monthlyAmount) throws SQLException {
+        List<Integer> installments = new ArrayList<>(termMonths);
+        for (int i = 1; i <= termMonths; i++) {
+            installments.add(i);
+        }
+
+        try (BatchWriter<Integer> writer = new BatchWriter<>(INSERT_REPAYMENT_SQL,
+                (stmt, installment) -> bindRepayment(stmt, loanApplicationId, installment,
+                        firstDueDate.plusMonths(installment - 1), monthlyAmount))) {
+            writer.addAll(installments);
+            return writer.finish().getSuccessCount();
+        }
+    }
+
+    private void bindRepayment(PreparedStatement stmt, int loanApplicationId, int installmentNumber,
+                               LocalDate dueDate, double amountDue) throws SQLException {
+        stmt.setInt(1, loanApplicationId);
+        stmt.setInt(2, installmentNumber);
+        stmt.setDate(3, Date.valueOf(dueDate));
+        stmt.setDouble(4, amountDue);
+        stmt.setString(5, "PENDING");
+        stmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
     public boolean updateRepaymentStatus(int repaymentId, String status, double amountPaid) throws SQLException {
         String sql = "UPDATE loan_repayments SET status = ?, amount_paid = ?, " +
                 "payment_date = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, status);
             stmt.setDouble(2, amountPaid);
 
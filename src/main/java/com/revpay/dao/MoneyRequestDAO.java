@@ -1,6 +1,8 @@
 package com.revpay.dao;
 
+import com.revpay.models.Money;
 import com.revpay.models.MoneyRequest;
+import com.revpay.utils.IdGenerator;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -8,22 +10,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class MoneyRequestDAO {
-    private Connection connection;
-
-    public MoneyRequestDAO() {
-        this.connection = DatabaseConnection.getConnection();
-    }
+    private static final String REQUEST_COLUMNS = "id, request_id, requester_id, recipient_id, amount, status, " +
+            "description, expires_at, created_at, updated_at";
 
     public MoneyRequest createMoneyRequest(MoneyRequest request) throws SQLException {
         String sql = "INSERT INTO money_requests (request_id, requester_id, recipient_id, " +
                 "amount, status, description, expires_at, created_at, updated_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, request.getRequestId());
             stmt.setInt(2, request.getRequesterId());
             stmt.setInt(3, request.getRecipientId());
-            stmt.setDouble(4, request.getAmount());
+            stmt.setBigDecimal(4, request.getAmount().toBigDecimal());
             stmt.setString(5, request.getStatus());
             stmt.setString(6, request.getDescription());
 
@@ -52,9 +52,10 @@ public class MoneyRequestDAO {
 
     public List<MoneyRequest> getMoneyRequestsByRequesterId(int requesterId) throws SQLException {
         List<MoneyRequest> requests = new ArrayList<>();
-        String sql = "SELECT * FROM money_requests WHERE requester_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + REQUEST_COLUMNS + " FROM money_requests WHERE requester_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, requesterId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -68,10 +69,11 @@ public class MoneyRequestDAO {
 
     public List<MoneyRequest> getMoneyRequestsByRecipientId(int recipientId) throws SQLException {
         List<MoneyRequest> requests = new ArrayList<>();
-        String sql = "SELECT * FROM money_requests WHERE recipient_id = ? AND status = 'PENDING' " +
+        String sql = "SELECT " + REQUEST_COLUMNS + " FROM money_requests WHERE recipient_id = ? AND status = 'PENDING' " +
                 "ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, recipientId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -84,9 +86,10 @@ public class MoneyRequestDAO {
     }
 
     public MoneyRequest getMoneyRequestById(String requestId) throws SQLException {
-        String sql = "SELECT * FROM money_requests WHERE request_id = ?";
+        String sql = "SELECT " + REQUEST_COLUMNS + " FROM money_requests WHERE request_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, requestId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -101,7 +104,8 @@ public class MoneyRequestDAO {
     public boolean updateMoneyRequestStatus(String requestId, String status) throws SQLException {
         String sql = "UPDATE money_requests SET status = ?, updated_at = ? WHERE request_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, status);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(3, requestId);
@@ -110,11 +114,39 @@ public class MoneyRequestDAO {
         }
     }
 
+    /**
+     * Set the same status on many requests in batched round trips. Returns the
+     * ids of requests that were not updated.
+     */
+    public List<String> updateMoneyRequestStatuses(List<String> requestIds, String status) throws SQLException {
+        String sql = "UPDATE money_requests SET status = ?, updated_at = ? WHERE request_id = ?";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        BatchWriter.BatchResult<String> result;
+        try (BatchWriter<String> writer = new BatchWriter<>(sql, (stmt, requestId) -> {
+            stmt.setString(1, status);
+            stmt.setTimestamp(2, now);
+            stmt.setString(3, requestId);
+        })) {
+            writer.addAll(requestIds);
+            result = writer.finish();
+        }
+
+        List<String> notUpdated = new ArrayList<>();
+        for (BatchWriter.RowOutcome<String> outcome : result.getOutcomes()) {
+            if (!outcome.isSuccess() || outcome.getUpdateCount() == 0) {
+                notUpdated.add(outcome.getRow());
+            }
+        }
+        return notUpdated;
+    }
+
     public boolean cancelMoneyRequest(String requestId, int requesterId) throws SQLException {
         String sql = "UPDATE money_requests SET status = 'CANCELLED', updated_at = ? " +
                 "WHERE request_id = ? AND requester_id = ? AND status = 'PENDING'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(2, requestId);
             stmt.setInt(3, requesterId);
@@ -127,7 +159,8 @@ public class MoneyRequestDAO {
         String sql = "UPDATE money_requests SET status = 'DECLINED', updated_at = ? " +
                 "WHERE request_id = ? AND recipient_id = ? AND status = 'PENDING'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(2, requestId);
             stmt.setInt(3, recipientId);
@@ -140,7 +173,8 @@ public class MoneyRequestDAO {
         String sql = "UPDATE money_requests SET status = 'ACCEPTED', updated_at = ? " +
                 "WHERE request_id = ? AND recipient_id = ? AND status = 'PENDING'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setString(2, requestId);
             stmt.setInt(3, recipientId);
@@ -153,7 +187,8 @@ public class MoneyRequestDAO {
         String sql = "UPDATE money_requests SET status = 'EXPIRED', updated_at = ? " +
                 "WHERE status = 'PENDING' AND expires_at < ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
 
@@ -165,7 +200,8 @@ public class MoneyRequestDAO {
         String sql = "SELECT COUNT(*) FROM money_requests " +
                 "WHERE recipient_id = ? AND status = 'PENDING'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -177,27 +213,28 @@ public class MoneyRequestDAO {
         return 0;
     }
 
+    // Reads REQUEST_COLUMNS by position
     private MoneyRequest mapResultSetToMoneyRequest(ResultSet rs) throws SQLException {
         MoneyRequest request = new MoneyRequest();
-        request.setId(rs.getInt("id"));
-        request.setRequestId(rs.getString("request_id"));
-        request.setRequesterId(rs.getInt("requester_id"));
-        request.setRecipientId(rs.getInt("recipient_id"));
-        request.setAmount(rs.getDouble("amount"));
-        request.setStatus(rs.getString("status"));
-        request.setDescription(rs.getString("description"));
-
-        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        request.setId(rs.getInt(1));
+        request.setRequestId(rs.getString(2));
+        request.setRequesterId(rs.getInt(3));
+        request.setRecipientId(rs.getInt(4));
+        request.setAmount(Money.of(rs.getBigDecimal(5)));
+        request.setStatus(rs.getString(6));
+        request.setDescription(rs.getString(7));
+
+        Timestamp expiresAt = rs.getTimestamp(8);
         if (expiresAt != null) {
             request.setExpiresAt(expiresAt.toLocalDateTime());
         }
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(9);
         if (createdAt != null) {
             request.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(10);
         if (updatedAt != null) {
             request.setUpdatedAt(updatedAt.toLocalDateTime());
         }
@@ -206,7 +243,7 @@ public class MoneyRequestDAO {
     }
 
     public String generateRequestId() {
-        return "REQ" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+        return IdGenerator.shared().next("REQ");
     }
 
     public LocalDateTime getDefaultExpiryDate() {
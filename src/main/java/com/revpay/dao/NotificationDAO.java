@@ -1,6 +1,8 @@
 package com.revpay.dao;
 
+import com.revpay.models.Money;
 import com.revpay.models.Notification;
+import com.revpay.models.Transaction;
 
 import java.sql.*;
 import java.time.LocalDateTime;
@@ -8,32 +10,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class NotificationDAO {
-    private Connection connection;
+    private static final String NOTIFICATION_COLUMNS = "id, user_id, type, title, message, is_read, related_id, " +
+            "related_type, created_at";
 
-    public NotificationDAO() {
-        this.connection = DatabaseConnection.getConnection();
-    }
+    private static final String INSERT_SQL = "INSERT INTO notifications (user_id, type, title, message, " +
+            "is_read, related_id, related_type, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
     public Notification createNotification(Notification notification) throws SQLException {
-        String sql = "INSERT INTO notifications (user_id, type, title, message, " +
-                "is_read, related_id, related_type, created_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, notification.getUserId());
-            stmt.setString(2, notification.getType());
-            stmt.setString(3, notification.getTitle());
-            stmt.setString(4, notification.getMessage());
-            stmt.setBoolean(5, notification.isRead());
-
-            if (notification.getRelatedId() != null) {
-                stmt.setInt(6, notification.getRelatedId());
-            } else {
-                stmt.setNull(6, Types.INTEGER);
-            }
-
-            stmt.setString(7, notification.getRelatedType());
-            stmt.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindNotification(stmt, notification);
 
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -49,11 +36,41 @@ public class NotificationDAO {
         return notification;
     }
 
+    /**
+     * Insert several notifications in one batch round trip. Generated ids are
+     * not read back.
+     */
+    public BatchWriter.BatchResult<Notification> createNotifications(List<Notification> notifications)
+            throws SQLException {
+        try (BatchWriter<Notification> writer = new BatchWriter<>(INSERT_SQL, this::bindNotification)) {
+            writer.addAll(notifications);
+            return writer.finish();
+        }
+    }
+
+    private void bindNotification(PreparedStatement stmt, Notification notification) throws SQLException {
+        stmt.setInt(1, notification.getUserId());
+        stmt.setString(2, notification.getType());
+        stmt.setString(3, notification.getTitle());
+        stmt.setString(4, notification.getMessage());
+        stmt.setBoolean(5, notification.isRead());
+
+        if (notification.getRelatedId() != null) {
+            stmt.setInt(6, notification.getRelatedId());
+        } else {
+            stmt.setNull(6, Types.INTEGER);
+        }
+
+        stmt.setString(7, notification.getRelatedType());
+        stmt.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
     public List<Notification> getNotificationsByUserId(int userId) throws SQLException {
         List<Notification> notifications = new ArrayList<>();
-        String sql = "SELECT * FROM notifications WHERE user_id = ? ORDER BY created_at DESC limit 10";
+        String sql = "SELECT " + NOTIFICATION_COLUMNS + " FROM notifications WHERE user_id = ? ORDER BY created_at DESC limit 10";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -68,9 +85,10 @@ public class NotificationDAO {
 //    View all notifications
     public List<Notification> getAllNotificationsByUserId(int userId) throws SQLException {
         List<Notification> notifications = new ArrayList<>();
-        String sql = "SELECT * FROM notifications WHERE user_id = ? ORDER BY created_at DESC";
+        String sql = "SELECT " + NOTIFICATION_COLUMNS + " FROM notifications WHERE user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -84,10 +102,11 @@ public class NotificationDAO {
 
     public List<Notification> getUnreadNotificationsByUserId(int userId) throws SQLException {
         List<Notification> notifications = new ArrayList<>();
-        String sql = "SELECT * FROM notifications WHERE user_id = ? AND is_read = FALSE " +
+        String sql = "SELECT " + NOTIFICATION_COLUMNS + " FROM notifications WHERE user_id = ? AND is_read = FALSE " +
                 "ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -102,7 +121,8 @@ public class NotificationDAO {
     public int getUnreadNotificationCount(int userId) throws SQLException {
         String sql = "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND is_read = FALSE";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -117,7 +137,8 @@ public class NotificationDAO {
     public boolean markNotificationAsRead(int notificationId) throws SQLException {
         String sql = "UPDATE notifications SET is_read = TRUE WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, notificationId);
 
             return stmt.executeUpdate() > 0;
@@ -127,7 +148,8 @@ public class NotificationDAO {
     public boolean markAllNotificationsAsRead(int userId) throws SQLException {
         String sql = "UPDATE notifications SET is_read = TRUE WHERE user_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             return stmt.executeUpdate() > 0;
@@ -137,7 +159,8 @@ public class NotificationDAO {
     public boolean deleteNotification(int notificationId) throws SQLException {
         String sql = "DELETE FROM notifications WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, notificationId);
 
             return stmt.executeUpdate() > 0;
@@ -147,7 +170,8 @@ public class NotificationDAO {
     public void deleteOldNotifications(int days) throws SQLException {
         String sql = "DELETE FROM notifications WHERE created_at < ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             LocalDateTime cutoffDate = LocalDateTime.now().minusDays(days);
             stmt.setTimestamp(1, Timestamp.valueOf(cutoffDate));
 
@@ -157,10 +181,11 @@ public class NotificationDAO {
 
     public List<Notification> getNotificationsByType(int userId, String type) throws SQLException {
         List<Notification> notifications = new ArrayList<>();
-        String sql = "SELECT * FROM notifications WHERE user_id = ? AND type = ? " +
+        String sql = "SELECT " + NOTIFICATION_COLUMNS + " FROM notifications WHERE user_id = ? AND type = ? " +
                 "ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setString(2, type);
 
@@ -173,23 +198,24 @@ public class NotificationDAO {
         return notifications;
     }
 
+    // Reads NOTIFICATION_COLUMNS by position
     private Notification mapResultSetToNotification(ResultSet rs) throws SQLException {
         Notification notification = new Notification();
-        notification.setId(rs.getInt("id"));
-        notification.setUserId(rs.getInt("user_id"));
-        notification.setType(rs.getString("type"));
-        notification.setTitle(rs.getString("title"));
-        notification.setMessage(rs.getString("message"));
-        notification.setRead(rs.getBoolean("is_read"));
-
-        int relatedId = rs.getInt("related_id");
+        notification.setId(rs.getInt(1));
+        notification.setUserId(rs.getInt(2));
+        notification.setType(rs.getString(3));
+        notification.setTitle(rs.getString(4));
+        notification.setMessage(rs.getString(5));
+        notification.setRead(rs.getBoolean(6));
+
+        int relatedId = rs.getInt(7);
         if (!rs.wasNull()) {
             notification.setRelatedId(relatedId);
         }
 
-        notification.setRelatedType(rs.getString("related_type"));
+        notification.setRelatedType(rs.getString(8));
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(9);
         if (createdAt != null) {
             notification.setCreatedAt(createdAt.toLocalDateTime());
         }
@@ -198,20 +224,51 @@ public class NotificationDAO {
     }
 
     public void createTransactionNotification(int userId, String transactionId,
-                                              double amount, String type) throws SQLException {
+                                              Money amount, String type) throws SQLException {
+        createNotification(buildTransactionNotification(userId, transactionId, amount, type));
+    }
+
+    /**
+     * Notify both sides of a transfer with a single batched insert.
+     */
+    public void createTransactionNotifications(int senderId, String senderType,
+                                               int receiverId, String receiverType,
+                                               String transactionId, Money amount) throws SQLException {
+        List<Notification> notifications = new ArrayList<>(2);
+        notifications.add(buildTransactionNotification(senderId, transactionId, amount, senderType));
+        notifications.add(buildTransactionNotification(receiverId, transactionId, amount, receiverType));
+        createNotifications(notifications);
+    }
+
+    /**
+     * Notify both sides of many transfers with batched inserts.
+     */
+    public void createTransactionNotifications(List<Transaction> transactions, String senderType,
+                                               String receiverType) throws SQLException {
+        List<Notification> notifications = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            notifications.add(buildTransactionNotification(transaction.getSenderId(),
+                    transaction.getTransactionId(), transaction.getAmount(), senderType));
+            notifications.add(buildTransactionNotification(transaction.getReceiverId(),
+                    transaction.getTransactionId(), transaction.getAmount(), receiverType));
+        }
+        createNotifications(notifications);
+    }
+
+    private Notification buildTransactionNotification(int userId, String transactionId,
+                                                      Money amount, String type) {
         String title = "Transaction " + type;
-        String message = String.format("Your transaction %s of $%.2f has been %s",
-                transactionId, amount, type.toLowerCase());
+        String message = "Your transaction " + transactionId + " of " + amount.format() +
+                " has been " + type.toLowerCase();
 
-        Notification notification = new Notification(userId, "TRANSACTION", title, message);
-        createNotification(notification);
+        return new Notification(userId, "TRANSACTION", title, message);
     }
 
     public void createMoneyRequestNotification(int userId, String requestId,
-                                               double amount, boolean isIncoming) throws SQLException {
+                                               Money amount, boolean isIncoming) throws SQLException {
         String title = isIncoming ? "Money Request Received" : "Money Request Sent";
-        String message = String.format("Money request %s for $%.2f has been %s",
-                requestId, amount, isIncoming ? "received" : "sent");
+        String message = "Money request " + requestId + " for " + amount.format() +
+                " has been " + (isIncoming ? "received" : "sent");
 
         Notification notification = new Notification(userId, "REQUEST", title, message);
         createNotification(notification);
@@ -219,20 +276,20 @@ public class NotificationDAO {
 
 //    MoneyRequestToClient
     public void createMoneyRequestReceiverNotification(int userId, String name, String requestId,
-                                               double amount, boolean isIncoming) throws SQLException {
+                                               Money amount, boolean isIncoming) throws SQLException {
         String title = isIncoming ? "Money Request Received" : "Money Request Sent";
-        String message = String.format("Money request %s for $%.2f has been %s from %s",
-                requestId, amount, isIncoming ? "received" : "sent", name);
+        String message = "Money request " + requestId + " for " + amount.format() +
+                " has been " + (isIncoming ? "received" : "sent") + " from " + name;
 
         Notification notification = new Notification(userId, "REQUEST", title, message);
         createNotification(notification);
     }
 
     public void createInvoiceNotification(int userId, String invoiceNumber,
-                                          double amount, String status) throws SQLException {
+                                          Money amount, String status) throws SQLException {
         String title = "Invoice " + status;
-        String message = String.format("Invoice %s for $%.2f has been %s",
-                invoiceNumber, amount, status.toLowerCase());
+        String message = "Invoice " + invoiceNumber + " for " + amount.format() +
+                " has been " + status.toLowerCase();
 
         Notification notification = new Notification(userId, "INVOICE", title, message);
         createNotification(notification);
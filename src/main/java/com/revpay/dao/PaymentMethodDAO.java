@@ -8,12 +8,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PaymentMethodDAO {
-    private Connection connection;
+    private static final String PAYMENT_METHOD_COLUMNS = "id, user_id, card_type, card_number_encrypted, " +
+            "card_holder_name, expiry_month, expiry_year, cvv_encrypted, " +
+            "is_default, is_active, bank_name, account_number_encrypted, " +
+            "routing_number, created_at";
+
     private EncryptionService encryptionService;
 
     public PaymentMethodDAO() {
-        this.connection = DatabaseConnection.getConnection();
-        this.encryptionService = new EncryptionService();
+        this(new EncryptionService());
+    }
+
+    public PaymentMethodDAO(EncryptionService encryptionService) {
+        this.encryptionService = encryptionService;
     }
 
     public PaymentMethod createPaymentMethod(PaymentMethod paymentMethod) throws SQLException {
@@ -23,7 +30,8 @@ public class PaymentMethodDAO {
                 "routing_number, created_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setInt(1, paymentMethod.getUserId());
             stmt.setString(2, paymentMethod.getCardType());
             stmt.setString(3, paymentMethod.getCardNumberEncrypted());
@@ -55,9 +63,10 @@ public class PaymentMethodDAO {
 
     public List<PaymentMethod> getPaymentMethodsByUserId(int userId) throws SQLException {
         List<PaymentMethod> methods = new ArrayList<>();
-        String sql = "SELECT * FROM payment_methods WHERE user_id = ? AND is_active = TRUE ORDER BY is_default DESC, created_at DESC";
+        String sql = "SELECT " + PAYMENT_METHOD_COLUMNS + " FROM payment_methods WHERE user_id = ? AND is_active = TRUE ORDER BY is_default DESC, created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -70,9 +79,10 @@ public class PaymentMethodDAO {
     }
 
     public PaymentMethod getPaymentMethodById(int id) throws SQLException {
-        String sql = "SELECT * FROM payment_methods WHERE id = ?";
+        String sql = "SELECT " + PAYMENT_METHOD_COLUMNS + " FROM payment_methods WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -85,9 +95,10 @@ public class PaymentMethodDAO {
     }
 
     public PaymentMethod getDefaultPaymentMethod(int userId) throws SQLException {
-        String sql = "SELECT * FROM payment_methods WHERE user_id = ? AND is_default = TRUE AND is_active = TRUE";
+        String sql = "SELECT " + PAYMENT_METHOD_COLUMNS + " FROM payment_methods WHERE user_id = ? AND is_default = TRUE AND is_active = TRUE";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -105,7 +116,8 @@ public class PaymentMethodDAO {
                 "cvv_encrypted = ?, is_default = ?, is_active = ?, bank_name = ?, " +
                 "account_number_encrypted = ?, routing_number = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, paymentMethod.getCardType());
             stmt.setString(2, paymentMethod.getCardNumberEncrypted());
             stmt.setString(3, paymentMethod.getCardHolderName());
@@ -126,27 +138,29 @@ public class PaymentMethodDAO {
     public boolean setDefaultPaymentMethod(int userId, int paymentMethodId) throws SQLException {
         // First, reset all payment methods for this user to non-default
         String resetSql = "UPDATE payment_methods SET is_default = FALSE WHERE user_id = ?";
-
-        try (PreparedStatement resetStmt = connection.prepareStatement(resetSql)) {
-            resetStmt.setInt(1, userId);
-            resetStmt.executeUpdate();
-        }
-
         // Then set the specified method as default
         String setSql = "UPDATE payment_methods SET is_default = TRUE WHERE id = ? AND user_id = ?";
 
-        try (PreparedStatement setStmt = connection.prepareStatement(setSql)) {
-            setStmt.setInt(1, paymentMethodId);
-            setStmt.setInt(2, userId);
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            try (PreparedStatement resetStmt = connection.prepareStatement(resetSql)) {
+                resetStmt.setInt(1, userId);
+                resetStmt.executeUpdate();
+            }
+
+            try (PreparedStatement setStmt = connection.prepareStatement(setSql)) {
+                setStmt.setInt(1, paymentMethodId);
+                setStmt.setInt(2, userId);
 
-            return setStmt.executeUpdate() > 0;
+                return setStmt.executeUpdate() > 0;
+            }
         }
     }
 
     public boolean deactivatePaymentMethod(int paymentMethodId) throws SQLException {
         String sql = "UPDATE payment_methods SET is_active = FALSE WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, paymentMethodId);
 
             return stmt.executeUpdate() > 0;
@@ -156,7 +170,8 @@ public class PaymentMethodDAO {
     public boolean deletePaymentMethod(int paymentMethodId) throws SQLException {
         String sql = "DELETE FROM payment_methods WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, paymentMethodId);
 
             return stmt.executeUpdate() > 0;
@@ -166,7 +181,8 @@ public class PaymentMethodDAO {
     public boolean hasActivePaymentMethods(int userId) throws SQLException {
         String sql = "SELECT COUNT(*) FROM payment_methods WHERE user_id = ? AND is_active = TRUE";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -178,23 +194,24 @@ public class PaymentMethodDAO {
         return false;
     }
 
+    // Reads PAYMENT_METHOD_COLUMNS by position
     private PaymentMethod mapResultSetToPaymentMethod(ResultSet rs) throws SQLException {
         PaymentMethod method = new PaymentMethod();
-        method.setId(rs.getInt("id"));
-        method.setUserId(rs.getInt("user_id"));
-        method.setCardType(rs.getString("card_type"));
-        method.setCardNumberEncrypted(rs.getString("card_number_encrypted"));
-        method.setCardHolderName(rs.getString("card_holder_name"));
-        method.setExpiryMonth(rs.getInt("expiry_month"));
-        method.setExpiryYear(rs.getInt("expiry_year"));
-        method.setCvvEncrypted(rs.getString("cvv_encrypted"));
-        method.setDefault(rs.getBoolean("is_default"));
-        method.setActive(rs.getBoolean("is_active"));
-        method.setBankName(rs.getString("bank_name"));
-        method.setAccountNumberEncrypted(rs.getString("account_number_encrypted"));
-        method.setRoutingNumber(rs.getString("routing_number"));
-
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        method.setId(rs.getInt(1));
+        method.setUserId(rs.getInt(2));
+        method.setCardType(rs.getString(3));
+        method.setCardNumberEncrypted(rs.getString(4));
+        method.setCardHolderName(rs.getString(5));
+        method.setExpiryMonth(rs.getInt(6));
+        method.setExpiryYear(rs.getInt(7));
+        method.setCvvEncrypted(rs.getString(8));
+        method.setDefault(rs.getBoolean(9));
+        method.setActive(rs.getBoolean(10));
+        method.setBankName(rs.getString(11));
+        method.setAccountNumberEncrypted(rs.getString(12));
+        method.setRoutingNumber(rs.getString(13));
+
+        Timestamp createdAt = rs.getTimestamp(14);
         if (createdAt != null) {
             method.setCreatedAt(createdAt.toLocalDateTime());
         }
@@ -227,25 +244,4 @@ public class PaymentMethodDAO {
 
         return true;
     }
-
-    public double getWalletBalance(int id)  {
-
-//        System.out.println("[PaymentMethodDAO] id: "+id);
-        String sql = "SELECT wallet_balance FROM users WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getDouble("wallet_balance"); // or rs.getDouble(1)
-            } else {
-                throw new RuntimeException("No user found with id: " + id);
-            }
-
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-
-    }
 }
\ No newline at end of file
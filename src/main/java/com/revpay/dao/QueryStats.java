@@ -0,0 +1,202 @@
+package com.revpay.dao;
+
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-statement execution statistics, keyed by SQL text.
+ *
+ * Every prepared statement handed out by the pool reports here: execution
+ * latency into a log2 histogram, rows returned or affected, and errors.
+ * Executions slower than {@code db.slow.query.threshold.ms} are logged with
+ * their bind parameters masked by {@link LoggerUtil#maskSensitiveData}.
+ *
+ * Recording is switched by {@code db.stats.enabled}; when off, statements
+ * skip all of this.
+ */
+public final class QueryStats {
+    private static final Logger slowLogger = LoggerUtil.getLogger("com.revpay.dao.SlowQuery");
+
+    // Bucket i counts executions under 2^i microseconds; the last bucket is everything slower
+    private static final int BUCKETS = 25;
+
+    private static final boolean enabled = AppConfig.get().isStatsEnabled();
+    private static final long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            AppConfig.get().getSlowQueryThresholdMs());
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private QueryStats() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    static Entry entry(String sql) {
+        return entries.computeIfAbsent(sql, Entry::new);
+    }
+
+    /**
+     * Record one execution. {@code params} holds the first {@code paramCount}
+     * bind values by parameter index (slot 0 unused) and is only read when the
+     * execution was slow.
+     */
+    static void record(Entry entry, long elapsedNanos, long rows, boolean failed,
+                       Object[] params, int paramCount) {
+        entry.record(elapsedNanos, rows, failed);
+        if (slowThresholdNanos > 0 && elapsedNanos >= slowThresholdNanos) {
+            slowLogger.warn("Slow query ({} ms{}): {} params={}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), failed ? ", failed" : "",
+                    entry.sql, formatParams(params, paramCount));
+        }
+    }
+
+    private static String formatParams(Object[] params, int paramCount) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i <= paramCount && params != null; i++) {
+            if (i > 1) sb.append(", ");
+            sb.append(LoggerUtil.maskSensitiveData(params[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Statements ordered by total execution time, slowest first.
+     */
+    public static List<Snapshot> top(int n) {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            snapshots.add(entry.snapshot());
+        }
+        snapshots.sort(Comparator.comparingLong(Snapshot::getTotalNanos).reversed());
+        return snapshots.size() > n ? new ArrayList<>(snapshots.subList(0, n)) : snapshots;
+    }
+
+    public static String report(int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-8s %10s %9s %9s %9s %9s %7s  %s%n",
+                "Calls", "Total ms", "Avg ms", "p95 ms", "Max ms", "Rows", "Errors", "SQL"));
+        for (Snapshot s : top(n)) {
+            sb.append(String.format("%-8d %10.1f %9.2f %9.2f %9.2f %9d %7d  %s%n",
+                    s.getCalls(), s.getTotalNanos() / 1e6, s.getAverageMillis(), s.getPercentileMillis(95),
+                    s.getMaxNanos() / 1e6, s.getRows(), s.getErrors(), s.getSql()));
+        }
+        return sb.toString();
+    }
+
+    public static void reset() {
+        entries.clear();
+    }
+
+    static final class Entry {
+        private final String sql;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        Entry(String sql) {
+            this.sql = sql;
+        }
+
+        void record(long elapsedNanos, long rowCount, boolean failed) {
+            calls.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            if (rowCount > 0) {
+                rows.add(rowCount);
+            }
+            if (failed) {
+                errors.increment();
+            }
+            histogram.incrementAndGet(bucket(elapsedNanos));
+        }
+
+        // Rows read from a ResultSet arrive after the execution was recorded
+        void addRows(long rowCount) {
+            rows.add(rowCount);
+        }
+
+        private static int bucket(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            return Math.min(bucket, BUCKETS - 1);
+        }
+
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+            }
+            return new Snapshot(sql, calls.sum(), totalNanos.sum(), maxNanos.get(),
+                    rows.sum(), errors.sum(), counts);
+        }
+    }
+
+    public static final class Snapshot {
+        private final String sql;
+        private final long calls;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long rows;
+        private final long errors;
+        private final long[] histogram;
+
+        Snapshot(String sql, long calls, long totalNanos, long maxNanos, long rows, long errors,
+                 long[] histogram) {
+            this.sql = sql;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.rows = rows;
+            this.errors = errors;
+            this.histogram = histogram;
+        }
+
+        public String getSql() { return sql; }
+        public long getCalls() { return calls; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxNanos() { return maxNanos; }
+        public long getRows() { return rows; }
+        public long getErrors() { return errors; }
+
+        public double getAverageMillis() {
+            return calls == 0 ? 0 : totalNanos / 1e6 / calls;
+        }
+
+        /**
+         * Upper bound of the histogram bucket holding the given percentile.
+         */
+        public double getPercentileMillis(int percentile) {
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    return i == histogram.length - 1 ? maxNanos / 1e6 : (1L << i) / 1000.0;
+                }
+            }
+            return maxNanos / 1e6;
+        }
+    }
+}
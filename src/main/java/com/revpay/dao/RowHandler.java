@@ -0,0 +1,12 @@
+package com.revpay.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time from a streaming query. Rows must not be kept
+ * past the call if the caller wants memory to stay flat.
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    void handle(T row) throws IOException;
+}
@@ -0,0 +1,315 @@
+package com.revpay.dao;
+
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of PreparedStatements for one physical connection, keyed by SQL
+ * text and the generated-keys flag.
+ *
+ * Callers get a proxy whose close() clears the parameters and parks the
+ * statement for the next caller instead of closing it. A connection is only
+ * ever used by one lease at a time, so the cache itself is not thread-safe.
+ *
+ * Every statement handed out also reports executed writes to {@code onWrite},
+ * which the read/write router uses for read-your-writes stickiness, and
+ * records its executions in {@link QueryStats}.
+ */
+class StatementCache {
+    private static final Logger logger = LoggerUtil.getLogger(StatementCache.class);
+
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final Runnable onWrite;
+    private final Map<Key, CachedStatement> entries;
+
+    StatementCache(int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions,
+                   Runnable onWrite) {
+        this.maxSize = maxSize;
+        this.onWrite = onWrite;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    eldest.getValue().evict();
+                    StatementCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return a prepared statement for the given SQL, reusing a cached one when
+     * it is not already open elsewhere in the same lease.
+     */
+    PreparedStatement prepare(Connection physical, Connection handle, String sql,
+                              int autoGeneratedKeys) throws SQLException {
+        Key key = maxSize > 0 ? new Key(sql, autoGeneratedKeys) : null;
+        CachedStatement cached = key != null ? entries.get(key) : null;
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        misses.increment();
+        PreparedStatement statement = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS
+                ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : physical.prepareStatement(sql);
+
+        // Cache disabled, or the same SQL is already open in this lease (nested use):
+        // hand out a one-shot statement that really closes
+        boolean cacheable = key != null && cached == null;
+        CachedStatement created = new CachedStatement(statement, handle, onWrite, !cacheable,
+                QueryStats.isEnabled() ? QueryStats.entry(sql) : null);
+        created.inUse = true;
+        if (cacheable) {
+            entries.put(key, created);
+        }
+        return created.proxy;
+    }
+
+    void closeAll() {
+        for (CachedStatement cached : entries.values()) {
+            cached.evict();
+        }
+        entries.clear();
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+        private final int hash;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.hash = 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && Objects.equals(sql, other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement physical;
+        private final Connection handle;
+        private final PreparedStatement proxy;
+        private final Runnable onWrite;
+        private final QueryStats.Entry stats;
+        // Bind values by parameter index, kept for the slow-query log
+        private Object[] params;
+        private int paramCount;
+        private boolean inUse = false;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement physical, Connection handle, Runnable onWrite,
+                        boolean oneShot, QueryStats.Entry stats) {
+            this.physical = physical;
+            this.handle = handle;
+            this.onWrite = onWrite;
+            this.evicted = oneShot;
+            this.stats = stats;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing evicted statement", e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        paramCount = 0;
+                        if (evicted) {
+                            closeQuietly();
+                        } else {
+                            // Drop rows left over from a batch that failed part-way
+                            physical.clearBatch();
+                            physical.clearParameters();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || physical.isClosed();
+                case "getConnection":
+                    return handle;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "clearParameters":
+                    paramCount = 0;
+                    break;
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                case "execute":
+                    if (inUse && onWrite != null) {
+                        onWrite.run();
+                    }
+                    break;
+                default:
+                    if (stats != null && name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer) {
+                        rememberParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    }
+                    break;
+            }
+
+            if (!inUse) {
+                throw new SQLException("Statement is closed");
+            }
+
+            if (stats == null || !name.startsWith("execute")) {
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            long start = System.nanoTime();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = method.invoke(physical, args);
+                failed = false;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                QueryStats.record(stats, System.nanoTime() - start, affectedRows(result), failed,
+                        params, paramCount);
+            }
+
+            if (result instanceof ResultSet) {
+                return countingResultSet((ResultSet) result, (PreparedStatement) proxy);
+            }
+            return result;
+        }
+
+        private void rememberParameter(int index, Object value) {
+            if (index < 1 || index > 1024) {
+                return;
+            }
+            if (params == null || params.length <= index) {
+                Object[] grown = new Object[Math.max(index + 1, 8)];
+                if (params != null) {
+                    System.arraycopy(params, 0, grown, 0, params.length);
+                }
+                params = grown;
+            }
+            if (index > paramCount) {
+                // Clear slots skipped since the last execution so stale values aren't logged
+                Arrays.fill(params, paramCount + 1, index, null);
+                paramCount = index;
+            }
+            params[index] = value;
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Integer) {
+                return (Integer) result;
+            }
+            if (result instanceof Long) {
+                return (Long) result;
+            }
+            long total = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    total += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    total += Math.max(count, 0);
+                }
+            }
+            return total;
+        }
+
+        // Counts rows as the caller reads them and adds the total on close
+        private ResultSet countingResultSet(ResultSet resultSet, PreparedStatement owner) {
+            long[] rows = {0};
+            boolean[] reported = {false};
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, (rsProxy, rsMethod, rsArgs) -> {
+                        switch (rsMethod.getName()) {
+                            case "getStatement":
+                                return owner;
+                            case "equals":
+                                return rsProxy == rsArgs[0];
+                            case "hashCode":
+                                return System.identityHashCode(rsProxy);
+                            case "close":
+                                if (!reported[0]) {
+                                    reported[0] = true;
+                                    stats.addRows(rows[0]);
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                        Object value;
+                        try {
+                            value = rsMethod.invoke(resultSet, rsArgs);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if ("next".equals(rsMethod.getName()) && Boolean.TRUE.equals(value)) {
+                            rows[0]++;
+                        }
+                        return value;
+                    });
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.revpay.dao;
+
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves COMPLETED transactions older than {@code archive.after.days} from
+ * transactions into the compressed, monthly-partitioned transactions_archive
+ * table, and tells TransactionDAO when a read has to look there too.
+ *
+ * Rows move a batch at a time: the batch is locked, copied and deleted in one
+ * short transaction that touches no other rows, with a pause between
+ * batches, so live inserts and updates never wait on more than one batch.
+ *
+ * The archive horizon is the newest created_at in the archive. It is cached
+ * for {@code archive.horizon.refresh.ms} and raised here before each batch
+ * commits, so this process never misses a moved row; another process sees
+ * rows this one archived once its cache refreshes.
+ */
+public class TransactionArchiveDAO {
+    private static final Logger logger = LoggerUtil.getLogger(TransactionArchiveDAO.class);
+
+    static final String TABLE = "transactions_archive";
+
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private static ScheduledExecutorService archiver;
+
+    private final long horizonRefreshMs;
+    // Guarded by this
+    private LocalDateTime horizon;
+    private long horizonLoadedAt;
+    private boolean horizonLoaded;
+    private long archivedRows;
+
+    // Held while partitions are checked and added, apart from the horizon lock
+    private final Object partitionLock = new Object();
+    // Last month with its own partition; null until read from the schema
+    private volatile YearMonth partitionedThrough;
+    private boolean partitioned = true;
+
+    public TransactionArchiveDAO() {
+        this.horizonRefreshMs = AppConfig.get().getArchiveHorizonRefreshMs();
+    }
+
+    /**
+     * Whether anything has been archived yet.
+     */
+    boolean hasArchived() throws SQLException {
+        return getHorizon() != null;
+    }
+
+    /**
+     * Whether a read of rows created at or after {@code from} (null for all of
+     * history) may find some of them in the archive.
+     */
+    boolean reaches(LocalDateTime from) throws SQLException {
+        LocalDateTime newest = getHorizon();
+        return newest != null && (from == null || !from.isAfter(newest));
+    }
+
+    boolean reaches(Timestamp from) throws SQLException {
+        return reaches(from != null ? from.toLocalDateTime() : null);
+    }
+
+    /**
+     * Newest created_at in the archive, or null while it is empty.
+     */
+    public synchronized LocalDateTime getHorizon() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (horizonLoaded && now - horizonLoadedAt < horizonRefreshMs) {
+            return horizon;
+        }
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT MAX(created_at) FROM " + TABLE);
+             ResultSet rs = stmt.executeQuery()) {
+            Timestamp newest = rs.next() ? rs.getTimestamp(1) : null;
+            raiseHorizon(newest != null ? newest.toLocalDateTime() : null);
+        }
+        horizonLoaded = true;
+        horizonLoadedAt = now;
+        return horizon;
+    }
+
+    private synchronized void raiseHorizon(LocalDateTime newest) {
+        if (newest != null && (horizon == null || newest.isAfter(horizon))) {
+            horizon = newest;
+        }
+    }
+
+    /**
+     * Archive COMPLETED transactions created before {@code cutoff}, oldest
+     * first, {@code batchSize} per transaction, sleeping {@code pauseMs}
+     * between batches and stopping after {@code maxBatches}. Returns the rows
+     * moved.
+     */
+    public long archiveBefore(LocalDateTime cutoff, int batchSize, long pauseMs, int maxBatches)
+            throws SQLException {
+        long start = System.nanoTime();
+        long total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int moved = archiveBatch(cutoff, batchSize);
+            total += moved;
+            if (moved < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            synchronized (this) {
+                archivedRows += total;
+            }
+            logger.info("Archived {} transactions created before {} in {} ms",
+                    total, cutoff, (System.nanoTime() - start) / 1_000_000);
+        }
+        return total;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff, int batchSize) throws SQLException {
+        String pick = "SELECT id, created_at FROM transactions WHERE status = 'COMPLETED' AND created_at < ? " +
+                "ORDER BY created_at, id LIMIT ?";
+
+        List<Integer> ids = new ArrayList<>(batchSize);
+        LocalDateTime oldest = null;
+        LocalDateTime newest = null;
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(pick)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+            stmt.setInt(2, batchSize);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                    newest = rs.getTimestamp(2).toLocalDateTime();
+                    if (oldest == null) {
+                        oldest = newest;
+                    }
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // DDL commits implicitly, so partitions are added before the move starts
+        ensurePartitions(YearMonth.from(oldest), YearMonth.from(newest));
+        // Readers must look in the archive before the rows can disappear from transactions
+        raiseHorizon(newest);
+
+        String in = " WHERE id IN (" + placeholders(ids.size()) + ")";
+        String lock = "SELECT id FROM transactions" + in + " AND status = 'COMPLETED' FOR UPDATE";
+        return TransactionTemplate.execute(() -> {
+            try (Connection connection = DatabaseConnection.getConnection()) {
+                // Only rows still COMPLETED once locked are moved
+                List<Integer> locked = new ArrayList<>(ids.size());
+                try (PreparedStatement stmt = connection.prepareStatement(lock)) {
+                    bindIds(stmt, ids);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            locked.add(rs.getInt(1));
+                        }
+                    }
+                }
+                if (locked.isEmpty()) {
+                    return 0;
+                }
+
+                String lockedIn = " WHERE id IN (" + placeholders(locked.size()) + ")";
+                String copy = "INSERT INTO " + TABLE + " (" + TransactionDAO.TRANSACTION_COLUMNS + ") " +
+                        "SELECT " + TransactionDAO.TRANSACTION_COLUMNS + " FROM transactions" + lockedIn;
+                try (PreparedStatement insert = connection.prepareStatement(copy);
+                     PreparedStatement delete = connection.prepareStatement("DELETE FROM transactions" + lockedIn)) {
+                    bindIds(insert, locked);
+                    int copied = insert.executeUpdate();
+                    bindIds(delete, locked);
+                    int deleted = delete.executeUpdate();
+                    if (copied != deleted) {
+                        throw new SQLException("Archived " + copied + " rows but deleted " + deleted);
+                    }
+                    return deleted;
+                }
+            }
+        });
+    }
+
+    /**
+     * Give every month from {@code from} to {@code to} its own partition,
+     * split off p_future in month order. Does nothing if the archive table
+     * isn't partitioned.
+     */
+    private void ensurePartitions(YearMonth from, YearMonth to) throws SQLException {
+        synchronized (partitionLock) {
+            addPartitions(from, to);
+        }
+    }
+
+    private void addPartitions(YearMonth from, YearMonth to) throws SQLException {
+        if (!partitioned) {
+            return;
+        }
+        if (partitionedThrough == null) {
+            partitionedThrough = loadPartitionedThrough();
+            if (!partitioned) {
+                return;
+            }
+            if (partitionedThrough == null) {
+                partitionedThrough = from.minusMonths(1);
+            }
+        }
+        if (!to.isAfter(partitionedThrough)) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(TABLE)
+                .append(" REORGANIZE PARTITION ").append(FUTURE_PARTITION).append(" INTO (");
+        for (YearMonth month = partitionedThrough.plusMonths(1); !month.isAfter(to); month = month.plusMonths(1)) {
+            sql.append("PARTITION ").append(partitionName(month))
+                    .append(" VALUES LESS THAN (UNIX_TIMESTAMP('").append(month.plusMonths(1).atDay(1))
+                    .append(" 00:00:00')), ");
+        }
+        sql.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            stmt.executeUpdate();
+        }
+        logger.info("Added archive partitions {} through {}",
+                partitionName(partitionedThrough.plusMonths(1)), partitionName(to));
+        partitionedThrough = to;
+    }
+
+    private YearMonth loadPartitionedThrough() throws SQLException {
+        String sql = "SELECT partition_name FROM information_schema.partitions " +
+                "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL";
+
+        YearMonth latest = null;
+        boolean hasFuture = false;
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, TABLE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    if (FUTURE_PARTITION.equalsIgnoreCase(name)) {
+                        hasFuture = true;
+                    } else if (name.length() == 7 && name.charAt(0) == 'p') {
+                        YearMonth month = YearMonth.of(Integer.parseInt(name.substring(1, 5)),
+                                Integer.parseInt(name.substring(5)));
+                        if (latest == null || month.isAfter(latest)) {
+                            latest = month;
+                        }
+                    }
+                }
+            }
+        }
+        if (!hasFuture) {
+            logger.warn("{} has no {} partition; archiving without monthly partitions", TABLE, FUTURE_PARTITION);
+            partitioned = false;
+        }
+        return latest;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static void bindIds(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TransactionArchive{horizon=" + horizon + ", archived=" + archivedRows +
+                ", partitionedThrough=" + partitionedThrough + "}";
+    }
+
+    /**
+     * Run {@link #archiveBefore} in the background every
+     * {@code archive.interval.ms}, for rows older than
+     * {@code archive.after.days}.
+     */
+    public static synchronized void startArchiver(TransactionArchiveDAO dao) {
+        if (archiver != null) {
+            return;
+        }
+        AppConfig config = AppConfig.get();
+        long intervalMs = config.getArchiveIntervalMs();
+        int afterDays = config.getArchiveAfterDays();
+        int batchSize = config.getArchiveBatchSize();
+        long pauseMs = config.getArchivePauseMs();
+        int maxBatches = config.getArchiveMaxBatches();
+        if (intervalMs <= 0) {
+            return;
+        }
+
+        archiver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transaction-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(() -> {
+            try {
+                dao.archiveBefore(LocalDateTime.now().minusDays(afterDays), batchSize, pauseMs, maxBatches);
+            } catch (SQLException | RuntimeException e) {
+                logger.error("Transaction archiving failed", e);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopArchiver() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+            archiver = null;
+        }
+    }
+}
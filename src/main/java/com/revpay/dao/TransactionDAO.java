@@ -1,75 +1,201 @@
 package com.revpay.dao;
 
+import com.revpay.models.Money;
 import com.revpay.models.Transaction;
+import com.revpay.models.TransactionPage;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.IdGenerator;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TransactionDAO {
-    private Connection connection;
+    static final String TRANSACTION_COLUMNS = "id, transaction_id, sender_id, receiver_id, amount, " +
+            "transaction_type, status, description, payment_method_id, " +
+            "transaction_fee, is_recurring, recurring_frequency, " +
+            "invoice_id, created_at, journal_entry_id";
+
+    private static final String SELECT_TRANSACTIONS = "SELECT " + TRANSACTION_COLUMNS + " FROM transactions";
+    private static final String SELECT_ARCHIVED = "SELECT " + TRANSACTION_COLUMNS + " FROM " +
+            TransactionArchiveDAO.TABLE;
+
+    private static final String INSERT_SQL = "INSERT INTO transactions (transaction_id, sender_id, receiver_id, " +
+            "amount, transaction_type, status, description, payment_method_id, " +
+            "transaction_fee, is_recurring, recurring_frequency, invoice_id, " +
+            "created_at, journal_entry_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Transaction ids matched by IN (...) per query when loading search results
+    private static final int SEARCH_FETCH_CHUNK = 500;
+
+    private final TransactionRollupDAO rollupDAO = new TransactionRollupDAO();
+    private final TransactionArchiveDAO archiveDAO = new TransactionArchiveDAO();
+    private final TransactionSearchIndex searchIndex = new TransactionSearchIndex(this::streamSearchEntries,
+            AppConfig.get().getSearchIndexMaxDocs());
+
+    /**
+     * Insert a transaction and add it to the daily rollups, in one database
+     * transaction (the caller's, if there is one).
+     */
+    public Transaction createTransaction(Transaction transaction) throws SQLException {
+        return TransactionTemplate.execute(() -> {
+            try (Connection connection = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                bindTransaction(stmt, transaction);
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Creating transaction failed, no rows affected.");
+                }
 
-    public TransactionDAO() {
-        this.connection = DatabaseConnection.getConnection();
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        transaction.setId(generatedKeys.getInt(1));
+                    }
+                }
+            }
+            rollupDAO.apply(List.of(transaction), 1);
+            indexAfterCommit(transaction);
+            return transaction;
+        });
     }
 
-    public Transaction createTransaction(Transaction transaction) throws SQLException {
-        String sql = "INSERT INTO transactions (transaction_id, sender_id, receiver_id, " +
-                "amount, transaction_type, status, description, payment_method_id, " +
-                "transaction_fee, is_recurring, recurring_frequency, invoice_id, " +
-                "created_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, transaction.getTransactionId());
-            stmt.setInt(2, transaction.getSenderId());
-            stmt.setInt(3, transaction.getReceiverId());
-            stmt.setDouble(4, transaction.getAmount());
-            stmt.setString(5, transaction.getTransactionType());
-            stmt.setString(6, transaction.getStatus());
-            stmt.setString(7, transaction.getDescription());
-
-            if (transaction.getPaymentMethodId() != null) {
-                stmt.setInt(8, transaction.getPaymentMethodId());
-            } else {
-                stmt.setNull(8, Types.INTEGER);
+    /**
+     * Insert several transactions in one batch round trip, with their daily
+     * rollups, in one database transaction. Generated ids are not read back.
+     */
+    public BatchWriter.BatchResult<Transaction> createTransactions(List<Transaction> transactions)
+            throws SQLException {
+        return TransactionTemplate.execute(() -> {
+            BatchWriter.BatchResult<Transaction> result;
+            try (BatchWriter<Transaction> writer = new BatchWriter<>(INSERT_SQL, this::bindTransaction)) {
+                writer.addAll(transactions);
+                result = writer.finish();
+            }
+            List<Transaction> written = new ArrayList<>(result.getSuccessCount());
+            for (BatchWriter.RowOutcome<Transaction> outcome : result.getOutcomes()) {
+                if (outcome.isSuccess()) {
+                    written.add(outcome.getRow());
+                    indexAfterCommit(outcome.getRow());
+                }
             }
+            rollupDAO.apply(written, 1);
+            return result;
+        });
+    }
 
-            stmt.setDouble(9, transaction.getTransactionFee());
-            stmt.setBoolean(10, transaction.isRecurring());
-            stmt.setString(11, transaction.getRecurringFrequency());
+    private void indexAfterCommit(Transaction transaction) {
+        TransactionTemplate.afterCommit(() -> searchIndex.onCreated(transaction.getTransactionId(),
+                transaction.getDescription(), transaction.getSenderId(), transaction.getReceiverId()));
+    }
 
-            if (transaction.getInvoiceId() != null) {
-                stmt.setInt(12, transaction.getInvoiceId());
-            } else {
-                stmt.setNull(12, Types.INTEGER);
-            }
+    private void bindTransaction(PreparedStatement stmt, Transaction transaction) throws SQLException {
+        stmt.setString(1, transaction.getTransactionId());
+        stmt.setInt(2, transaction.getSenderId());
+        stmt.setInt(3, transaction.getReceiverId());
+        stmt.setBigDecimal(4, transaction.getAmount().toBigDecimal());
+        stmt.setString(5, transaction.getTransactionType());
+        stmt.setString(6, transaction.getStatus());
+        stmt.setString(7, transaction.getDescription());
+
+        if (transaction.getPaymentMethodId() != null) {
+            stmt.setInt(8, transaction.getPaymentMethodId());
+        } else {
+            stmt.setNull(8, Types.INTEGER);
+        }
 
-            stmt.setTimestamp(13, Timestamp.valueOf(LocalDateTime.now()));
+        stmt.setBigDecimal(9, transaction.getTransactionFee().toBigDecimal());
+        stmt.setBoolean(10, transaction.isRecurring());
+        stmt.setString(11, transaction.getRecurringFrequency());
 
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating transaction failed, no rows affected.");
-            }
+        if (transaction.getInvoiceId() != null) {
+            stmt.setInt(12, transaction.getInvoiceId());
+        } else {
+            stmt.setNull(12, Types.INTEGER);
+        }
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    transaction.setId(generatedKeys.getInt(1));
-                }
+        // Kept on the object so the rollups use the same day as the row
+        if (transaction.getCreatedAt() == null) {
+            transaction.setCreatedAt(LocalDateTime.now());
+        }
+        stmt.setTimestamp(13, Timestamp.valueOf(transaction.getCreatedAt()));
+
+        if (transaction.getJournalEntryId() != null) {
+            stmt.setLong(14, transaction.getJournalEntryId());
+        } else {
+            stmt.setNull(14, Types.BIGINT);
+        }
+    }
+
+    /**
+     * A user's rows as a UNION ALL of the rows they sent and the rows they
+     * received, so each half is a range scan on idx_transactions_sender_created
+     * or idx_transactions_receiver_created instead of one scan for
+     * "sender_id = ? OR receiver_id = ?". Rows with the user on both sides
+     * (wallet top-ups and withdrawals) come from the sender half only.
+     *
+     * {@code conditions} and {@code branchTail} are repeated in both halves;
+     * bind them with {@link #bindByParty}.
+     */
+    private static String byParty(String select, String conditions, String branchTail) {
+        return "(" + select + " WHERE sender_id = ?" + conditions + branchTail + ") UNION ALL (" +
+                select + " WHERE receiver_id = ? AND sender_id <> ?" + conditions + branchTail + ")";
+    }
+
+    /**
+     * {@link #byParty} over transactions and, when {@code withArchive}, the
+     * same two halves over transactions_archive.
+     */
+    private static String byParty(boolean withArchive, String conditions, String branchTail) {
+        String live = byParty(SELECT_TRANSACTIONS, conditions, branchTail);
+        return withArchive ? live + " UNION ALL " + byParty(SELECT_ARCHIVED, conditions, branchTail) : live;
+    }
+
+    /**
+     * Rows of every half of {@link #byParty}, merged newest first.
+     */
+    private static String byPartyNewestFirst(boolean withArchive, String conditions, String branchTail,
+                                             String outerTail) {
+        return "SELECT " + TRANSACTION_COLUMNS + " FROM (" + byParty(withArchive, conditions, branchTail) +
+                ") t ORDER BY created_at DESC, id DESC" + outerTail;
+    }
+
+    /**
+     * Bind the user and {@code values} in every half of a {@link #byParty}
+     * query. Returns the index of the next parameter.
+     */
+    private static int bindByParty(PreparedStatement stmt, boolean withArchive, int userId, Object... values)
+            throws SQLException {
+        int index = 1;
+        for (int tables = withArchive ? 2 : 1; tables > 0; tables--) {
+            stmt.setInt(index++, userId);
+            for (Object value : values) {
+                stmt.setObject(index++, value);
+            }
+            stmt.setInt(index++, userId);
+            stmt.setInt(index++, userId);
+            for (Object value : values) {
+                stmt.setObject(index++, value);
             }
         }
-        return transaction;
+        return index;
     }
 
     public List<Transaction> getTransactionsByUserId(int userId) throws SQLException {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE sender_id = ? OR receiver_id = ? " +
-                "ORDER BY created_at DESC";
+        boolean withArchive = archiveDAO.hasArchived();
+        String sql = byPartyNewestFirst(withArchive, "", "", "");
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, userId);
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindByParty(stmt, withArchive, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -82,13 +208,12 @@ public class TransactionDAO {
 
     public List<Transaction> getTransactionsByUserIdAndType(int userId, String type) throws SQLException {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE (sender_id = ? OR receiver_id = ?) " +
-                "AND transaction_type = ? ORDER BY created_at DESC";
+        boolean withArchive = archiveDAO.hasArchived();
+        String sql = byPartyNewestFirst(withArchive, " AND transaction_type = ?", "", "");
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, userId);
-            stmt.setString(3, type);
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindByParty(stmt, withArchive, userId, type);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -101,14 +226,14 @@ public class TransactionDAO {
 
     public List<Transaction> getTransactionsByDateRange(int userId, Date startDate, Date endDate) throws SQLException {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE (sender_id = ? OR receiver_id = ?) " +
-                "AND DATE(created_at) BETWEEN ? AND ? ORDER BY created_at DESC";
+        Timestamp from = startOfDay(startDate);
+        boolean withArchive = archiveDAO.reaches(from);
+        // Half-open range on the raw column rather than DATE(created_at), so the index applies
+        String sql = byPartyNewestFirst(withArchive, " AND created_at >= ? AND created_at < ?", "", "");
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, userId);
-            stmt.setDate(3, startDate);
-            stmt.setDate(4, endDate);
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindByParty(stmt, withArchive, userId, from, startOfNextDay(endDate));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
@@ -119,10 +244,103 @@ public class TransactionDAO {
         return transactions;
     }
 
+    /**
+     * Every transaction of a user, oldest first, handed to {@code handler} as
+     * it is read; nothing is buffered. For exports.
+     */
+    public long streamTransactionsByUserId(int userId, RowHandler<Transaction> handler)
+            throws SQLException, IOException {
+        boolean withArchive = archiveDAO.hasArchived();
+        String sql = "SELECT " + TRANSACTION_COLUMNS + " FROM (" + byParty(withArchive, "", "") +
+                ") t ORDER BY created_at, id";
+
+        long rows = 0;
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = DatabaseConnection.prepareStreaming(connection, sql)) {
+            bindByParty(stmt, withArchive, userId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapResultSetToTransaction(rs));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * One page of a user's history, newest first, starting after {@code after}
+     * (null for the first page). {@code type}, {@code startDate} and
+     * {@code endDate} are optional filters, as in
+     * {@link #getTransactionsByUserIdAndType} and {@link #getTransactionsByDateRange}.
+     *
+     * Pages are keyed on (created_at, id) rather than an offset, so each one
+     * costs the same however deep into the history it is, and rows inserted
+     * meanwhile don't shift later pages.
+     */
+    public TransactionPage getTransactionsPage(int userId, String type, Date startDate, Date endDate,
+                                               TransactionPage.Cursor after, int pageSize) throws SQLException {
+        StringBuilder conditions = new StringBuilder();
+        List<Object> values = new ArrayList<>(6);
+        if (type != null) {
+            conditions.append(" AND transaction_type = ?");
+            values.add(type);
+        }
+        // Half-open range on the raw column so the index can be used
+        Timestamp from = startDate != null ? startOfDay(startDate) : null;
+        if (from != null) {
+            conditions.append(" AND created_at >= ?");
+            values.add(from);
+        }
+        if (endDate != null) {
+            conditions.append(" AND created_at < ?");
+            values.add(startOfNextDay(endDate));
+        }
+        if (after != null) {
+            conditions.append(" AND (created_at, id) < (?, ?)");
+            values.add(Timestamp.valueOf(after.createdAt()));
+            values.add(after.id());
+        }
+        // Each half stops after a page too, so a page never reads more than two pages of rows
+        values.add(pageSize + 1);
+        boolean withArchive = archiveDAO.reaches(from);
+        String sql = byPartyNewestFirst(withArchive, conditions.toString(),
+                " ORDER BY created_at DESC, id DESC LIMIT ?", " LIMIT ?");
+
+        List<Transaction> rows = new ArrayList<>(pageSize + 1);
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = bindByParty(stmt, withArchive, userId, values.toArray());
+            // One extra row tells whether another page follows
+            stmt.setInt(index, pageSize + 1);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rows.size() <= pageSize && rs.next()) {
+                    rows.add(mapResultSetToTransaction(rs));
+                }
+            }
+        }
+        return TransactionPage.fromRows(rows, pageSize);
+    }
+
+    /**
+     * The transaction with this id, from transactions or, failing that, the
+     * archive.
+     */
     public Transaction getTransactionById(String transactionId) throws SQLException {
-        String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
+        Transaction transaction = getTransactionById(SELECT_TRANSACTIONS, transactionId);
+        if (transaction == null && archiveDAO.hasArchived()) {
+            transaction = getTransactionById(SELECT_ARCHIVED, transactionId);
+        }
+        return transaction;
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    private Transaction getTransactionById(String select, String transactionId) throws SQLException {
+        String sql = select + " WHERE transaction_id = ?";
+
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, transactionId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -134,135 +352,264 @@ public class TransactionDAO {
         return null;
     }
 
+    /**
+     * Change a transaction's status and move it between rollup rows, in one
+     * database transaction. Archived transactions are COMPLETED for good and
+     * are not found here.
+     */
     public boolean updateTransactionStatus(String transactionId, String status) throws SQLException {
+        String select = "SELECT " + TRANSACTION_COLUMNS + " FROM transactions WHERE transaction_id = ? FOR UPDATE";
         String sql = "UPDATE transactions SET status = ? WHERE transaction_id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, status);
-            stmt.setString(2, transactionId);
+        return TransactionTemplate.execute(() -> {
+            Transaction transaction;
+            try (Connection connection = DatabaseConnection.getConnection();
+                 PreparedStatement lock = connection.prepareStatement(select);
+                 PreparedStatement stmt = connection.prepareStatement(sql)) {
+                lock.setString(1, transactionId);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    transaction = mapResultSetToTransaction(rs);
+                }
+
+                stmt.setString(1, status);
+                stmt.setString(2, transactionId);
+                stmt.executeUpdate();
+            }
+
+            if (!status.equals(transaction.getStatus())) {
+                rollupDAO.apply(List.of(transaction), -1);
+                transaction.setStatus(status);
+                rollupDAO.apply(List.of(transaction), 1);
+            }
+            return true;
+        });
+    }
+
+    public Money getTotalSentAmount(int userId, LocalDateTime start, LocalDateTime end) throws SQLException {
+        return getCompletedAmount(userId, start, end, "sender_id",
+                TransactionRollupDAO.SENT, TransactionRollupDAO.SELF);
+    }
+
+    public Money getTotalReceivedAmount(int userId, LocalDateTime start, LocalDateTime end) throws SQLException {
+        return getCompletedAmount(userId, start, end, "receiver_id",
+                TransactionRollupDAO.RECEIVED, TransactionRollupDAO.SELF);
+    }
 
-            return stmt.executeUpdate() > 0;
+    /**
+     * Sum of the user's COMPLETED transactions on one side between start and
+     * end inclusive. Whole days come from the daily rollups; only the partial
+     * days at either end read transactions rows.
+     */
+    private Money getCompletedAmount(int userId, LocalDateTime start, LocalDateTime end, String partyColumn,
+                                     String... directions) throws SQLException {
+        LocalDate firstWholeDay = start.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+        LocalDate lastDay = end.toLocalDate();
+        if (!firstWholeDay.isBefore(lastDay)) {
+            return getCompletedAmountFromRows(userId, partyColumn, start, end);
+        }
+        Money total = rollupDAO.getAmount(userId, "COMPLETED", firstWholeDay, lastDay, directions);
+        if (start.isBefore(firstWholeDay.atStartOfDay())) {
+            total = total.plus(getCompletedAmountFromRows(userId, partyColumn, start,
+                    firstWholeDay.atStartOfDay().minusNanos(1)));
         }
+        return total.plus(getCompletedAmountFromRows(userId, partyColumn, lastDay.atStartOfDay(), end));
     }
 
-    public double getTotalSentAmount(int userId, LocalDateTime start, LocalDateTime end) throws SQLException {
-        String sql = "SELECT COALESCE(SUM(amount), 0) FROM transactions " +
-                "WHERE sender_id = ? AND status = 'COMPLETED' " +
+    private Money getCompletedAmountFromRows(int userId, String partyColumn, LocalDateTime start, LocalDateTime end)
+            throws SQLException {
+        Money total = getCompletedAmountFromRows("transactions", userId, partyColumn, start, end);
+        if (archiveDAO.reaches(start)) {
+            total = total.plus(getCompletedAmountFromRows(TransactionArchiveDAO.TABLE, userId, partyColumn,
+                    start, end));
+        }
+        return total;
+    }
+
+    private Money getCompletedAmountFromRows(String table, int userId, String partyColumn, LocalDateTime start,
+                                             LocalDateTime end) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(amount), 0) FROM " + table + " " +
+                "WHERE " + partyColumn + " = ? AND status = 'COMPLETED' " +
                 "AND created_at BETWEEN ? AND ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setTimestamp(2, Timestamp.valueOf(start));
             stmt.setTimestamp(3, Timestamp.valueOf(end));
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return Money.of(rs.getBigDecimal(1));
                 }
             }
         }
-        return 0.0;
+        return Money.ZERO;
     }
 
-    public double getTotalReceivedAmount(int userId, LocalDateTime start, LocalDateTime end) throws SQLException {
-        String sql = "SELECT COALESCE(SUM(amount), 0) FROM transactions " +
-                "WHERE receiver_id = ? AND status = 'COMPLETED' " +
-                "AND created_at BETWEEN ? AND ?";
+    /**
+     * All-time number of the user's transactions with the given status, from
+     * the daily rollups.
+     */
+    public int getTransactionCount(int userId, String status) throws SQLException {
+        return (int) rollupDAO.getCount(userId, status);
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setTimestamp(2, Timestamp.valueOf(start));
-            stmt.setTimestamp(3, Timestamp.valueOf(end));
+    public TransactionRollupDAO getRollupDAO() {
+        return rollupDAO;
+    }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble(1);
+    public TransactionArchiveDAO getArchiveDAO() {
+        return archiveDAO;
+    }
+
+    /**
+     * Transactions of the user whose id, description or counterparty username
+     * contains {@code searchTerm}, ignoring case, newest first. Matched in the
+     * in-memory {@link TransactionSearchIndex}; only the matching rows are read.
+     */
+    public List<Transaction> searchTransactions(int userId, String searchTerm) throws SQLException {
+        List<String> transactionIds = searchIndex.search(userId, searchTerm);
+        List<Transaction> transactions = new ArrayList<>(transactionIds.size());
+        for (int from = 0; from < transactionIds.size(); from += SEARCH_FETCH_CHUNK) {
+            transactions.addAll(getTransactionsByIds(
+                    transactionIds.subList(from, Math.min(from + SEARCH_FETCH_CHUNK, transactionIds.size()))));
+        }
+        return transactions;
+    }
+
+    // Rows for the given transaction ids, in the order of the ids, from transactions then the archive
+    private List<Transaction> getTransactionsByIds(List<String> transactionIds) throws SQLException {
+        Map<String, Transaction> byId = new HashMap<>(transactionIds.size() * 2);
+        readTransactionsByIds(SELECT_TRANSACTIONS, transactionIds, byId);
+        if (byId.size() < transactionIds.size() && archiveDAO.hasArchived()) {
+            List<String> missing = new ArrayList<>(transactionIds.size() - byId.size());
+            for (String transactionId : transactionIds) {
+                if (!byId.containsKey(transactionId)) {
+                    missing.add(transactionId);
                 }
             }
+            readTransactionsByIds(SELECT_ARCHIVED, missing, byId);
         }
-        return 0.0;
+
+        List<Transaction> transactions = new ArrayList<>(byId.size());
+        for (String transactionId : transactionIds) {
+            Transaction transaction = byId.get(transactionId);
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
     }
 
-    public int getTransactionCount(int userId, String status) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM transactions " +
-                "WHERE (sender_id = ? OR receiver_id = ?) AND status = ?";
+    private void readTransactionsByIds(String select, List<String> transactionIds, Map<String, Transaction> byId)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(select).append(" WHERE transaction_id IN (");
+        for (int i = 0; i < transactionIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, userId);
-            stmt.setString(3, status);
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < transactionIds.size(); i++) {
+                stmt.setString(i + 1, transactionIds.get(i));
+            }
 
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+                while (rs.next()) {
+                    Transaction transaction = mapResultSetToTransaction(rs);
+                    byId.put(transaction.getTransactionId(), transaction);
                 }
             }
         }
-        return 0;
     }
 
-    public List<Transaction> searchTransactions(int userId, String searchTerm) throws SQLException {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT t.* FROM transactions t " +
-                "JOIN users u1 ON t.sender_id = u1.id " +
-                "JOIN users u2 ON t.receiver_id = u2.id " +
-                "WHERE (t.sender_id = ? OR t.receiver_id = ?) " +
-                "AND (t.transaction_id LIKE ? OR t.description LIKE ? " +
-                "OR u1.username LIKE ? OR u2.username LIKE ?) " +
-                "ORDER BY t.created_at DESC";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, userId);
-            String searchPattern = "%" + searchTerm + "%";
-            stmt.setString(3, searchPattern);
-            stmt.setString(4, searchPattern);
-            stmt.setString(5, searchPattern);
-            stmt.setString(6, searchPattern);
+    // Feeds the search index: every transaction of a user with the other party's username, oldest first.
+    // Reads the primary: inserts committed while the index is unbuilt are skipped by it and must be here.
+    private void streamSearchEntries(int userId, RowHandler<TransactionSearchIndex.Entry> handler)
+            throws SQLException, IOException {
+        boolean withArchive = archiveDAO.hasArchived();
+        String sql = "SELECT transaction_id, description, counterparty_id, username FROM (" +
+                searchEntries("transactions") +
+                (withArchive ? " UNION ALL " + searchEntries(TransactionArchiveDAO.TABLE) : "") +
+                ") x ORDER BY created_at, id";
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = DatabaseConnection.prepareStreaming(connection, sql)) {
+            bindByParty(stmt, withArchive, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    transactions.add(mapResultSetToTransaction(rs));
+                    handler.handle(new TransactionSearchIndex.Entry(rs.getString(1), rs.getString(2),
+                            rs.getInt(3), rs.getString(4)));
                 }
             }
         }
-        return transactions;
     }
 
+    private static String searchEntries(String table) {
+        return "(SELECT t.transaction_id, t.description, u.id AS counterparty_id, u.username, t.created_at, t.id " +
+                "FROM " + table + " t JOIN users u ON u.id = t.receiver_id WHERE t.sender_id = ?) UNION ALL " +
+                "(SELECT t.transaction_id, t.description, u.id AS counterparty_id, u.username, t.created_at, t.id " +
+                "FROM " + table + " t JOIN users u ON u.id = t.sender_id WHERE t.receiver_id = ? AND t.sender_id <> ?)";
+    }
+
+    public TransactionSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    private static Timestamp startOfDay(Date date) {
+        return Timestamp.valueOf(date.toLocalDate().atStartOfDay());
+    }
+
+    private static Timestamp startOfNextDay(Date date) {
+        return Timestamp.valueOf(date.toLocalDate().plusDays(1).atStartOfDay());
+    }
+
+    // Reads TRANSACTION_COLUMNS by position
     private Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
         Transaction transaction = new Transaction();
-        transaction.setId(rs.getInt("id"));
-        transaction.setTransactionId(rs.getString("transaction_id"));
-        transaction.setSenderId(rs.getInt("sender_id"));
-        transaction.setReceiverId(rs.getInt("receiver_id"));
-        transaction.setAmount(rs.getDouble("amount"));
-        transaction.setTransactionType(rs.getString("transaction_type"));
-        transaction.setStatus(rs.getString("status"));
-        transaction.setDescription(rs.getString("description"));
-
-        int paymentMethodId = rs.getInt("payment_method_id");
+        transaction.setId(rs.getInt(1));
+        transaction.setTransactionId(rs.getString(2));
+        transaction.setSenderId(rs.getInt(3));
+        transaction.setReceiverId(rs.getInt(4));
+        transaction.setAmount(Money.of(rs.getBigDecimal(5)));
+        transaction.setTransactionType(rs.getString(6));
+        transaction.setStatus(rs.getString(7));
+        transaction.setDescription(rs.getString(8));
+
+        int paymentMethodId = rs.getInt(9);
         if (!rs.wasNull()) {
             transaction.setPaymentMethodId(paymentMethodId);
         }
 
-        transaction.setTransactionFee(rs.getDouble("transaction_fee"));
-        transaction.setRecurring(rs.getBoolean("is_recurring"));
-        transaction.setRecurringFrequency(rs.getString("recurring_frequency"));
+        transaction.setTransactionFee(Money.of(rs.getBigDecimal(10)));
+        transaction.setRecurring(rs.getBoolean(11));
+        transaction.setRecurringFrequency(rs.getString(12));
 
-        int invoiceId = rs.getInt("invoice_id");
+        int invoiceId = rs.getInt(13);
         if (!rs.wasNull()) {
             transaction.setInvoiceId(invoiceId);
         }
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(14);
         if (createdAt != null) {
             transaction.setCreatedAt(createdAt.toLocalDateTime());
         }
 
+        long journalEntryId = rs.getLong(15);
+        if (!rs.wasNull()) {
+            transaction.setJournalEntryId(journalEntryId);
+        }
+
         return transaction;
     }
 
     public String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + (int)(Math.random() * 1000);
+        return IdGenerator.shared().next("TXN");
     }
 }
\ No newline at end of file
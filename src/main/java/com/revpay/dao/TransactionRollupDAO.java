@@ -0,0 +1,226 @@
+package com.revpay.dao;
+
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-user, per-day totals of transactions in transaction_daily_rollup, by
+ * direction, type and status.
+ *
+ * Each transaction counts once for each party: SENT for the sender and
+ * RECEIVED for the receiver, or a single SELF row when both are the same
+ * user (wallet top-ups and withdrawals). TransactionDAO keeps the rollups
+ * current in the same database transaction as its inserts and status
+ * changes; {@link #rebuild} regenerates them from the transactions and
+ * transactions_archive tables. Archiving a row leaves its rollups alone.
+ */
+public class TransactionRollupDAO {
+    private static final Logger logger = LoggerUtil.getLogger(TransactionRollupDAO.class);
+
+    static final String SENT = "SENT";
+    static final String RECEIVED = "RECEIVED";
+    static final String SELF = "SELF";
+
+    private static final String UPSERT_SQL = "INSERT INTO transaction_daily_rollup (user_id, day, direction, " +
+            "transaction_type, status, txn_count, amount_sum) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE txn_count = txn_count + VALUES(txn_count), " +
+            "amount_sum = amount_sum + VALUES(amount_sum)";
+
+    // Archived rows still count, so both tables are read
+    private static final String REBUILD_SQL = "INSERT INTO transaction_daily_rollup (user_id, day, direction, " +
+            "transaction_type, status, txn_count, amount_sum) " +
+            "SELECT user_id, day, direction, transaction_type, status, COUNT(*), SUM(amount) FROM (" +
+            rebuildSource("transactions") + " UNION ALL " + rebuildSource(TransactionArchiveDAO.TABLE) +
+            ") x GROUP BY user_id, day, direction, transaction_type, status";
+
+    /**
+     * One change to one rollup row.
+     */
+    private record Delta(int userId, LocalDate day, String direction, String type, String status,
+                         long count, long cents) {}
+
+    private record Key(int userId, LocalDate day, String direction, String type, String status) {}
+
+    /**
+     * Add ({@code sign} 1) or remove ({@code sign} -1) the given transactions,
+     * merged into one upsert per rollup row. Call inside the transaction that
+     * writes them.
+     */
+    void apply(List<Transaction> transactions, int sign) throws SQLException {
+        Map<Key, long[]> totals = new LinkedHashMap<>();
+        for (Transaction t : transactions) {
+            LocalDate day = t.getCreatedAt().toLocalDate();
+            long cents = t.getAmount().getCents();
+            if (t.getSenderId() == t.getReceiverId()) {
+                add(totals, new Key(t.getSenderId(), day, SELF, t.getTransactionType(), t.getStatus()), sign, cents);
+            } else {
+                add(totals, new Key(t.getSenderId(), day, SENT, t.getTransactionType(), t.getStatus()), sign, cents);
+                add(totals, new Key(t.getReceiverId(), day, RECEIVED, t.getTransactionType(), t.getStatus()), sign, cents);
+            }
+        }
+
+        List<Delta> deltas = new ArrayList<>(totals.size());
+        for (Map.Entry<Key, long[]> entry : totals.entrySet()) {
+            Key key = entry.getKey();
+            deltas.add(new Delta(key.userId(), key.day(), key.direction(), key.type(), key.status(),
+                    entry.getValue()[0], entry.getValue()[1]));
+        }
+        try (BatchWriter<Delta> writer = new BatchWriter<>(UPSERT_SQL, TransactionRollupDAO::bindDelta)) {
+            writer.addAll(deltas);
+            BatchWriter.BatchResult<Delta> result = writer.finish();
+            if (!result.isAllSuccessful()) {
+                throw new SQLException(result.getFailureCount() + " rollup row(s) could not be written");
+            }
+        }
+    }
+
+    private static void add(Map<Key, long[]> totals, Key key, int sign, long cents) {
+        long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+        total[0] += sign;
+        total[1] += sign * cents;
+    }
+
+    private static void bindDelta(PreparedStatement stmt, Delta delta) throws SQLException {
+        stmt.setInt(1, delta.userId());
+        stmt.setDate(2, Date.valueOf(delta.day()));
+        stmt.setString(3, delta.direction());
+        stmt.setString(4, delta.type());
+        stmt.setString(5, delta.status());
+        stmt.setLong(6, delta.count());
+        stmt.setBigDecimal(7, Money.ofCents(delta.cents()).toBigDecimal());
+    }
+
+    /**
+     * Sum of the user's transactions in {@code directions} with the given
+     * status, over the days from {@code fromDay} up to but excluding
+     * {@code toDay}.
+     */
+    Money getAmount(int userId, String status, LocalDate fromDay, LocalDate toDay, String... directions)
+            throws SQLException {
+        String sql = "SELECT COALESCE(SUM(amount_sum), 0) FROM transaction_daily_rollup " +
+                "WHERE user_id = ? AND day >= ? AND day < ? AND status = ? AND direction IN (" +
+                placeholders(directions.length) + ")";
+
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setDate(2, Date.valueOf(fromDay));
+            stmt.setDate(3, Date.valueOf(toDay));
+            stmt.setString(4, status);
+            for (int i = 0; i < directions.length; i++) {
+                stmt.setString(5 + i, directions[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return Money.of(rs.getBigDecimal(1));
+                }
+            }
+        }
+        return Money.ZERO;
+    }
+
+    /**
+     * All-time number of the user's transactions with the given status.
+     */
+    long getCount(int userId, String status) throws SQLException {
+        String sql = "SELECT COALESCE(SUM(txn_count), 0) FROM transaction_daily_rollup " +
+                "WHERE user_id = ? AND status = ?";
+
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, status);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Regenerate every rollup row from the transactions table. Users are
+     * split into ranges of {@code rollup.rebuild.chunk.users} ids; each range
+     * is deleted and re-aggregated in its own transaction, with as many
+     * ranges in flight at once as AsyncDAO allows. Returns the rollup rows
+     * written.
+     */
+    public long rebuild() throws SQLException {
+        int chunkUsers = AppConfig.get().getRollupRebuildChunkUsers();
+        int minId;
+        int maxId;
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM users");
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return 0;
+            }
+            minId = rs.getInt(1);
+            maxId = rs.getInt(2);
+        }
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += chunkUsers) {
+            int lo = (int) from;
+            int hi = (int) Math.min(from + chunkUsers, (long) maxId + 1);
+            chunks.add(AsyncDAO.supply(() -> TransactionTemplate.execute(() -> rebuildRange(lo, hi))));
+        }
+        long rows = 0;
+        for (CompletableFuture<Integer> chunk : chunks) {
+            rows += AsyncDAO.await(chunk);
+        }
+        logger.info("Rebuilt {} rollup rows for users {}..{} in {} chunks, {} ms",
+                rows, minId, maxId, chunks.size(), (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private static String rebuildSource(String table) {
+        return "SELECT sender_id AS user_id, DATE(created_at) AS day, " +
+                "IF(sender_id = receiver_id, 'SELF', 'SENT') AS direction, transaction_type, status, amount " +
+                "FROM " + table + " WHERE sender_id >= ? AND sender_id < ? " +
+                "UNION ALL " +
+                "SELECT receiver_id, DATE(created_at), 'RECEIVED', transaction_type, status, amount " +
+                "FROM " + table + " WHERE receiver_id >= ? AND receiver_id < ? AND sender_id <> receiver_id";
+    }
+
+    private int rebuildRange(int fromUserId, int toUserId) throws SQLException {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM transaction_daily_rollup WHERE user_id >= ? AND user_id < ?");
+             PreparedStatement insert = connection.prepareStatement(REBUILD_SQL)) {
+            delete.setInt(1, fromUserId);
+            delete.setInt(2, toUserId);
+            delete.executeUpdate();
+
+            // Two ranges per table
+            for (int index = 1; index <= 8; index += 2) {
+                insert.setInt(index, fromUserId);
+                insert.setInt(index + 1, toUserId);
+            }
+            return insert.executeUpdate();
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,279 @@
+package com.revpay.dao;
+
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory trigram index over each user's transactions: transaction id,
+ * description and counterparty username, matched case-insensitively as a
+ * substring, like the LIKE '%term%' it replaces.
+ *
+ * A user's index is built from the database on their first search and then
+ * kept current from committed inserts. Users are evicted least recently
+ * searched first once the indexes together hold more than
+ * {@code search.index.max.docs} transactions.
+ *
+ * A search intersects the posting lists of the term's trigrams and confirms
+ * each candidate against its text. Terms under three characters scan the
+ * user's texts instead. Results are transaction ids, newest first.
+ */
+public class TransactionSearchIndex {
+    private static final Logger logger = LoggerUtil.getLogger(TransactionSearchIndex.class);
+
+    // Separates fields in a document so a match can't span two of them
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    /**
+     * One transaction as seen by one of its parties.
+     */
+    public record Entry(String transactionId, String description, int counterpartyId, String counterpartyUsername) {}
+
+    /**
+     * Streams every transaction of a user, oldest first.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load(int userId, RowHandler<Entry> handler) throws SQLException, IOException;
+    }
+
+    private final Loader loader;
+    private final long maxDocs;
+    // Least recently used first; guarded by this
+    private final LinkedHashMap<Integer, UserIndex> users = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalDocs;
+    private long builds;
+    private long evictions;
+
+    public TransactionSearchIndex(Loader loader, long maxDocs) {
+        this.loader = loader;
+        this.maxDocs = maxDocs;
+    }
+
+    /**
+     * Ids of the user's transactions matching {@code term}, newest first.
+     */
+    public List<String> search(int userId, String term) throws SQLException {
+        UserIndex index;
+        synchronized (this) {
+            index = users.computeIfAbsent(userId, UserIndex::new);
+        }
+        int added = index.ensureBuilt();
+        if (added > 0) {
+            account(index, added);
+        }
+        return index.search(term.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Record a committed transaction in the indexes of its parties, where
+     * those are loaded. A party whose index doesn't know the counterparty's
+     * username is dropped and rebuilt on its next search.
+     */
+    public void onCreated(String transactionId, String description, int senderId, int receiverId) {
+        addTo(senderId, transactionId, description, receiverId);
+        if (receiverId != senderId) {
+            addTo(receiverId, transactionId, description, senderId);
+        }
+    }
+
+    private void addTo(int userId, String transactionId, String description, int counterpartyId) {
+        UserIndex index;
+        synchronized (this) {
+            index = users.get(userId);
+        }
+        if (index == null) {
+            return;
+        }
+        int added = index.add(transactionId, description, counterpartyId);
+        if (added < 0) {
+            synchronized (this) {
+                if (users.get(userId) == index) {
+                    users.remove(userId);
+                    totalDocs -= index.accounted;
+                }
+            }
+        } else if (added > 0) {
+            account(index, added);
+        }
+    }
+
+    private synchronized void account(UserIndex index, int added) {
+        if (users.get(index.userId) != index) {
+            return;  // evicted meanwhile
+        }
+        index.accounted += added;
+        totalDocs += added;
+        Iterator<UserIndex> eldest = users.values().iterator();
+        while (totalDocs > maxDocs && eldest.hasNext()) {
+            UserIndex candidate = eldest.next();
+            if (candidate == index) {
+                continue;  // never evict the user being served
+            }
+            eldest.remove();
+            totalDocs -= candidate.accounted;
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TransactionSearchIndex{users=" + users.size() + ", docs=" + totalDocs + "/" + maxDocs +
+                ", builds=" + builds + ", evictions=" + evictions + "}";
+    }
+
+    private synchronized void countBuild() {
+        builds++;
+    }
+
+    /**
+     * Posting list: ascending doc numbers containing one trigram.
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final class UserIndex {
+        final int userId;
+        // Docs counted in totalDocs; guarded by the outer index
+        long accounted;
+
+        private boolean built;
+        // Doc number -> transaction id and searchable text, in insertion (age) order
+        private final List<String> transactionIds = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private final Map<String, Integer> docsById = new HashMap<>();
+        private final Map<Long, Postings> postings = new HashMap<>();
+        private final Map<Integer, String> usernames = new HashMap<>();
+
+        UserIndex(int userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * Load the user's transactions if that hasn't happened yet. Returns the
+         * number of docs added.
+         */
+        synchronized int ensureBuilt() throws SQLException {
+            if (built) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            int before = texts.size();
+            try {
+                loader.load(userId, entry -> {
+                    usernames.put(entry.counterpartyId(), entry.counterpartyUsername());
+                    addDoc(entry.transactionId(), entry.description(), entry.counterpartyUsername());
+                });
+            } catch (IOException e) {
+                throw new SQLException("Could not build search index for user " + userId, e);
+            }
+            built = true;
+            countBuild();
+            logger.debug("Built search index for user {}: {} transactions, {} trigrams in {} ms",
+                    userId, texts.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+            return texts.size() - before;
+        }
+
+        /**
+         * Returns the number of docs added, or -1 if the counterparty's
+         * username is unknown and the index must be rebuilt.
+         */
+        synchronized int add(String transactionId, String description, int counterpartyId) {
+            if (!built) {
+                return 0;  // committed already, so the build reads the row from the primary
+            }
+            String username = usernames.get(counterpartyId);
+            if (username == null) {
+                return -1;
+            }
+            return addDoc(transactionId, description, username) ? 1 : 0;
+        }
+
+        private boolean addDoc(String transactionId, String description, String username) {
+            if (docsById.containsKey(transactionId)) {
+                return false;
+            }
+            StringBuilder sb = new StringBuilder(transactionId.length() + 64).append(transactionId);
+            sb.append(FIELD_SEPARATOR);
+            if (description != null) {
+                sb.append(description);
+            }
+            sb.append(FIELD_SEPARATOR);
+            if (username != null) {
+                sb.append(username);
+            }
+            String text = sb.toString().toLowerCase(Locale.ROOT);
+
+            int doc = texts.size();
+            transactionIds.add(transactionId);
+            texts.add(text);
+            docsById.put(transactionId, doc);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                postings.computeIfAbsent(trigram(text, i), k -> new Postings()).add(doc);
+            }
+            return true;
+        }
+
+        synchronized List<String> search(String term) {
+            List<String> result = new ArrayList<>();
+            if (term.length() < 3) {
+                for (int doc = texts.size() - 1; doc >= 0; doc--) {
+                    if (texts.get(doc).contains(term)) {
+                        result.add(transactionIds.get(doc));
+                    }
+                }
+                return result;
+            }
+
+            // Rarest trigram first keeps the candidate set small
+            Postings[] lists = new Postings[term.length() - 2];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(trigram(term, i));
+                if (lists[i] == null) {
+                    return result;
+                }
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            Postings rarest = lists[0];
+            for (int n = rarest.size - 1; n >= 0; n--) {
+                int doc = rarest.docs[n];
+                boolean candidate = true;
+                for (int i = 1; i < lists.length && candidate; i++) {
+                    candidate = Arrays.binarySearch(lists[i].docs, 0, lists[i].size, doc) >= 0;
+                }
+                // Trigrams can match out of order; the substring check is exact
+                if (candidate && texts.get(doc).contains(term)) {
+                    result.add(transactionIds.get(doc));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static long trigram(String text, int at) {
+        return (long) text.charAt(at) << 32 | (long) text.charAt(at + 1) << 16 | text.charAt(at + 2);
+    }
+}
@@ -0,0 +1,174 @@
+package com.revpay.dao;
+
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a block of DAO calls as one database transaction.
+ *
+ * While the block runs, every DatabaseConnection.getConnection() and
+ * getReadConnection() on the same thread returns the same connection, so all
+ * statements commit (or roll back) together. Blocks nest by joining the outer
+ * transaction. Deadlocks and lock-wait timeouts roll back and retry the whole
+ * block, so the block must not have side effects outside the database.
+ *
+ * Blocks run at READ COMMITTED unless they ask for another level: plain reads
+ * see the latest committed rows and locking reads take no gap locks, so
+ * inserts into ranges a block has read never wait on it. A nested block runs
+ * at the level of the outer one.
+ */
+public final class TransactionTemplate {
+    private static final Logger logger = LoggerUtil.getLogger(TransactionTemplate.class);
+
+    // MySQL error codes
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    @FunctionalInterface
+    public interface SqlCallable<T> {
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    // Callbacks registered by the block running on this thread, run once it commits
+    private static final ThreadLocal<List<Runnable>> afterCommit = new ThreadLocal<>();
+
+    private TransactionTemplate() {}
+
+    /**
+     * Run {@code callback} once the current transaction commits, or right
+     * away if there is none. Dropped if the transaction rolls back, so a
+     * retried block registers its callbacks again. For in-memory state that
+     * must only reflect committed rows.
+     */
+    public static void afterCommit(Runnable callback) {
+        List<Runnable> callbacks = afterCommit.get();
+        if (callbacks == null) {
+            callback.run();
+        } else {
+            callbacks.add(callback);
+        }
+    }
+
+    public static void run(SqlRunnable work) throws SQLException {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static <T> T execute(SqlCallable<T> work) throws SQLException {
+        return execute(Connection.TRANSACTION_READ_COMMITTED, work);
+    }
+
+    /**
+     * Run {@code work} at the given {@link Connection} isolation level, e.g.
+     * REPEATABLE READ for reads that must all come from one snapshot.
+     */
+    public static <T> T execute(int isolation, SqlCallable<T> work) throws SQLException {
+        if (DatabaseConnection.isInTransaction()) {
+            return work.call();
+        }
+
+        AppConfig config = AppConfig.get();
+        int maxRetries = config.getTxMaxRetries();
+        long backoffMs = config.getTxRetryBackoffMs();
+
+        int attempt = 0;
+        while (true) {
+            try {
+                return executeOnce(isolation, work);
+            } catch (SQLException e) {
+                if (!isRetryable(e) || attempt >= maxRetries) {
+                    throw e;
+                }
+                attempt++;
+                logger.warn("Transaction failed with {} (error {}), retry {}/{}",
+                        e.getSQLState(), e.getErrorCode(), attempt, maxRetries);
+                backoff(backoffMs, attempt);
+            }
+        }
+    }
+
+    private static <T> T executeOnce(int isolation, SqlCallable<T> work) throws SQLException {
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            int previousIsolation = connection.getTransactionIsolation();
+            connection.setTransactionIsolation(isolation);
+            connection.setAutoCommit(false);
+            DatabaseConnection.bind(connection);
+            List<Runnable> callbacks = new ArrayList<>();
+            afterCommit.set(callbacks);
+            T result;
+            try {
+                result = work.call();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(connection);
+                throw e;
+            } finally {
+                afterCommit.remove();
+                DatabaseConnection.unbind();
+                // Pooled connections go back at the level they came out with
+                connection.setTransactionIsolation(previousIsolation);
+            }
+            runCallbacks(callbacks);
+            return result;
+        }
+    }
+
+    private static void runCallbacks(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                // The transaction has committed; a failing callback must not undo that for the caller
+                logger.error("After-commit callback failed", e);
+            }
+        }
+    }
+
+    /**
+     * Deadlock victims and lock-wait timeouts are safe to retry from the start.
+     */
+    static boolean isRetryable(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current.getErrorCode() == ER_LOCK_DEADLOCK
+                    || current.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                    || "40001".equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.error("Rollback failed", e);
+        }
+    }
+
+    private static void backoff(long baseMs, int attempt) throws SQLException {
+        // Exponential backoff with jitter so competing transactions don't collide again
+        long delay = baseMs * (1L << (attempt - 1));
+        delay += ThreadLocalRandom.current().nextLong(baseMs + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry transaction", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.revpay.dao;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+
+/**
+ * How far each transfer engine shard's log has been written to MySQL.
+ *
+ * The checkpoint is saved in the same database transaction as the rows it
+ * covers, so after a crash the engine replays exactly the log records past it.
+ */
+public class TransferCheckpointDAO {
+
+    /**
+     * The last projected sequence number of a shard, or 0 if none.
+     */
+    public long getLastSequence(int shard) throws SQLException {
+        String sql = "SELECT last_sequence FROM transfer_engine_checkpoints WHERE shard = ?";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, shard);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    public void saveLastSequence(int shard, long sequence) throws SQLException {
+        String sql = "INSERT INTO transfer_engine_checkpoints (shard, last_sequence, updated_at) " +
+                "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE last_sequence = VALUES(last_sequence), " +
+                "updated_at = VALUES(updated_at)";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, shard);
+            stmt.setLong(2, sequence);
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package com.revpay.dao;
 
+import com.revpay.models.Money;
 import com.revpay.models.User;
 import org.mindrot.jbcrypt.BCrypt;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.util.Properties;
+import java.util.*;
 
 import com.revpay.utils.LoggerUtil;
 import org.apache.logging.log4j.Logger;
 
 public class UserDAO {
-    private Connection connection;
     private Properties properties;
     private static final Logger logger = LoggerUtil.getLogger(UserDAO.class);
     private static boolean daoInitialized = false; // Add this
 
+    // Credential hashes come last so the profile projection is a prefix of the full one
+    private static final String PROFILE_COLUMNS = "id, username, email, phone_number, account_type, " +
+            "full_name, business_name, business_type, tax_id, business_address, " +
+            "verification_documents, wallet_balance, security_question1, security_question2, " +
+            "is_verified, is_locked, failed_login_attempts, last_login, created_at, updated_at";
+    private static final int PROFILE_COLUMN_COUNT = 20;
+    private static final String USER_COLUMNS = PROFILE_COLUMNS + ", password_hash, " +
+            "transaction_pin_hash, security_answer1_hash, security_answer2_hash";
+
     public UserDAO() {
-        this.connection = DatabaseConnection.getConnection();
         this.properties = DatabaseConnection.getProperties();
         logger.debug("UserDAO initialized");
     }
@@ -36,7 +44,8 @@ public class UserDAO {
                 "created_at, updated_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPhoneNumber());
@@ -51,7 +60,7 @@ public class UserDAO {
             stmt.setString(12, user.getSecurityAnswer1Hash());
             stmt.setString(13, user.getSecurityQuestion2());
             stmt.setString(14, user.getSecurityAnswer2Hash());
-            stmt.setDouble(15, user.getWalletBalance());
+            stmt.setBigDecimal(15, user.getBalance().toBigDecimal());
             stmt.setTimestamp(16, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setTimestamp(17, Timestamp.valueOf(LocalDateTime.now()));
 
@@ -93,9 +102,10 @@ public class UserDAO {
     public User getUserByEmailOrPhone(String identifier) throws SQLException {
         logger.debug("Looking up user by identifier: {}", identifier);
 
-        String sql = "SELECT * FROM users WHERE email = ? OR phone_number = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE email = ? OR phone_number = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, identifier);
             stmt.setString(2, identifier);
 
@@ -116,9 +126,10 @@ public class UserDAO {
     }
 
     public User getUserById(int id) throws SQLException {
-        String sql = "SELECT * FROM users WHERE id = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, id);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -130,10 +141,86 @@ public class UserDAO {
         return null;
     }
 
+    /**
+     * Like {@link #getUserById} but without password, PIN and security-answer
+     * hashes, for screens that only display or check account details. The
+     * result must not be passed to {@link #updateUser}.
+     */
+    public User getUserProfileById(int id) throws SQLException {
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users WHERE id = ?";
+
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, id);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToProfile(rs);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve many recipient identifiers in one query. Each identifier maps to
+     * the user whose email or phone number matches it, falling back to a
+     * username match, the same precedence as a single lookup. Matching ignores
+     * case, like the column collation, and the result is keyed by the
+     * identifiers as given. Unmatched identifiers are absent from the result.
+     * Profiles only, no hashes.
+     */
+    public Map<String, User> getUserProfilesByIdentifiers(Set<String> identifiers) throws SQLException {
+        Map<String, User> users = new HashMap<>();
+        if (identifiers.isEmpty()) {
+            return users;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(identifiers.size(), "?"));
+        String sql = "SELECT " + PROFILE_COLUMNS + " FROM users WHERE email IN (" + placeholders +
+                ") OR phone_number IN (" + placeholders + ") OR username IN (" + placeholders + ")";
+
+        // Keyed by lower-cased value: IN (...) compares case-insensitively, so the rows may differ in case
+        Map<String, User> byContact = new HashMap<>();
+        Map<String, User> byUsername = new HashMap<>();
+        try (Connection connection = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int i = 0;
+            for (int pass = 0; pass < 3; pass++) {
+                for (String identifier : identifiers) {
+                    stmt.setString(++i, identifier);
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    User user = mapResultSetToProfile(rs);
+                    if (user.getEmail() != null) {
+                        byContact.put(user.getEmail().toLowerCase(Locale.ROOT), user);
+                    }
+                    if (user.getPhoneNumber() != null) {
+                        byContact.put(user.getPhoneNumber().toLowerCase(Locale.ROOT), user);
+                    }
+                    byUsername.put(user.getUsername().toLowerCase(Locale.ROOT), user);
+                }
+            }
+        }
+
+        for (String identifier : identifiers) {
+            String key = identifier.toLowerCase(Locale.ROOT);
+            User user = byContact.containsKey(key) ? byContact.get(key) : byUsername.get(key);
+            if (user != null) {
+                users.put(identifier, user);
+            }
+        }
+        return users;
+    }
+
     public User getUserByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM users WHERE username = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, username);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -145,17 +232,22 @@ public class UserDAO {
         return null;
     }
 
+    /**
+     * Save the user's profile and security fields. wallet_balance is not
+     * written: it is the ledger's cached copy, refreshed by compaction.
+     */
     public boolean updateUser(User user) throws SQLException {
         String sql = "UPDATE users SET username = ?, email = ?, phone_number = ?, " +
                 "password_hash = ?, transaction_pin_hash = ?, account_type = ?, " +
                 "full_name = ?, business_name = ?, business_type = ?, tax_id = ?, " +
-                "business_address = ?, verification_documents = ?, wallet_balance = ?, " +
+                "business_address = ?, verification_documents = ?, " +
                 "security_question1 = ?, security_answer1_hash = ?, " +
                 "security_question2 = ?, security_answer2_hash = ?, is_verified = ?, " +
                 "is_locked = ?, failed_login_attempts = ?, last_login = ?, " +
                 "updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, user.getUsername());
             stmt.setString(2, user.getEmail());
             stmt.setString(3, user.getPhoneNumber());
@@ -168,31 +260,17 @@ public class UserDAO {
             stmt.setString(10, user.getTaxId());
             stmt.setString(11, user.getBusinessAddress());
             stmt.setString(12, user.getVerificationDocuments());
-            stmt.setDouble(13, user.getWalletBalance());
-            stmt.setString(14, user.getSecurityQuestion1());
-            stmt.setString(15, user.getSecurityAnswer1Hash());
-            stmt.setString(16, user.getSecurityQuestion2());
-            stmt.setString(17, user.getSecurityAnswer2Hash());
-            stmt.setBoolean(18, user.isVerified());
-            stmt.setBoolean(19, user.isLocked());
-            stmt.setInt(20, user.getFailedLoginAttempts());
-            stmt.setTimestamp(21, user.getLastLogin() != null ?
+            stmt.setString(13, user.getSecurityQuestion1());
+            stmt.setString(14, user.getSecurityAnswer1Hash());
+            stmt.setString(15, user.getSecurityQuestion2());
+            stmt.setString(16, user.getSecurityAnswer2Hash());
+            stmt.setBoolean(17, user.isVerified());
+            stmt.setBoolean(18, user.isLocked());
+            stmt.setInt(19, user.getFailedLoginAttempts());
+            stmt.setTimestamp(20, user.getLastLogin() != null ?
                     Timestamp.valueOf(user.getLastLogin()) : null);
-            stmt.setTimestamp(22, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(23, user.getId());
-
-            return stmt.executeUpdate() > 0;
-        }
-    }
-
-    public boolean updateWalletBalance(int userId, double amount) throws SQLException {
-        String sql = "UPDATE users SET wallet_balance = wallet_balance + ?, " +
-                "updated_at = ? WHERE id = ?";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setDouble(1, amount);
-            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setInt(3, userId);
+            stmt.setTimestamp(21, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setInt(22, user.getId());
 
             return stmt.executeUpdate() > 0;
         }
@@ -202,7 +280,8 @@ public class UserDAO {
         String sql = "UPDATE users SET failed_login_attempts = failed_login_attempts + 1, " +
                 "updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(2, userId);
 
@@ -214,7 +293,8 @@ public class UserDAO {
         String sql = "UPDATE users SET failed_login_attempts = 0, " +
                 "is_locked = FALSE, updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(2, userId);
 
@@ -225,7 +305,8 @@ public class UserDAO {
     public boolean lockUserAccount(int userId) throws SQLException {
         String sql = "UPDATE users SET is_locked = TRUE, updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(2, userId);
 
@@ -236,7 +317,8 @@ public class UserDAO {
     public boolean updateLastLogin(int userId) throws SQLException {
         String sql = "UPDATE users SET last_login = ?, updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, userId);
@@ -248,7 +330,8 @@ public class UserDAO {
     public boolean updatePassword(int userId, String newPasswordHash) throws SQLException {
         String sql = "UPDATE users SET password_hash = ?, updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, newPasswordHash);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, userId);
@@ -260,7 +343,8 @@ public class UserDAO {
     public boolean updateTransactionPin(int userId, String pinHash) throws SQLException {
         String sql = "UPDATE users SET transaction_pin_hash = ?, updated_at = ? WHERE id = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, pinHash);
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, userId);
@@ -269,41 +353,49 @@ public class UserDAO {
         }
     }
 
+    // Reads USER_COLUMNS by position
     private User mapResultSetToUser(ResultSet rs) throws SQLException {
+        User user = mapResultSetToProfile(rs);
+        int i = PROFILE_COLUMN_COUNT;
+        user.setPasswordHash(rs.getString(++i));
+        user.setTransactionPinHash(rs.getString(++i));
+        user.setSecurityAnswer1Hash(rs.getString(++i));
+        user.setSecurityAnswer2Hash(rs.getString(++i));
+        return user;
+    }
+
+    // Reads PROFILE_COLUMNS by position
+    private User mapResultSetToProfile(ResultSet rs) throws SQLException {
         User user = new User();
-        user.setId(rs.getInt("id"));
-        user.setUsername(rs.getString("username"));
-        user.setEmail(rs.getString("email"));
-        user.setPhoneNumber(rs.getString("phone_number"));
-        user.setPasswordHash(rs.getString("password_hash"));
-        user.setTransactionPinHash(rs.getString("transaction_pin_hash"));
-        user.setAccountType(rs.getString("account_type"));
-        user.setFullName(rs.getString("full_name"));
-        user.setBusinessName(rs.getString("business_name"));
-        user.setBusinessType(rs.getString("business_type"));
-        user.setTaxId(rs.getString("tax_id"));
-        user.setBusinessAddress(rs.getString("business_address"));
-        user.setVerificationDocuments(rs.getString("verification_documents"));
-        user.setWalletBalance(rs.getDouble("wallet_balance"));
-        user.setSecurityQuestion1(rs.getString("security_question1"));
-        user.setSecurityAnswer1Hash(rs.getString("security_answer1_hash"));
-        user.setSecurityQuestion2(rs.getString("security_question2"));
-        user.setSecurityAnswer2Hash(rs.getString("security_answer2_hash"));
-        user.setVerified(rs.getBoolean("is_verified"));
-        user.setLocked(rs.getBoolean("is_locked"));
-        user.setFailedLoginAttempts(rs.getInt("failed_login_attempts"));
-
-        Timestamp lastLogin = rs.getTimestamp("last_login");
+        user.setId(rs.getInt(1));
+        user.setUsername(rs.getString(2));
+        user.setEmail(rs.getString(3));
+        user.setPhoneNumber(rs.getString(4));
+        user.setAccountType(rs.getString(5));
+        user.setFullName(rs.getString(6));
+        user.setBusinessName(rs.getString(7));
+        user.setBusinessType(rs.getString(8));
+        user.setTaxId(rs.getString(9));
+        user.setBusinessAddress(rs.getString(10));
+        user.setVerificationDocuments(rs.getString(11));
+        user.setBalance(Money.of(rs.getBigDecimal(12)));
+        user.setSecurityQuestion1(rs.getString(13));
+        user.setSecurityQuestion2(rs.getString(14));
+        user.setVerified(rs.getBoolean(15));
+        user.setLocked(rs.getBoolean(16));
+        user.setFailedLoginAttempts(rs.getInt(17));
+
+        Timestamp lastLogin = rs.getTimestamp(18);
         if (lastLogin != null) {
             user.setLastLogin(lastLogin.toLocalDateTime());
         }
 
-        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp createdAt = rs.getTimestamp(19);
         if (createdAt != null) {
             user.setCreatedAt(createdAt.toLocalDateTime());
         }
 
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        Timestamp updatedAt = rs.getTimestamp(20);
         if (updatedAt != null) {
             user.setUpdatedAt(updatedAt.toLocalDateTime());
         }
@@ -314,7 +406,8 @@ public class UserDAO {
     public boolean checkIfUserExists(String identifier) throws SQLException {
         String sql = "SELECT COUNT(*) FROM users WHERE email = ? OR phone_number = ? OR username = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, identifier);
             stmt.setString(2, identifier);
             stmt.setString(3, identifier);
@@ -0,0 +1,52 @@
+package com.revpay.engine;
+
+import com.revpay.models.Transaction;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A transfer on its way through the engine: the transaction to record, the
+ * payer's idempotency key if any, its position in the shard's log, and the
+ * future the submitter waits on.
+ */
+final class Transfer {
+    private final Transaction transaction;
+    private final String idempotencyKey;
+    // True once written, false if the idempotency key was already used and nothing was written
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    private long sequence;
+    // Set by the projector when the transfer could not be posted
+    private SQLException failure;
+    private boolean duplicate;
+    private boolean projected;
+
+    Transfer(Transaction transaction, String idempotencyKey) {
+        this.transaction = transaction;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    Transaction getTransaction() { return transaction; }
+
+    String getIdempotencyKey() { return idempotencyKey; }
+
+    CompletableFuture<Boolean> getResult() { return result; }
+
+    long getSequence() { return sequence; }
+    void setSequence(long sequence) { this.sequence = sequence; }
+
+    boolean isFailed() { return failure != null; }
+    SQLException getFailure() { return failure; }
+    void setFailure(SQLException failure) { this.failure = failure; }
+
+    boolean isDuplicate() { return duplicate; }
+    void setDuplicate(boolean duplicate) { this.duplicate = duplicate; }
+
+    boolean isProjected() { return projected; }
+    void setProjected(boolean projected) { this.projected = projected; }
+
+    // What the payer's wallet loses: the amount plus the fee
+    long getDebitCents() {
+        return transaction.getAmount().getCents() + transaction.getTransactionFee().getCents();
+    }
+}
@@ -0,0 +1,464 @@
+package com.revpay.engine;
+
+import com.revpay.AppContext;
+import com.revpay.dao.InsufficientFundsException;
+import com.revpay.dao.LedgerDAO;
+import com.revpay.dao.TransactionTemplate;
+import com.revpay.dao.TransferCheckpointDAO;
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory engine for wallet-to-wallet transfers, used by sendMoney when
+ * {@code engine.enabled=true}.
+ *
+ * Accounts are split into shards by payer id. Each shard has a bounded ring
+ * of submitted transfers and a single writer thread that owns the shard's
+ * balances in plain arrays, so checking and debiting a wallet needs no locks
+ * and no database round trip. The writer drains the ring in batches, appends
+ * each accepted transfer to the shard's {@link WriteAheadLog} and forces the
+ * log once per batch. A single projector thread then writes the batches to
+ * the ledger and transactions tables, and only then are the submitters'
+ * futures completed, so nobody is told a transfer went through before it is
+ * in MySQL.
+ *
+ * The engine only guards debits. A wallet's engine balance is its ledger
+ * balance as of the shard's checkpoint, less the engine's debits after it;
+ * credits and top-ups are picked up by reloading from the ledger whenever a
+ * debit doesn't fit. That copy can only be too high if the wallet was spent
+ * through the JDBC path meanwhile, and then the ledger rejects the posting,
+ * the projector records the transfer as FAILED and its future fails.
+ *
+ * A caller that stops waiting takes its transfer back if the writer hasn't
+ * picked it up yet, and otherwise gets a TransferPendingException: the
+ * transfer will still be written. A shard whose log is full waits at most
+ * {@code engine.projection.timeout.ms} for MySQL to catch up, then turns
+ * transfers away until it has.
+ *
+ * On start, log records past each shard's checkpoint are projected before
+ * any new transfer is accepted.
+ */
+public class TransferEngine {
+    private static final Logger logger = LoggerUtil.getLogger(TransferEngine.class);
+
+    private static volatile TransferEngine instance;
+
+    private final Shard[] shards;
+    private final TransferProjector projector;
+    private final TransferCheckpointDAO checkpointDAO;
+    private final LedgerDAO ledgerDAO;
+    private final int batchSize;
+    private final long submitTimeoutMs;
+    private final long projectionTimeoutNanos;
+    private Thread projectorThread;
+
+    private TransferEngine(AppConfig config) throws IOException {
+        int shardCount = config.getEngineShards();
+        int ringSize = config.getEngineRingSize();
+        int walSizeBytes = config.getEngineWalSizeMb() * 1024 * 1024;
+        Path walDir = Paths.get(config.getEngineWalDir());
+        this.batchSize = config.getEngineBatchSize();
+        this.submitTimeoutMs = config.getEngineSubmitTimeoutMs();
+        this.projectionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getEngineProjectionTimeoutMs());
+        long retryBackoffMs = config.getEngineProjectorRetryMs();
+
+        this.ledgerDAO = AppContext.ledgerDAO();
+        this.checkpointDAO = new TransferCheckpointDAO();
+        this.projector = new TransferProjector(ledgerDAO, AppContext.transactionDAO(),
+                AppContext.notificationDAO(), checkpointDAO, AppContext.idempotencyDAO(), retryBackoffMs,
+                this::projected);
+
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, ringSize, new WriteAheadLog(walDir.resolve("shard-" + i + ".wal"), walSizeBytes));
+        }
+    }
+
+    /**
+     * Recover and start the engine if {@code engine.enabled} is set. If the
+     * engine can't start, sendMoney keeps using the JDBC path.
+     */
+    public static synchronized void start() {
+        if (instance != null || !AppConfig.get().isEngineEnabled()) {
+            return;
+        }
+        try {
+            TransferEngine engine = new TransferEngine(AppConfig.get());
+            engine.recover();
+            engine.startThreads();
+            instance = engine;
+            logger.info("Transfer engine started with {} shard(s)", engine.shards.length);
+        } catch (IOException | SQLException e) {
+            logger.error("Transfer engine failed to start; transfers use the JDBC path", e);
+        }
+    }
+
+    /**
+     * The running engine, or null if it is disabled or stopped.
+     */
+    public static TransferEngine get() {
+        return instance;
+    }
+
+    /**
+     * Stop accepting transfers and give the projector a moment to catch up.
+     * Whatever it doesn't finish is replayed from the log on the next start.
+     */
+    public static synchronized void stop() {
+        TransferEngine engine = instance;
+        if (engine == null) {
+            return;
+        }
+        instance = null;
+        for (Shard shard : engine.shards) {
+            shard.running = false;
+        }
+        try {
+            for (Shard shard : engine.shards) {
+                shard.thread.join(5000);
+            }
+            engine.projector.stop();
+            engine.projectorThread.join(10_000);
+            if (engine.projectorThread.isAlive()) {
+                logger.warn("Transfer engine stopped with {} batch(es) unprojected; they replay on next start",
+                        engine.projector.getBacklog());
+                engine.projectorThread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : engine.shards) {
+            try {
+                shard.wal.close();
+            } catch (IOException e) {
+                logger.warn("Could not close {}", shard.wal.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Submit a SEND transaction (amount, fee and note set) with the payer's
+     * idempotency key, or null for none. The future completes with true once
+     * the transfer is written to MySQL, with false if the key was already
+     * used and nothing was written, or fails with InsufficientFundsException
+     * if the engine or the ledger turned it down.
+     */
+    public CompletableFuture<Boolean> submit(Transaction transaction, String idempotencyKey) {
+        return enqueue(transaction, idempotencyKey).getResult();
+    }
+
+    /**
+     * {@link #submit} and wait up to {@code engine.submit.timeout.ms}, for
+     * callers that work with SQLException. Throws TransferPendingException if
+     * the transfer is on its way but not yet in MySQL.
+     */
+    public boolean transfer(Transaction transaction, String idempotencyKey) throws SQLException {
+        Transfer transfer = enqueue(transaction, idempotencyKey);
+        String reason;
+        try {
+            return transfer.getResult().get(submitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw failure(e.getCause());
+        } catch (TimeoutException e) {
+            reason = "Transfer engine did not answer within " + submitTimeoutMs + " ms";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reason = "Interrupted while waiting for the transfer engine";
+        }
+
+        // Giving up: take the transfer back if the writer hasn't got to it yet
+        if (shardOf(transaction).ring.remove(transfer)) {
+            throw new SQLException(reason + "; nothing was sent");
+        }
+        if (!transfer.getResult().isDone()) {
+            throw new TransferPendingException(transaction.getTransactionId(), reason);
+        }
+        // It finished while we were giving up
+        if (transfer.getResult().isCompletedExceptionally()) {
+            throw failure(transfer.getResult().exceptionNow());
+        }
+        return transfer.getResult().getNow(false);
+    }
+
+    private Transfer enqueue(Transaction transaction, String idempotencyKey) {
+        Transfer transfer = new Transfer(transaction, idempotencyKey);
+        Shard shard = shardOf(transaction);
+        if (!shard.running || shard.logFull || !shard.ring.offer(transfer)) {
+            transfer.getResult().completeExceptionally(new SQLException("Transfer engine is busy; try again"));
+        }
+        return transfer;
+    }
+
+    private static SQLException failure(Throwable cause) {
+        if (cause instanceof SQLException sqlException) {
+            return sqlException;
+        }
+        return new SQLException("Transfer failed", cause);
+    }
+
+    private Shard shardOf(Transaction transaction) {
+        return shards[Math.floorMod(transaction.getSenderId(), shards.length)];
+    }
+
+    // Called on the projector thread once a batch is in MySQL
+    private void projected(int shard, List<Transfer> transfers) {
+        shards[shard].projected(transfers);
+        for (Transfer transfer : transfers) {
+            if (transfer.isFailed()) {
+                transfer.getResult().completeExceptionally(transfer.getFailure());
+            } else {
+                transfer.getResult().complete(!transfer.isDuplicate());
+            }
+        }
+    }
+
+    private void recover() throws SQLException {
+        for (Shard shard : shards) {
+            long checkpoint = checkpointDAO.getLastSequence(shard.index);
+            List<Transfer> unprojected = new ArrayList<>();
+            for (Transfer transfer : shard.wal.recover()) {
+                if (transfer.getSequence() > checkpoint) {
+                    unprojected.add(transfer);
+                }
+            }
+            if (!unprojected.isEmpty()) {
+                logger.info("Replaying {} transfer(s) from {}", unprojected.size(), shard.wal.getFile());
+                projector.project(new TransferProjector.Batch(shard.index, unprojected));
+            }
+            long last = Math.max(checkpoint, shard.wal.getLastSequence());
+            shard.nextSequence = last + 1;
+            shard.projectedSequence.set(last);
+            shard.wal.rewind();
+        }
+    }
+
+    private void startThreads() {
+        projectorThread = new Thread(projector, "transfer-projector");
+        projectorThread.setDaemon(true);
+        projectorThread.start();
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * One shard: its ring, log and the balances of its payers. Everything but
+     * the ring, the projected queue, projectedSequence and the running and
+     * logFull flags is confined to the writer thread.
+     */
+    private final class Shard implements Runnable {
+        final int index;
+        final BlockingQueue<Transfer> ring;
+        final WriteAheadLog wal;
+        final Thread thread;
+        // Batches the projector has written, waiting to be folded in by the writer
+        final Queue<List<Transfer>> projectedBatches = new ConcurrentLinkedQueue<>();
+        final AtomicLong projectedSequence = new AtomicLong();
+        volatile boolean running = true;
+        // The log filled up and MySQL didn't catch up in time; transfers are turned away until it does
+        volatile boolean logFull;
+
+        // Account id -> index into the arrays below
+        final Map<Integer, Integer> accountIndex = new HashMap<>();
+        long[] balances = new long[64];
+        boolean[] stale = new boolean[64];
+        long nextSequence = 1;
+        // Accepted transfers not yet folded back in from the projector, oldest first
+        final Deque<Transfer> unprojected = new ArrayDeque<>();
+
+        final List<Transfer> batch = new ArrayList<>();
+        final List<Transfer> accepted = new ArrayList<>();
+
+        Shard(int index, int ringSize, WriteAheadLog wal) {
+            this.index = index;
+            this.ring = new ArrayBlockingQueue<>(ringSize);
+            this.wal = wal;
+            this.thread = new Thread(this, "transfer-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void projected(List<Transfer> transfers) {
+            projectedSequence.set(transfers.get(transfers.size() - 1).getSequence());
+            projectedBatches.add(transfers);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                foldProjected();
+                if (logFull) {
+                    reopenLog();
+                }
+                Transfer first;
+                try {
+                    first = ring.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, batchSize - 1);
+                for (Transfer transfer : batch) {
+                    apply(transfer);
+                }
+                batch.clear();
+                commit();
+            }
+
+            Transfer left;
+            while ((left = ring.poll()) != null) {
+                left.getResult().completeExceptionally(new SQLException("Transfer engine stopped"));
+            }
+        }
+
+        private void apply(Transfer transfer) {
+            if (logFull && !reopenLog()) {
+                transfer.getResult().completeExceptionally(new SQLException("Transfer engine is busy; try again"));
+                return;
+            }
+            Transaction transaction = transfer.getTransaction();
+            int payerId = transaction.getSenderId();
+            long debit = transfer.getDebitCents();
+            int i;
+            try {
+                i = indexOf(payerId);
+                if (balances[i] < debit) {
+                    // Credits and top-ups since the last load only show up in the ledger
+                    reload(i, payerId);
+                }
+            } catch (SQLException e) {
+                transfer.getResult().completeExceptionally(e);
+                return;
+            }
+            if (balances[i] < debit) {
+                transfer.getResult().completeExceptionally(new InsufficientFundsException(
+                        payerId, Money.ofCents(balances[i]), Money.ofCents(debit)));
+                return;
+            }
+
+            transfer.setSequence(nextSequence);
+            if (!wal.append(transfer)) {
+                // Log is full: make this batch durable, wait until all of it is in MySQL, start over
+                commit();
+                if (!awaitProjection(nextSequence - 1)) {
+                    logFull = true;
+                    logger.error("Shard {} log is full and MySQL is {} transfer(s) behind; turning transfers away",
+                            index, nextSequence - 1 - projectedSequence.get());
+                    transfer.getResult().completeExceptionally(new SQLException("Transfer engine is busy; try again"));
+                    return;
+                }
+                wal.rewind();
+                if (!wal.append(transfer)) {
+                    transfer.getResult().completeExceptionally(new SQLException("Transfer too large for the log"));
+                    return;
+                }
+            }
+            nextSequence++;
+            balances[i] -= debit;
+            unprojected.add(transfer);
+            accepted.add(transfer);
+        }
+
+        // Group commit: one force for everything accepted since the last one
+        private void commit() {
+            if (accepted.isEmpty()) {
+                return;
+            }
+            wal.force();
+            projector.submit(index, new ArrayList<>(accepted));
+            accepted.clear();
+        }
+
+        // False if MySQL hasn't got everything up to sequence within engine.projection.timeout.ms
+        private boolean awaitProjection(long sequence) {
+            long deadline = System.nanoTime() + projectionTimeoutNanos;
+            while (projectedSequence.get() < sequence) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            foldProjected();
+            return true;
+        }
+
+        // Rewind the full log once MySQL has everything in it; false while it hasn't
+        private boolean reopenLog() {
+            if (projectedSequence.get() < nextSequence - 1) {
+                return false;
+            }
+            foldProjected();
+            wal.rewind();
+            logFull = false;
+            logger.info("Shard {} caught up with MySQL; accepting transfers again", index);
+            return true;
+        }
+
+        private void foldProjected() {
+            List<Transfer> transfers;
+            while ((transfers = projectedBatches.poll()) != null) {
+                long last = transfers.get(transfers.size() - 1).getSequence();
+                while (!unprojected.isEmpty() && unprojected.peekFirst().getSequence() <= last) {
+                    unprojected.pollFirst();
+                }
+                for (Transfer transfer : transfers) {
+                    Integer i = accountIndex.get(transfer.getTransaction().getSenderId());
+                    // The engine debited it but the ledger never did; reload for the real balance
+                    if (i != null && (transfer.isFailed() || transfer.isDuplicate())) {
+                        stale[i] = true;
+                    }
+                }
+            }
+        }
+
+        private int indexOf(int accountId) throws SQLException {
+            Integer existing = accountIndex.get(accountId);
+            if (existing != null) {
+                if (stale[existing]) {
+                    reload(existing, accountId);
+                }
+                return existing;
+            }
+
+            int i = accountIndex.size();
+            if (i == balances.length) {
+                balances = Arrays.copyOf(balances, i * 2);
+                stale = Arrays.copyOf(stale, i * 2);
+            }
+            reload(i, accountId);
+            accountIndex.put(accountId, i);
+            return i;
+        }
+
+        // The checkpoint and the balance come from one REPEATABLE READ snapshot, and the checkpoint
+        // commits with its batch, so the ledger holds exactly this shard's transfers up to it; later
+        // ones are still to come
+        private void reload(int i, int accountId) throws SQLException {
+            long[] snapshot = TransactionTemplate.execute(Connection.TRANSACTION_REPEATABLE_READ, () -> new long[]{
+                    checkpointDAO.getLastSequence(index), ledgerDAO.getBalance(accountId).getCents()});
+            long balance = snapshot[1];
+            for (Transfer transfer : unprojected) {
+                if (transfer.getSequence() > snapshot[0] && transfer.getTransaction().getSenderId() == accountId) {
+                    balance -= transfer.getDebitCents();
+                }
+            }
+            balances[i] = balance;
+            stale[i] = false;
+        }
+    }
+}
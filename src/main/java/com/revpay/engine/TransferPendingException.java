@@ -0,0 +1,23 @@
+package com.revpay.engine;
+
+import java.sql.SQLException;
+
+/**
+ * The engine accepted a transfer but it hadn't reached MySQL when the caller
+ * stopped waiting. It was not cancelled and will still be written (or
+ * recorded as FAILED), so the caller must not send it again.
+ */
+public class TransferPendingException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final String transactionId;
+
+    public TransferPendingException(String transactionId, String reason) {
+        super(reason + "; transfer " + transactionId + " is still being processed");
+        this.transactionId = transactionId;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+}
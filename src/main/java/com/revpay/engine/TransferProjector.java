@@ -0,0 +1,219 @@
+package com.revpay.engine;
+
+import com.revpay.dao.*;
+import com.revpay.models.JournalEntry;
+import com.revpay.models.Transaction;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes batches of accepted transfers to MySQL in the background: payers'
+ * idempotency keys, ledger postings, transactions rows, notifications and
+ * the shard's checkpoint, all in one database transaction per batch. A
+ * transfer whose key the payer already used is a retry and is skipped.
+ *
+ * The engine checks balances against its own copy, so the ledger can still
+ * reject a posting if the wallet was spent through the JDBC path meanwhile.
+ * Such a transfer is recorded as FAILED, the payer is notified and the
+ * submitter's future fails with the ledger's InsufficientFundsException.
+ * Batches that fail for any other reason are retried until they succeed;
+ * the log keeps them safe in the meantime.
+ */
+final class TransferProjector implements Runnable {
+    private static final Logger logger = LoggerUtil.getLogger(TransferProjector.class);
+
+    record Batch(int shard, List<Transfer> transfers) {}
+
+    private final LedgerDAO ledgerDAO;
+    private final TransactionDAO transactionDAO;
+    private final NotificationDAO notificationDAO;
+    private final TransferCheckpointDAO checkpointDAO;
+    private final IdempotencyDAO idempotencyDAO;
+    private final long retryBackoffMs;
+    private final BlockingQueue<Batch> batches = new LinkedBlockingQueue<>();
+    // Called with each batch once it is in MySQL
+    private final BiConsumer<Integer, List<Transfer>> onProjected;
+    private volatile boolean running = true;
+
+    TransferProjector(LedgerDAO ledgerDAO, TransactionDAO transactionDAO, NotificationDAO notificationDAO,
+                      TransferCheckpointDAO checkpointDAO, IdempotencyDAO idempotencyDAO, long retryBackoffMs,
+                      BiConsumer<Integer, List<Transfer>> onProjected) {
+        this.ledgerDAO = ledgerDAO;
+        this.transactionDAO = transactionDAO;
+        this.notificationDAO = notificationDAO;
+        this.checkpointDAO = checkpointDAO;
+        this.idempotencyDAO = idempotencyDAO;
+        this.retryBackoffMs = retryBackoffMs;
+        this.onProjected = onProjected;
+    }
+
+    void submit(int shard, List<Transfer> transfers) {
+        batches.add(new Batch(shard, transfers));
+    }
+
+    int getBacklog() {
+        return batches.size();
+    }
+
+    /**
+     * Stop once the batches already queued have been written. Anything the
+     * caller doesn't wait for is replayed from the log on the next start.
+     */
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        while (running || !batches.isEmpty()) {
+            Batch batch;
+            try {
+                batch = batches.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch == null) {
+                continue;
+            }
+            if (!projectWithRetry(batch)) {
+                return;
+            }
+            onProjected.accept(batch.shard(), batch.transfers());
+        }
+    }
+
+    // False if interrupted before the batch could be written
+    private boolean projectWithRetry(Batch batch) {
+        while (true) {
+            try {
+                project(batch);
+                return true;
+            } catch (SQLException e) {
+                logger.error("Projecting {} transfer(s) of shard {} failed; retrying",
+                        batch.transfers().size(), batch.shard(), e);
+                try {
+                    Thread.sleep(retryBackoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one batch. Used directly during recovery, before the engine starts.
+     */
+    void project(Batch batch) throws SQLException {
+        // A retried batch may have been partly written one by one already
+        List<Transfer> transfers = new ArrayList<>(batch.transfers().size());
+        for (Transfer transfer : batch.transfers()) {
+            if (!transfer.isProjected()) {
+                transfers.add(transfer);
+            }
+        }
+        if (transfers.isEmpty()) {
+            return;
+        }
+        try {
+            List<Transfer> duplicates = TransactionTemplate.execute(() -> {
+                List<Transfer> repeated = new ArrayList<>();
+                List<Transaction> transactions = new ArrayList<>(transfers.size());
+                for (Transfer transfer : transfers) {
+                    if (!claim(transfer)) {
+                        repeated.add(transfer);
+                        continue;
+                    }
+                    Transaction transaction = transfer.getTransaction();
+                    transaction.setJournalEntryId(ledgerDAO.post(journalEntry(transaction)));
+                    transactions.add(transaction);
+                }
+                if (!transactions.isEmpty()) {
+                    BatchWriter.BatchResult<Transaction> result = transactionDAO.createTransactions(transactions);
+                    if (!result.isAllSuccessful()) {
+                        throw new SQLException(result.getFailureCount() + " transaction row(s) could not be written");
+                    }
+                    notificationDAO.createTransactionNotifications(transactions, "sent", "received");
+                }
+                checkpointDAO.saveLastSequence(batch.shard(), transfers.get(transfers.size() - 1).getSequence());
+                return repeated;
+            });
+            for (Transfer transfer : transfers) {
+                transfer.setDuplicate(duplicates.contains(transfer));
+                transfer.setProjected(true);
+            }
+        } catch (SQLException e) {
+            // Find the transfer(s) at fault by writing them one at a time
+            logger.warn("Batch of {} transfer(s) on shard {} rolled back ({}); writing them one by one",
+                    transfers.size(), batch.shard(), e.getMessage());
+            for (Transfer transfer : transfers) {
+                projectOne(batch.shard(), transfer);
+            }
+        }
+    }
+
+    private void projectOne(int shard, Transfer transfer) throws SQLException {
+        Transaction transaction = transfer.getTransaction();
+        try {
+            boolean claimed = TransactionTemplate.execute(() -> {
+                if (!claim(transfer)) {
+                    checkpointDAO.saveLastSequence(shard, transfer.getSequence());
+                    return false;
+                }
+                transaction.setJournalEntryId(ledgerDAO.post(journalEntry(transaction)));
+                transactionDAO.createTransaction(transaction);
+                notificationDAO.createTransactionNotifications(transaction.getSenderId(), "sent",
+                        transaction.getReceiverId(), "received", transaction.getTransactionId(),
+                        transaction.getAmount());
+                checkpointDAO.saveLastSequence(shard, transfer.getSequence());
+                return true;
+            });
+            transfer.setDuplicate(!claimed);
+        } catch (InsufficientFundsException e) {
+            transfer.setFailure(e);
+            transaction.setJournalEntryId(null);
+            transaction.setStatus("FAILED");
+            TransactionTemplate.run(() -> {
+                transactionDAO.createTransaction(transaction);
+                notificationDAO.createTransactionNotification(transaction.getSenderId(),
+                        transaction.getTransactionId(), transaction.getAmount(), "failed");
+                checkpointDAO.saveLastSequence(shard, transfer.getSequence());
+            });
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Retrying can't fix this one; skip it so the shard's later transfers aren't held up
+            transfer.setFailure(e);
+            logger.error("Dropping transfer {} (sequence {} on shard {}): {}",
+                    transaction.getTransactionId(), transfer.getSequence(), shard, e.getMessage());
+            checkpointDAO.saveLastSequence(shard, transfer.getSequence());
+        }
+        transfer.setProjected(true);
+    }
+
+    // False if the payer already used the transfer's idempotency key
+    private boolean claim(Transfer transfer) throws SQLException {
+        Transaction transaction = transfer.getTransaction();
+        return transfer.getIdempotencyKey() == null
+                || idempotencyDAO.claim(transaction.getSenderId(), transfer.getIdempotencyKey(), "SEND", transaction);
+    }
+
+    private static JournalEntry journalEntry(Transaction transaction) {
+        JournalEntry entry = new JournalEntry(transaction.getTransactionId(), "Send money")
+                .debit(transaction.getSenderId(), transaction.getAmount())
+                .credit(transaction.getReceiverId(), transaction.getAmount());
+        if (!transaction.getTransactionFee().isZero()) {
+            entry.debit(transaction.getSenderId(), transaction.getTransactionFee())
+                    .credit(JournalEntry.FEE_ACCOUNT, transaction.getTransactionFee());
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,218 @@
+package com.revpay.engine;
+
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A fixed-size, memory-mapped log of accepted transfers for one engine shard.
+ *
+ * Each record is {@code [length][crc32][payload]} with the payload holding a
+ * sequence number and the transfer. Version 1 records have no idempotency
+ * key; a log is rewritten in the current version once rewound. Records are appended by the shard's
+ * writer thread only; {@link #force()} makes everything appended so far
+ * durable, so one call covers a whole batch (group commit).
+ *
+ * When the projector has written every record to MySQL the log is rewound
+ * and reused. Stale records left behind after a rewind are never read back:
+ * the scan stops at the first record whose sequence number doesn't follow
+ * the previous one.
+ */
+final class WriteAheadLog implements Closeable {
+    private static final int MAGIC = 0x52505741;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    // length + crc
+    private static final int RECORD_OVERHEAD = 8;
+    // Strings are stored with an unsigned short length
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    // Format of the records in the log, from its header
+    private int version;
+    private long lastSequence;
+
+    WriteAheadLog(Path file, int sizeBytes) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        boolean created = !Files.exists(file);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = created ? sizeBytes : Math.max(channel.size(), HEADER_SIZE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.force();
+        } else if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a transfer log: " + file);
+        } else if (buffer.getInt(4) < 1 || buffer.getInt(4) > VERSION) {
+            channel.close();
+            throw new IOException("Unsupported transfer log version " + buffer.getInt(4) + ": " + file);
+        }
+        this.version = buffer.getInt(4);
+        buffer.position(HEADER_SIZE);
+    }
+
+    /**
+     * Read every intact record from the start of the log and leave the write
+     * position after the last one.
+     */
+    List<Transfer> recover() {
+        List<Transfer> transfers = new ArrayList<>();
+        int position = HEADER_SIZE;
+        long previous = -1;
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_OVERHEAD + length > buffer.capacity()) {
+                break;
+            }
+            int storedCrc = buffer.getInt(position + 4);
+            crc.reset();
+            crc.update(buffer.slice(position + RECORD_OVERHEAD, length));
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+
+            Transfer transfer = read(position + RECORD_OVERHEAD);
+            if (previous >= 0 && transfer.getSequence() != previous + 1) {
+                break;
+            }
+            previous = transfer.getSequence();
+            transfers.add(transfer);
+            position += RECORD_OVERHEAD + length;
+        }
+        if (previous >= 0) {
+            lastSequence = previous;
+        }
+        buffer.position(position);
+        return transfers;
+    }
+
+    /**
+     * Append one record; false if the log has no room left for it.
+     */
+    boolean append(Transfer transfer) {
+        Transaction transaction = transfer.getTransaction();
+        byte[] transactionId = transaction.getTransactionId().getBytes(StandardCharsets.UTF_8);
+        byte[] note = transaction.getDescription() != null ?
+                transaction.getDescription().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (note.length > MAX_FIELD_BYTES) {
+            note = Arrays.copyOf(note, MAX_FIELD_BYTES);
+        }
+        byte[] key = transfer.getIdempotencyKey() != null ?
+                transfer.getIdempotencyKey().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = 8 + 4 + 4 + 8 + 8 + 2 + transactionId.length + 2 + note.length + 2 + key.length;
+
+        int start = buffer.position();
+        // Leave room for a zero length after the record, which ends the scan on recovery
+        if (start + RECORD_OVERHEAD + length + 4 > buffer.capacity()) {
+            return false;
+        }
+
+        buffer.position(start + RECORD_OVERHEAD);
+        buffer.putLong(transfer.getSequence());
+        buffer.putInt(transaction.getSenderId());
+        buffer.putInt(transaction.getReceiverId());
+        buffer.putLong(transaction.getAmount().getCents());
+        buffer.putLong(transaction.getTransactionFee().getCents());
+        buffer.putShort((short) transactionId.length);
+        buffer.put(transactionId);
+        buffer.putShort((short) note.length);
+        buffer.put(note);
+        buffer.putShort((short) key.length);
+        buffer.put(key);
+        buffer.putInt(buffer.position(), 0);
+
+        crc.reset();
+        crc.update(buffer.slice(start + RECORD_OVERHEAD, length));
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        lastSequence = transfer.getSequence();
+        return true;
+    }
+
+    private Transfer read(int position) {
+        long sequence = buffer.getLong(position);
+        int senderId = buffer.getInt(position + 8);
+        int receiverId = buffer.getInt(position + 12);
+        long amount = buffer.getLong(position + 16);
+        long fee = buffer.getLong(position + 24);
+        int idLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+        byte[] transactionId = new byte[idLength];
+        buffer.get(position + 34, transactionId);
+        int noteLength = Short.toUnsignedInt(buffer.getShort(position + 34 + idLength));
+        byte[] note = new byte[noteLength];
+        buffer.get(position + 36 + idLength, note);
+        String key = null;
+        if (version >= 2) {
+            int keyPosition = position + 36 + idLength + noteLength;
+            int keyLength = Short.toUnsignedInt(buffer.getShort(keyPosition));
+            if (keyLength > 0) {
+                byte[] keyBytes = new byte[keyLength];
+                buffer.get(keyPosition + 2, keyBytes);
+                key = new String(keyBytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        Transaction transaction = new Transaction(new String(transactionId, StandardCharsets.UTF_8),
+                senderId, receiverId, Money.ofCents(amount), "SEND");
+        transaction.setTransactionFee(Money.ofCents(fee));
+        transaction.setDescription(noteLength > 0 ? new String(note, StandardCharsets.UTF_8) : null);
+        transaction.setStatus("COMPLETED");
+
+        Transfer transfer = new Transfer(transaction, key);
+        transfer.setSequence(sequence);
+        return transfer;
+    }
+
+    /**
+     * Flush everything appended so far to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Start writing from the beginning again. Only safe once every record has
+     * been projected.
+     */
+    void rewind() {
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.putInt(4, VERSION);
+        version = VERSION;
+        buffer.position(HEADER_SIZE);
+        buffer.force();
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
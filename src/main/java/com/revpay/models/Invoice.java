@@ -9,9 +9,9 @@ public class Invoice {
     private int businessUserId;
     private String customerEmail;
     private String customerName;
-    private double amount;
-    private double taxAmount;
-    private double totalAmount;
+    private Money amount;
+    private Money taxAmount = Money.ZERO;
+    private Money totalAmount;
     private String currency;
     private String items; // JSON string
     private String description;
@@ -25,12 +25,12 @@ public class Invoice {
     public Invoice() {}
 
     public Invoice(String invoiceNumber, int businessUserId,
-                   String customerEmail, double amount) {
+                   String customerEmail, Money amount) {
         this.invoiceNumber = invoiceNumber;
         this.businessUserId = businessUserId;
         this.customerEmail = customerEmail;
         this.amount = amount;
-        this.taxAmount = 0.0;
+        this.taxAmount = Money.ZERO;
         this.totalAmount = amount;
         this.currency = "USD";
         this.status = "DRAFT";
@@ -52,14 +52,14 @@ public class Invoice {
     public String getCustomerName() { return customerName; }
     public void setCustomerName(String customerName) { this.customerName = customerName; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
 
-    public double getTaxAmount() { return taxAmount; }
-    public void setTaxAmount(double taxAmount) { this.taxAmount = taxAmount; }
+    public Money getTaxAmount() { return taxAmount; }
+    public void setTaxAmount(Money taxAmount) { this.taxAmount = taxAmount; }
 
-    public double getTotalAmount() { return totalAmount; }
-    public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+    public Money getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(Money totalAmount) { this.totalAmount = totalAmount; }
 
     public String getCurrency() { return currency; }
     public void setCurrency(String currency) { this.currency = currency; }
@@ -0,0 +1,54 @@
+package com.revpay.models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One balanced money movement: a set of ledger lines whose amounts sum to zero.
+ */
+public class JournalEntry {
+    // System ledger accounts; user wallets use the user id as account id
+    public static final int EXTERNAL_ACCOUNT = -1;   // cards and bank accounts outside RevPay
+    public static final int FEE_ACCOUNT = -2;        // transaction fee revenue
+
+    private long id;
+    private String reference;
+    private String description;
+    private List<LedgerEntry> lines = new ArrayList<>();
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public JournalEntry() {}
+
+    public JournalEntry(String reference, String description) {
+        this.reference = reference;
+        this.description = description;
+    }
+
+    public JournalEntry debit(int accountId, Money amount) {
+        lines.add(new LedgerEntry(accountId, amount.negate()));
+        return this;
+    }
+
+    public JournalEntry credit(int accountId, Money amount) {
+        lines.add(new LedgerEntry(accountId, amount));
+        return this;
+    }
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public List<LedgerEntry> getLines() { return lines; }
+    public void setLines(List<LedgerEntry> lines) { this.lines = lines; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
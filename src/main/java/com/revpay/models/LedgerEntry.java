@@ -0,0 +1,47 @@
+package com.revpay.models;
+
+import java.time.LocalDateTime;
+
+public class LedgerEntry {
+    private long id;
+    private long journalEntryId;
+    private int accountId;
+    private int slot;
+    private Money amount;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public LedgerEntry() {}
+
+    public LedgerEntry(int accountId, Money amount) {
+        this.accountId = accountId;
+        this.amount = amount;
+    }
+
+    public LedgerEntry(int accountId, int slot, Money amount) {
+        this.accountId = accountId;
+        this.slot = slot;
+        this.amount = amount;
+    }
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    public long getJournalEntryId() { return journalEntryId; }
+    public void setJournalEntryId(long journalEntryId) { this.journalEntryId = journalEntryId; }
+
+    public int getAccountId() { return accountId; }
+    public void setAccountId(int accountId) { this.accountId = accountId; }
+
+    // Balance slot within the account; always 0 unless the account is a hot account
+    public int getSlot() { return slot; }
+    public void setSlot(int slot) { this.slot = slot; }
+
+    // Positive amounts credit the account, negative amounts debit it
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,201 @@
+package com.revpay.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An exact amount of money in cents.
+ *
+ * Arithmetic is on a single long, so sums and fees never pick up binary
+ * rounding errors, and {@link #toString()} formats without String.format.
+ * Values map to DECIMAL(15, 2) columns via {@link #toBigDecimal()} and
+ * {@link #of(BigDecimal)}.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    // Whole dollars 0..100 are common (fees, small payments, limits); share them
+    private static final Money[] DOLLARS = new Money[101];
+    static {
+        DOLLARS[0] = ZERO;
+        for (int i = 1; i < DOLLARS.length; i++) {
+            DOLLARS[i] = new Money(i * 100L);
+        }
+    }
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        if (cents >= 0 && cents % 100 == 0 && cents / 100 < DOLLARS.length) {
+            return DOLLARS[(int) (cents / 100)];
+        }
+        return new Money(cents);
+    }
+
+    /**
+     * Nearest cent to a decimal amount, rounding half up.
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return ZERO;
+        }
+        return ofCents(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Nearest cent to a double, reading it as the decimal it prints as, so
+     * 1.005 becomes 1.01 rather than 1.00.
+     */
+    public static Money of(double amount) {
+        return of(BigDecimal.valueOf(amount));
+    }
+
+    /**
+     * Parse user input such as "12", "12.5", "$1,234.56" or "-3.10".
+     * Throws NumberFormatException for anything else, including more than two
+     * decimal places.
+     */
+    public static Money parse(String text) {
+        String value = text.trim();
+        boolean negative = value.startsWith("-");
+        if (negative) {
+            value = value.substring(1);
+        }
+        if (value.startsWith("$")) {
+            value = value.substring(1);
+        }
+        value = value.replace(",", "");
+
+        int dot = value.indexOf('.');
+        String whole = dot < 0 ? value : value.substring(0, dot);
+        String fraction = dot < 0 ? "" : value.substring(dot + 1);
+        if ((whole.isEmpty() && fraction.isEmpty()) || fraction.length() > 2
+                || !isDigits(whole) || !isDigits(fraction)) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+
+        long cents;
+        try {
+            cents = Math.multiplyExact(whole.isEmpty() ? 0 : Long.parseLong(whole), 100);
+            if (fraction.length() == 1) {
+                cents = Math.addExact(cents, (fraction.charAt(0) - '0') * 10L);
+            } else if (fraction.length() == 2) {
+                cents = Math.addExact(cents, Long.parseLong(fraction));
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large: " + text);
+        }
+        return ofCents(negative ? -cents : cents);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // For ratios and display code that still works in double
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    public Money plus(Money other) {
+        return other.cents == 0 ? this : ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return other.cents == 0 ? this : ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(-cents);
+    }
+
+    public Money times(long factor) {
+        return ofCents(Math.multiplyExact(cents, factor));
+    }
+
+    /**
+     * This amount times {@code basisPoints} / 10000 (150 = 1.5%), rounded half
+     * up to the cent.
+     */
+    public Money percentOf(long basisPoints) {
+        long scaled = Math.multiplyExact(cents, basisPoints);
+        long result = scaled / 10_000;
+        long remainder = scaled % 10_000;
+        if (Math.abs(remainder) * 2 >= 10_000) {
+            result += Long.signum(scaled);
+        }
+        return ofCents(result);
+    }
+
+    public boolean isZero() { return cents == 0; }
+    public boolean isNegative() { return cents < 0; }
+    public boolean isPositive() { return cents > 0; }
+
+    public boolean isLessThan(Money other) { return cents < other.cents; }
+    public boolean isGreaterThan(Money other) { return cents > other.cents; }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * Append the amount as plain digits with two decimals, e.g. "-1234.05".
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        long abs = Math.abs(cents);
+        if (cents < 0) {
+            sb.append('-');
+        }
+        long fraction = abs % 100;
+        sb.append(abs / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /**
+     * The amount with a dollar sign, e.g. "$12.50" or "-$3.00".
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder(16);
+        if (cents < 0) {
+            sb.append('-');
+        }
+        sb.append('$');
+        return Money.ofCents(Math.abs(cents)).appendTo(sb).toString();
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(16)).toString();
+    }
+}
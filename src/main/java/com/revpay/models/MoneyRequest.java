@@ -7,7 +7,7 @@ public class MoneyRequest {
     private String requestId;
     private int requesterId;
     private int recipientId;
-    private double amount;
+    private Money amount;
     private String status;
     private String description;
     private LocalDateTime expiresAt;
@@ -18,7 +18,7 @@ public class MoneyRequest {
     public MoneyRequest() {}
 
     public MoneyRequest(String requestId, int requesterId, int recipientId,
-                        double amount) {
+                        Money amount) {
         this.requestId = requestId;
         this.requesterId = requesterId;
         this.recipientId = recipientId;
@@ -39,8 +39,8 @@ public class MoneyRequest {
     public int getRecipientId() { return recipientId; }
     public void setRecipientId(int recipientId) { this.recipientId = recipientId; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
 
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
@@ -7,29 +7,30 @@ public class Transaction {
     private String transactionId;
     private int senderId;
     private int receiverId;
-    private double amount;
+    private Money amount;
     private String transactionType;
     private String status;
     private String description;
     private Integer paymentMethodId;
-    private double transactionFee;
+    private Money transactionFee = Money.ZERO;
     private boolean isRecurring;
     private String recurringFrequency;
     private Integer invoiceId;
+    private Long journalEntryId;
     private LocalDateTime createdAt;
 
     // Constructors
     public Transaction() {}
 
     public Transaction(String transactionId, int senderId, int receiverId,
-                       double amount, String transactionType) {
+                       Money amount, String transactionType) {
         this.transactionId = transactionId;
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.amount = amount;
         this.transactionType = transactionType;
         this.status = "PENDING";
-        this.transactionFee = 0.0;
+        this.transactionFee = Money.ZERO;
         this.isRecurring = false;
     }
 
@@ -48,8 +49,8 @@ public class Transaction {
     public int getReceiverId() { return receiverId; }
     public void setReceiverId(int receiverId) { this.receiverId = receiverId; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public Money getAmount() { return amount; }
+    public void setAmount(Money amount) { this.amount = amount; }
 
     public String getTransactionType() { return transactionType; }
     public void setTransactionType(String transactionType) {
@@ -67,8 +68,8 @@ public class Transaction {
         this.paymentMethodId = paymentMethodId;
     }
 
-    public double getTransactionFee() { return transactionFee; }
-    public void setTransactionFee(double transactionFee) {
+    public Money getTransactionFee() { return transactionFee; }
+    public void setTransactionFee(Money transactionFee) {
         this.transactionFee = transactionFee;
     }
 
@@ -83,6 +84,11 @@ public class Transaction {
     public Integer getInvoiceId() { return invoiceId; }
     public void setInvoiceId(Integer invoiceId) { this.invoiceId = invoiceId; }
 
+    public Long getJournalEntryId() { return journalEntryId; }
+    public void setJournalEntryId(Long journalEntryId) {
+        this.journalEntryId = journalEntryId;
+    }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
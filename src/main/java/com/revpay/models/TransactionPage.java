@@ -0,0 +1,63 @@
+package com.revpay.models;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One page of a user's transaction history, newest first, and the cursor
+ * to pass back for the page after it.
+ */
+public class TransactionPage {
+    /**
+     * Position in the history: the (created_at, id) of the last row already
+     * seen. Rows strictly older than it come next.
+     */
+    public record Cursor(LocalDateTime createdAt, int id) {
+        /**
+         * Opaque string form, for handing the cursor to a client.
+         */
+        public String encode() {
+            return createdAt + "|" + id;
+        }
+
+        public static Cursor decode(String token) {
+            int separator = token.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor: " + token);
+            }
+            return new Cursor(LocalDateTime.parse(token.substring(0, separator)),
+                    Integer.parseInt(token.substring(separator + 1)));
+        }
+    }
+
+    private final List<Transaction> transactions;
+    private final Cursor nextCursor;
+
+    public TransactionPage(List<Transaction> transactions, Cursor nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Page of up to {@code pageSize} rows from a query that asked for one
+     * more; the extra row only tells that another page follows, and the
+     * cursor points at the last row kept.
+     */
+    public static TransactionPage fromRows(List<Transaction> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new TransactionPage(rows, null);
+        }
+        List<Transaction> page = rows.subList(0, pageSize);
+        Transaction last = page.get(pageSize - 1);
+        return new TransactionPage(page, new Cursor(last.getCreatedAt(), last.getId()));
+    }
+
+    public List<Transaction> getTransactions() { return transactions; }
+
+    /** Cursor for the next page, or null if this is the last one. */
+    public Cursor getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+
+    public boolean isEmpty() { return transactions.isEmpty(); }
+}
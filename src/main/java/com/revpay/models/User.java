@@ -16,7 +16,7 @@ public class User {
     private String taxId;
     private String businessAddress;
     private String verificationDocuments;
-    private double walletBalance;
+    private Money walletBalance = Money.ZERO;
     private String securityQuestion1;
     private String securityAnswer1Hash;
     private String securityQuestion2;
@@ -39,7 +39,7 @@ public class User {
         this.passwordHash = passwordHash;
         this.accountType = accountType;
         this.fullName = fullName;
-        this.walletBalance = 0.0;
+        this.walletBalance = Money.ZERO;
         this.isVerified = false;
         this.isLocked = false;
         this.failedLoginAttempts = 0;
@@ -89,8 +89,12 @@ public class User {
         this.verificationDocuments = verificationDocuments;
     }
 
-    public double getWalletBalance() { return walletBalance; }
-    public void setWalletBalance(double walletBalance) { this.walletBalance = walletBalance; }
+    public Money getBalance() { return walletBalance; }
+    public void setBalance(Money walletBalance) { this.walletBalance = walletBalance; }
+
+    // Double view of the balance for callers that still work in double
+    public double getWalletBalance() { return walletBalance.toDouble(); }
+    public void setWalletBalance(double walletBalance) { this.walletBalance = Money.of(walletBalance); }
 
     public String getSecurityQuestion1() { return securityQuestion1; }
     public void setSecurityQuestion1(String securityQuestion1) {
@@ -0,0 +1,142 @@
+package com.revpay.services;
+
+import com.revpay.utils.AppConfig;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by user id, held around in-process money movements.
+ *
+ * Each user id hashes to one of {@code locks.stripes} fair locks. A transfer
+ * locks the stripes of every party in ascending stripe order, so two
+ * transfers over the same accounts can't deadlock here or in MySQL, and
+ * transfers over disjoint accounts only meet when their ids share a stripe.
+ * Waiters on a stripe are served first come, first served. Acquisition gives
+ * up after {@code locks.timeout.ms}.
+ *
+ * Usage:
+ * <pre>
+ * try (AccountLocks.Held held = accountLocks.lock(senderId, recipientId)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class AccountLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Locks on the stripes of one money movement, released by {@link #close()}.
+     */
+    public final class Held implements AutoCloseable {
+        private final int[] held;
+        private int count;
+
+        private Held(int[] stripeIndexes) {
+            this.held = stripeIndexes;
+        }
+
+        @Override
+        public void close() {
+            for (int i = count - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+            count = 0;
+        }
+    }
+
+    public AccountLocks() {
+        this(AppConfig.get().getLockStripes(), AppConfig.get().getLockTimeoutMs());
+    }
+
+    public AccountLocks(int stripeCount, long timeoutMs) {
+        // Round up to a power of two so a stripe is picked with a mask
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    private int stripeOf(int userId) {
+        // Spread consecutive ids so neighbours don't share a stripe pattern
+        int h = userId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Lock the stripes of all the given users in canonical order. Throws
+     * SQLException if a stripe can't be had within the timeout; nothing is
+     * held then.
+     */
+    public Held lock(int... userIds) throws SQLException {
+        int[] order = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            order[i] = stripeOf(userIds[i]);
+        }
+        Arrays.sort(order);
+        int distinct = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || order[i] != order[i - 1]) {
+                order[distinct++] = order[i];
+            }
+        }
+
+        Held held = new Held(Arrays.copyOf(order, distinct));
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int i = 0; i < distinct; i++) {
+            ReentrantLock stripe = stripes[held.held[i]];
+            if (!stripe.tryLock()) {
+                contended.increment();
+                long start = System.nanoTime();
+                boolean acquired;
+                try {
+                    acquired = stripe.tryLock(deadline - start, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    held.close();
+                    throw new SQLException("Interrupted while waiting for an account lock", e);
+                }
+                long waited = System.nanoTime() - start;
+                waitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                if (!acquired) {
+                    timeouts.increment();
+                    held.close();
+                    throw new SQLException("Timed out waiting for an account lock; try again");
+                }
+            }
+            held.count++;
+        }
+        acquisitions.increment();
+        return held;
+    }
+
+    public long getAcquisitions() { return acquisitions.sum(); }
+    public long getContended() { return contended.sum(); }
+    public long getTimeouts() { return timeouts.sum(); }
+    public long getTotalWaitNanos() { return waitNanos.sum(); }
+    public long getMaxWaitNanos() { return maxWaitNanos.get(); }
+
+    @Override
+    public String toString() {
+        return "AccountLocks{stripes=" + stripes.length + ", acquisitions=" + getAcquisitions() +
+                ", contended=" + getContended() + ", timeouts=" + getTimeouts() +
+                ", waitMs=" + TimeUnit.NANOSECONDS.toMillis(getTotalWaitNanos()) +
+                ", maxWaitMs=" + TimeUnit.NANOSECONDS.toMillis(getMaxWaitNanos()) + "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.revpay.services;
 
+import com.revpay.AppContext;
 import com.revpay.dao.UserDAO;
 import com.revpay.dao.NotificationDAO;
 import com.revpay.models.User;
@@ -8,7 +9,6 @@ import com.revpay.models.BusinessUser;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.Properties;
 import java.util.Scanner;
 
 import com.revpay.utils.LoggerUtil;
@@ -17,16 +17,15 @@ import org.apache.logging.log4j.Logger;
 public class AuthService {
     private UserDAO userDAO;
     private NotificationDAO notificationDAO;
-    private Properties properties;
     private Scanner scanner;
     private Logger logger = LoggerUtil.getLogger(AuthService.class);
 
-    private static final int MAX_LOGIN_ATTEMPTS = 5;
+    private final int maxLoginAttempts;
 
     public AuthService() {
-        this.userDAO = new UserDAO();
-        this.notificationDAO = new NotificationDAO();
-        this.properties = userDAO.getProperties();
+        this.userDAO = AppContext.userDAO();
+        this.notificationDAO = AppContext.notificationDAO();
+        this.maxLoginAttempts = AppContext.config().getMaxLoginAttempts();
         this.scanner = new Scanner(System.in);
         logger.info("AuthService initialized");
     }
@@ -56,6 +55,8 @@ public class AuthService {
                 user.setFailedLoginAttempts(0);
                 user.setLocked(false);
                 user.setLastLogin(LocalDateTime.now());
+                // The users row only caches the balance; the ledger has the current one
+                user.setBalance(AppContext.ledgerDAO().getBalance(user.getId()));
 
                 logger.info("Login successful for user: {} (ID: {})",
                         user.getUsername(), user.getId());
@@ -78,9 +79,9 @@ public class AuthService {
                 int attempts = user.getFailedLoginAttempts() + 1;
 
                 logger.warn("Login failed - Invalid password for user: {} (Attempt: {}/{})",
-                        user.getUsername(), attempts, MAX_LOGIN_ATTEMPTS);
+                        user.getUsername(), attempts, maxLoginAttempts);
 
-                if (attempts >= MAX_LOGIN_ATTEMPTS) {
+                if (attempts >= maxLoginAttempts) {
                     userDAO.lockUserAccount(user.getId());
                     logger.error("Account locked due to too many failed attempts: {}", identifier);
 
@@ -89,7 +90,7 @@ public class AuthService {
                             null, "SECURITY", "Max failed attempts reached");
                 } else {
                     System.out.println("Invalid password. Attempts remaining: " +
-                            (MAX_LOGIN_ATTEMPTS - attempts));
+                            (maxLoginAttempts - attempts));
                 }
                 return null;
             }
@@ -0,0 +1,466 @@
+package com.revpay.services;
+
+import com.revpay.AppContext;
+import com.revpay.dao.*;
+import com.revpay.models.JournalEntry;
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.models.User;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Pays many recipients from one wallet, reading them from a CSV
+ * ({@code recipient,amount[,note]}) or JSONL ({@code {"recipient": ..., "amount": ..., "note": ...}})
+ * file.
+ *
+ * The file is processed in chunks of {@code db.batch.size} rows, so memory
+ * stays flat however long it is. Each chunk resolves its recipients in one
+ * query and is posted in one database transaction: a single journal entry,
+ * batched transaction rows and batched notifications. The PIN is checked
+ * once. Every input row gets a line in the report file.
+ */
+public class BulkPayoutService {
+    private static final Logger logger = LoggerUtil.getLogger(BulkPayoutService.class);
+
+    private static final String REPORT_HEADER = "line,recipient,amount,status,transaction_id,message";
+
+    private UserDAO userDAO;
+    private TransactionDAO transactionDAO;
+    private NotificationDAO notificationDAO;
+    private LedgerDAO ledgerDAO;
+    private AccountLocks accountLocks;
+    private int chunkSize;
+    private Scanner scanner;
+
+    public BulkPayoutService() {
+        this.userDAO = AppContext.userDAO();
+        this.transactionDAO = AppContext.transactionDAO();
+        this.notificationDAO = AppContext.notificationDAO();
+        this.ledgerDAO = AppContext.ledgerDAO();
+        this.accountLocks = AppContext.accountLocks();
+        this.chunkSize = AppConfig.get().getBatchSize();
+        this.scanner = new Scanner(System.in);
+    }
+
+    private static class PayoutRow {
+        long line;
+        String recipient;
+        Money amount = Money.ZERO;
+        String note;
+        String status;
+        String transactionId;
+        String message;
+
+        void fail(String message) {
+            this.status = "FAILED";
+            this.message = message;
+        }
+    }
+
+    private static class Totals {
+        long rows;
+        long paid;
+        Money amount = Money.ZERO;
+        boolean stopped;
+    }
+
+    public boolean bulkPayout(User payer, String inputFile, String reportFile) {
+        Path input = Paths.get(inputFile);
+        if (!Files.isReadable(input)) {
+            System.out.println("Cannot read payout file: " + inputFile);
+            return false;
+        }
+
+        System.out.print("Enter transaction PIN: ");
+        String pin = scanner.nextLine();
+        if (payer.getTransactionPinHash() == null) {
+            System.out.println("Set transaction PIN.");
+            return false;
+        }
+        if (!userDAO.verifyPassword(pin, payer.getTransactionPinHash())) {
+            System.out.println("Invalid transaction PIN.");
+            return false;
+        }
+
+        boolean jsonLines = inputFile.toLowerCase().endsWith(".jsonl") || inputFile.toLowerCase().endsWith(".json");
+        Totals totals = new Totals();
+        long startNanos = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter report = Files.newBufferedWriter(Paths.get(reportFile), StandardCharsets.UTF_8)) {
+            report.write(REPORT_HEADER);
+            report.newLine();
+
+            List<PayoutRow> chunk = new ArrayList<>(chunkSize);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                PayoutRow row = jsonLines ? parseJsonLine(line) : parseCsvLine(line);
+                if (row == null) {
+                    continue;  // CSV header
+                }
+                row.line = lineNumber;
+                chunk.add(row);
+
+                if (chunk.size() == chunkSize) {
+                    finishChunk(payer, chunk, report, totals);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                finishChunk(payer, chunk, report, totals);
+            }
+        } catch (IOException e) {
+            System.out.println("Error processing payout file: " + e.getMessage());
+            return false;
+        }
+
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info("Bulk payout by user {}: {} of {} rows paid, ${} in {} ms",
+                payer.getId(), totals.paid, totals.rows, totals.amount, elapsedMs);
+
+        try {
+            payer.setBalance(ledgerDAO.getBalance(payer.getId()));
+        } catch (SQLException e) {
+            logger.warn("Could not refresh balance after bulk payout", e);
+        }
+
+        System.out.println("Processed " + totals.rows + " rows: " + totals.paid + " paid, " +
+                (totals.rows - totals.paid) + " not paid.");
+        System.out.println("Total paid: " + totals.amount.format() + " (plus fees)");
+        System.out.println("Report written to " + reportFile);
+        return totals.paid > 0;
+    }
+
+    private void finishChunk(User payer, List<PayoutRow> chunk, BufferedWriter report, Totals totals)
+            throws IOException {
+        totals.stopped = processChunk(payer, chunk, totals.stopped);
+        totals.rows += chunk.size();
+        for (PayoutRow row : chunk) {
+            if ("PAID".equals(row.status)) {
+                totals.paid++;
+                totals.amount = totals.amount.plus(row.amount);
+            }
+            writeReportRow(report, row);
+        }
+        chunk.clear();
+    }
+
+    /**
+     * Pay one chunk. Once a chunk fails for lack of funds, every later row is
+     * skipped; returns whether that has happened.
+     */
+    private boolean processChunk(User payer, List<PayoutRow> chunk, boolean stopped) {
+        if (stopped) {
+            for (PayoutRow row : chunk) {
+                if (row.status == null) {
+                    row.status = "SKIPPED";
+                    row.message = "Stopped after insufficient balance";
+                }
+            }
+            return true;
+        }
+
+        Set<String> identifiers = new HashSet<>();
+        for (PayoutRow row : chunk) {
+            if (row.status != null) {
+                continue;
+            }
+            if (row.amount.isLessThan(PaymentService.MIN_TRANSACTION_AMOUNT)) {
+                row.fail("Minimum transaction amount is " + PaymentService.MIN_TRANSACTION_AMOUNT.format());
+            } else if (row.amount.isGreaterThan(PaymentService.MAX_TRANSACTION_AMOUNT)) {
+                row.fail("Maximum transaction amount is " + PaymentService.MAX_TRANSACTION_AMOUNT.format());
+            } else {
+                identifiers.add(row.recipient);
+            }
+        }
+
+        Map<String, User> recipients;
+        try {
+            recipients = userDAO.getUserProfilesByIdentifiers(identifiers);
+        } catch (SQLException e) {
+            failPending(chunk, "Recipient lookup failed: " + e.getMessage());
+            return false;
+        }
+
+        JournalEntry entry = new JournalEntry("BULK-" + payer.getId() + "-" + chunk.get(0).line, "Bulk payout");
+        List<Transaction> transactions = new ArrayList<>();
+        List<PayoutRow> payable = new ArrayList<>();
+        for (PayoutRow row : chunk) {
+            if (row.status != null) {
+                continue;
+            }
+            User recipient = recipients.get(row.recipient);
+            if (recipient == null) {
+                row.fail("Recipient not found");
+                continue;
+            }
+            if (recipient.getId() == payer.getId()) {
+                row.fail("Cannot send money to yourself");
+                continue;
+            }
+
+            Money fee = row.amount.percentOf(PaymentService.TRANSACTION_FEE_BASIS_POINTS);
+            String transactionId = transactionDAO.generateTransactionId();
+
+            Transaction transaction = new Transaction(transactionId, payer.getId(),
+                    recipient.getId(), row.amount, "SEND");
+            transaction.setDescription(row.note != null ? row.note : "Bulk payout");
+            transaction.setTransactionFee(fee);
+            transaction.setStatus("COMPLETED");
+            transactions.add(transaction);
+            row.transactionId = transactionId;
+            payable.add(row);
+
+            entry.debit(payer.getId(), row.amount).credit(recipient.getId(), row.amount);
+            if (!fee.isZero()) {
+                entry.debit(payer.getId(), fee).credit(JournalEntry.FEE_ACCOUNT, fee);
+            }
+        }
+
+        if (payable.isEmpty()) {
+            return false;
+        }
+
+        int[] parties = new int[transactions.size() + 1];
+        parties[0] = payer.getId();
+        for (int i = 0; i < transactions.size(); i++) {
+            parties[i + 1] = transactions.get(i).getReceiverId();
+        }
+
+        try (AccountLocks.Held held = accountLocks.lock(parties)) {
+            TransactionTemplate.execute(() -> {
+                long journalId = ledgerDAO.post(entry);
+                for (Transaction transaction : transactions) {
+                    transaction.setJournalEntryId(journalId);
+                }
+                transactionDAO.createTransactions(transactions);
+                notificationDAO.createTransactionNotifications(transactions, "sent", "received");
+                return null;
+            });
+        } catch (InsufficientFundsException e) {
+            for (PayoutRow row : payable) {
+                row.transactionId = null;
+                row.fail("Insufficient balance for this chunk");
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Bulk payout chunk starting at line {} failed", chunk.get(0).line, e);
+            for (PayoutRow row : payable) {
+                row.transactionId = null;
+                row.fail("Payment failed: " + e.getMessage());
+            }
+            return false;
+        }
+
+        for (PayoutRow row : payable) {
+            row.status = "PAID";
+        }
+        return false;
+    }
+
+    private void failPending(List<PayoutRow> chunk, String message) {
+        for (PayoutRow row : chunk) {
+            if (row.status == null) {
+                row.fail(message);
+            }
+        }
+    }
+
+    // Returns null for a header row
+    private PayoutRow parseCsvLine(String line) {
+        List<String> fields = splitCsv(line);
+        PayoutRow row = new PayoutRow();
+        row.recipient = fields.get(0).trim();
+        if (fields.size() < 2) {
+            row.fail("Expected recipient,amount");
+            return row;
+        }
+        try {
+            row.amount = Money.parse(fields.get(1));
+        } catch (NumberFormatException e) {
+            if (row.recipient.equalsIgnoreCase("recipient")) {
+                return null;
+            }
+            row.fail("Invalid amount: " + fields.get(1).trim());
+        }
+        if (fields.size() > 2 && !fields.get(2).isBlank()) {
+            row.note = fields.get(2).trim();
+        }
+        return row;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Reads one flat JSON object. Only the recipient (or identifier), amount
+     * and note keys are used; other keys are ignored.
+     */
+    private PayoutRow parseJsonLine(String line) {
+        PayoutRow row = new PayoutRow();
+        String amount = null;
+        int i = line.indexOf('{');
+        if (i < 0) {
+            row.recipient = "";
+            row.fail("Expected a JSON object");
+            return row;
+        }
+        i++;
+        while (i < line.length()) {
+            i = skipSpace(line, i);
+            if (i >= line.length() || line.charAt(i) == '}') {
+                break;
+            }
+            if (line.charAt(i) == ',') {
+                i++;
+                continue;
+            }
+            StringBuilder key = new StringBuilder();
+            i = readJsonString(line, i, key);
+            i = skipSpace(line, i);
+            if (i < 0 || i >= line.length() || line.charAt(i) != ':') {
+                break;
+            }
+            i = skipSpace(line, i + 1);
+            StringBuilder value = new StringBuilder();
+            if (i < line.length() && line.charAt(i) == '"') {
+                i = readJsonString(line, i, value);
+            } else {
+                while (i < line.length() && ",}".indexOf(line.charAt(i)) < 0) {
+                    value.append(line.charAt(i++));
+                }
+            }
+            if (i < 0) {
+                break;
+            }
+            switch (key.toString()) {
+                case "recipient", "identifier" -> row.recipient = value.toString().trim();
+                case "amount" -> amount = value.toString().trim();
+                case "note" -> row.note = value.toString();
+                default -> { }
+            }
+        }
+
+        if (row.recipient == null) {
+            row.recipient = "";
+            row.fail("Missing recipient");
+        } else if (amount == null) {
+            row.fail("Missing amount");
+        } else {
+            try {
+                row.amount = Money.parse(amount);
+            } catch (NumberFormatException e) {
+                row.fail("Invalid amount: " + amount);
+            }
+        }
+        return row;
+    }
+
+    private static int skipSpace(String line, int i) {
+        while (i >= 0 && i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Appends the string starting at the quote at i and returns the index after it, or -1 if malformed
+    private static int readJsonString(String line, int i, StringBuilder out) {
+        if (i < 0 || i >= line.length() || line.charAt(i) != '"') {
+            return -1;
+        }
+        for (i++; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 'n' -> out.append('\n');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= line.length()) {
+                            return -1;
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            return -1;
+                        }
+                        i += 4;
+                    }
+                    default -> out.append(next);
+                }
+            } else {
+                out.append(c);
+            }
+        }
+        return -1;
+    }
+
+    private void writeReportRow(BufferedWriter report, PayoutRow row) throws IOException {
+        report.write(Long.toString(row.line));
+        report.write(',');
+        report.write(csvField(row.recipient));
+        report.write(',');
+        report.write(row.amount.toString());
+        report.write(',');
+        report.write(row.status);
+        report.write(',');
+        report.write(row.transactionId != null ? row.transactionId : "");
+        report.write(',');
+        report.write(csvField(row.message));
+        report.newLine();
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
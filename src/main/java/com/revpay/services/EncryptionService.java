@@ -1,11 +1,12 @@
 package com.revpay.services;
 
+import com.revpay.utils.AppConfig;
+
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.Properties;
 
 public class EncryptionService {
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
@@ -14,10 +15,9 @@ public class EncryptionService {
 
     public EncryptionService() {
         try {
-            Properties properties = new Properties();
-            properties.load(getClass().getClassLoader().getResourceAsStream("application.properties"));
-            this.secretKey = properties.getProperty("encryption.aes.key", "YourSecretKey12345");
-            this.iv = properties.getProperty("encryption.aes.iv", "YourIV12345678901");
+            AppConfig config = AppConfig.get();
+            this.secretKey = config.getEncryptionKey();
+            this.iv = config.getEncryptionIv();
 
             // Ensure key and IV are correct length
             if (secretKey.length() < 16) {
@@ -0,0 +1,284 @@
+package com.revpay.services;
+
+import com.revpay.AppContext;
+import com.revpay.dao.InvoiceDAO;
+import com.revpay.dao.TransactionDAO;
+import com.revpay.models.Invoice;
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a user's full transaction history, or a business's invoices, to a
+ * CSV or JSONL file ({@code .jsonl}), gzipped if the name ends in {@code .gz}.
+ *
+ * Rows are streamed from MySQL one at a time and appended to one reused
+ * character buffer, which is encoded into one reused byte buffer and written
+ * to a FileChannel whenever it fills. Heap use is the same for a hundred rows
+ * or ten million.
+ */
+public class ExportService {
+    private static final Logger logger = LoggerUtil.getLogger(ExportService.class);
+
+    private static final String TRANSACTION_HEADER =
+            "transaction_id,created_at,type,status,sender_id,receiver_id,amount,fee,description";
+    private static final String INVOICE_HEADER =
+            "invoice_number,created_at,status,customer_email,customer_name,amount,tax_amount,total_amount,currency,due_date,description";
+
+    // Characters buffered before they are encoded and written
+    private static final int FLUSH_CHARS = 32 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    private TransactionDAO transactionDAO;
+    private InvoiceDAO invoiceDAO;
+
+    public ExportService() {
+        this.transactionDAO = AppContext.transactionDAO();
+        this.invoiceDAO = AppContext.invoiceDAO();
+    }
+
+    public boolean exportTransactions(int userId, String file) {
+        long start = System.nanoTime();
+        try (ExportWriter out = new ExportWriter(Paths.get(file))) {
+            if (!out.jsonLines) {
+                out.sb.append(TRANSACTION_HEADER).append('\n');
+            }
+            long rows = transactionDAO.streamTransactionsByUserId(userId, t -> {
+                if (out.jsonLines) {
+                    writeTransactionJson(out.sb, t);
+                } else {
+                    writeTransactionCsv(out.sb, t);
+                }
+                out.endRow();
+            });
+            out.finish();
+            report("transactions", userId, rows, file, start);
+            return true;
+        } catch (SQLException | IOException e) {
+            System.out.println("Error exporting transactions: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean exportInvoices(int businessUserId, String file) {
+        long start = System.nanoTime();
+        try (ExportWriter out = new ExportWriter(Paths.get(file))) {
+            if (!out.jsonLines) {
+                out.sb.append(INVOICE_HEADER).append('\n');
+            }
+            long rows = invoiceDAO.streamInvoicesByBusinessUserId(businessUserId, invoice -> {
+                if (out.jsonLines) {
+                    writeInvoiceJson(out.sb, invoice);
+                } else {
+                    writeInvoiceCsv(out.sb, invoice);
+                }
+                out.endRow();
+            });
+            out.finish();
+            report("invoices", businessUserId, rows, file, start);
+            return true;
+        } catch (SQLException | IOException e) {
+            System.out.println("Error exporting invoices: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void report(String what, int userId, long rows, String file, long startNanos) {
+        long elapsedMs = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        long rate = rows * 1000 / elapsedMs;
+        logger.info("Exported {} {} of user {} to {} in {} ms ({} rows/s)", rows, what, userId, file, elapsedMs, rate);
+        System.out.println("Exported " + rows + " " + what + " to " + file + " in " + elapsedMs + " ms ("
+                + rate + " rows/s)");
+    }
+
+    private static void writeTransactionCsv(StringBuilder sb, Transaction t) {
+        csv(sb, t.getTransactionId()).append(',');
+        sb.append(t.getCreatedAt()).append(',');
+        csv(sb, t.getTransactionType()).append(',');
+        csv(sb, t.getStatus()).append(',');
+        sb.append(t.getSenderId()).append(',');
+        sb.append(t.getReceiverId()).append(',');
+        t.getAmount().appendTo(sb).append(',');
+        t.getTransactionFee().appendTo(sb).append(',');
+        csv(sb, t.getDescription()).append('\n');
+    }
+
+    private static void writeTransactionJson(StringBuilder sb, Transaction t) {
+        json(sb.append("{\"transaction_id\":"), t.getTransactionId());
+        json(sb.append(",\"created_at\":"), t.getCreatedAt() != null ? t.getCreatedAt().toString() : null);
+        json(sb.append(",\"type\":"), t.getTransactionType());
+        json(sb.append(",\"status\":"), t.getStatus());
+        sb.append(",\"sender_id\":").append(t.getSenderId());
+        sb.append(",\"receiver_id\":").append(t.getReceiverId());
+        t.getAmount().appendTo(sb.append(",\"amount\":"));
+        t.getTransactionFee().appendTo(sb.append(",\"fee\":"));
+        json(sb.append(",\"description\":"), t.getDescription()).append("}\n");
+    }
+
+    private static void writeInvoiceCsv(StringBuilder sb, Invoice invoice) {
+        csv(sb, invoice.getInvoiceNumber()).append(',');
+        sb.append(invoice.getCreatedAt()).append(',');
+        csv(sb, invoice.getStatus()).append(',');
+        csv(sb, invoice.getCustomerEmail()).append(',');
+        csv(sb, invoice.getCustomerName()).append(',');
+        amount(sb, invoice.getAmount()).append(',');
+        amount(sb, invoice.getTaxAmount()).append(',');
+        amount(sb, invoice.getTotalAmount()).append(',');
+        csv(sb, invoice.getCurrency()).append(',');
+        if (invoice.getDueDate() != null) {
+            sb.append(invoice.getDueDate());
+        }
+        sb.append(',');
+        csv(sb, invoice.getDescription()).append('\n');
+    }
+
+    private static void writeInvoiceJson(StringBuilder sb, Invoice invoice) {
+        json(sb.append("{\"invoice_number\":"), invoice.getInvoiceNumber());
+        json(sb.append(",\"created_at\":"), invoice.getCreatedAt() != null ? invoice.getCreatedAt().toString() : null);
+        json(sb.append(",\"status\":"), invoice.getStatus());
+        json(sb.append(",\"customer_email\":"), invoice.getCustomerEmail());
+        json(sb.append(",\"customer_name\":"), invoice.getCustomerName());
+        amount(sb.append(",\"amount\":"), invoice.getAmount());
+        amount(sb.append(",\"tax_amount\":"), invoice.getTaxAmount());
+        amount(sb.append(",\"total_amount\":"), invoice.getTotalAmount());
+        json(sb.append(",\"currency\":"), invoice.getCurrency());
+        json(sb.append(",\"due_date\":"), invoice.getDueDate() != null ? invoice.getDueDate().toString() : null);
+        json(sb.append(",\"description\":"), invoice.getDescription()).append("}\n");
+    }
+
+    private static StringBuilder amount(StringBuilder sb, Money amount) {
+        return amount != null ? amount.appendTo(sb) : sb.append('0');
+    }
+
+    private static StringBuilder csv(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return sb.append(value);
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+
+    private static StringBuilder json(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Reused row buffer in front of the output channel. Rows are appended to
+     * {@link #sb}; {@link #endRow()} encodes and writes once enough has built up.
+     */
+    private static final class ExportWriter implements AutoCloseable {
+        final StringBuilder sb = new StringBuilder(FLUSH_CHARS + 1024);
+        final boolean jsonLines;
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final WritableByteChannel channel;
+
+        ExportWriter(Path path) throws IOException {
+            String name = path.getFileName().toString().toLowerCase();
+            boolean gzip = name.endsWith(".gz");
+            if (gzip) {
+                name = name.substring(0, name.length() - 3);
+            }
+            this.jsonLines = name.endsWith(".jsonl") || name.endsWith(".json");
+
+            FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), BYTE_BUFFER_SIZE))
+                    : file;
+        }
+
+        void endRow() throws IOException {
+            if (sb.length() >= FLUSH_CHARS) {
+                drain(false);
+            }
+        }
+
+        void finish() throws IOException {
+            drain(true);
+        }
+
+        private void drain(boolean endOfInput) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(sb);
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                if (result.isUnderflow()) {
+                    break;
+                }
+                write();
+            }
+            if (endOfInput) {
+                while (encoder.flush(bytes).isOverflow()) {
+                    write();
+                }
+                encoder.reset();
+            }
+            write();
+            // Anything left is half of a surrogate pair; keep it for next time
+            sb.delete(0, chars.position());
+        }
+
+        private void write() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
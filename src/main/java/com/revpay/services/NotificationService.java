@@ -1,6 +1,8 @@
 package com.revpay.services;
 
+import com.revpay.AppContext;
 import com.revpay.dao.NotificationDAO;
+import com.revpay.models.Money;
 import com.revpay.models.Notification;
 
 import java.sql.SQLException;
@@ -14,7 +16,7 @@ public class NotificationService {
     private boolean isAllNotifications = false;
 
     public NotificationService() {
-        this.notificationDAO = new NotificationDAO();
+        this.notificationDAO = AppContext.notificationDAO();
         this.scanner = new Scanner(System.in);
     }
 
@@ -197,13 +199,12 @@ public class NotificationService {
         }
     }
 
-    public void createLowBalanceAlert(int userId, double currentBalance, double threshold) {
+    public void createLowBalanceAlert(int userId, Money currentBalance, Money threshold) {
         try {
             String title = "Low Balance Alert";
-            String message = String.format(
-                    "Your wallet balance ($%.2f) is below the threshold ($%.2f). " +
-                            "Please add funds to avoid service interruptions.",
-                    currentBalance, threshold);
+            String message = "Your wallet balance (" + currentBalance.format() +
+                    ") is below the threshold (" + threshold.format() + "). " +
+                    "Please add funds to avoid service interruptions.";
 
             notificationDAO.createAlertNotification(userId, title, message);
         } catch (SQLException e) {
@@ -1,15 +1,21 @@
 package com.revpay.services;
 
+import com.revpay.AppContext;
 import com.revpay.dao.*;
+import com.revpay.engine.TransferEngine;
+import com.revpay.engine.TransferPendingException;
 import com.revpay.models.*;
+import com.revpay.services.TransferPipeline.Stage;
+import com.revpay.utils.AppConfig;
+import com.revpay.utils.LoggerUtil;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 public class PaymentService {
     private UserDAO userDAO;
@@ -19,45 +25,75 @@ public class PaymentService {
     private InvoiceDAO invoiceDAO;
     private LoanDAO loanDAO;
     private NotificationDAO notificationDAO;
+    private LedgerDAO ledgerDAO;
+    private IdempotencyDAO idempotencyDAO;
+    private AccountLocks accountLocks;
     private EncryptionService encryptionService;
-    private Properties properties;
+    private AppConfig config;
     private Scanner scanner;
 
-    private static final double TRANSACTION_FEE_PERCENTAGE = 1.5;
-    private static final double MIN_TRANSACTION_AMOUNT = 1.00;
-    private static final double MAX_TRANSACTION_AMOUNT = 10000.00;
+    // 1.5%, in basis points so fees are computed exactly in cents
+    static final long TRANSACTION_FEE_BASIS_POINTS = 150;
+    static final Money MIN_TRANSACTION_AMOUNT = Money.ofCents(100);
+    static final Money MAX_TRANSACTION_AMOUNT = Money.ofCents(1_000_000);
+
+    private static final DateTimeFormatter HISTORY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public PaymentService() {
-        this.userDAO = new UserDAO();
-        this.paymentMethodDAO = new PaymentMethodDAO();
-        this.transactionDAO = new TransactionDAO();
-        this.moneyRequestDAO = new MoneyRequestDAO();
-        this.invoiceDAO = new InvoiceDAO();
-        this.loanDAO = new LoanDAO();
-        this.notificationDAO = new NotificationDAO();
-        this.encryptionService = new EncryptionService();
-        this.properties = userDAO.getProperties();
+        this.userDAO = AppContext.userDAO();
+        this.paymentMethodDAO = AppContext.paymentMethodDAO();
+        this.transactionDAO = AppContext.transactionDAO();
+        this.moneyRequestDAO = AppContext.moneyRequestDAO();
+        this.invoiceDAO = AppContext.invoiceDAO();
+        this.loanDAO = AppContext.loanDAO();
+        this.notificationDAO = AppContext.notificationDAO();
+        this.ledgerDAO = AppContext.ledgerDAO();
+        this.idempotencyDAO = AppContext.idempotencyDAO();
+        this.accountLocks = AppContext.accountLocks();
+        this.encryptionService = AppContext.encryptionService();
+        this.config = AppContext.config();
         this.scanner = new Scanner(System.in);
     }
 
-    public boolean sendMoney(User sender, String recipientIdentifier, double amount, String note) {
+    public boolean sendMoney(User sender, String recipientIdentifier, Money amount, String note) {
+        return sendMoney(sender, recipientIdentifier, amount, note, null);
+    }
+
+    /**
+     * Like {@link #sendMoney(User, String, Money, String)}, but a retry with
+     * the same idempotency key reports the original transaction instead of
+     * sending again, and a key already used for another operation or amount
+     * is rejected. A null key disables the check.
+     */
+    public boolean sendMoney(User sender, String recipientIdentifier, Money amount, String note,
+                             String idempotencyKey) {
+        TransferPipeline.Timer timer = TransferPipeline.start("sendMoney");
         try {
+            Boolean repeat = idempotencyKey != null ? checkRepeat(sender.getId(), idempotencyKey, "SEND", amount) : null;
+            if (repeat != null) {
+                return repeat;
+            }
+
             // Validate amount
-            if (amount < MIN_TRANSACTION_AMOUNT) {
-                System.out.println("Minimum transaction amount is $" + MIN_TRANSACTION_AMOUNT);
+            if (amount.isLessThan(MIN_TRANSACTION_AMOUNT)) {
+                System.out.println("Minimum transaction amount is " + MIN_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
-            if (amount > MAX_TRANSACTION_AMOUNT) {
-                System.out.println("Maximum transaction amount is $" + MAX_TRANSACTION_AMOUNT);
+            if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+                System.out.println("Maximum transaction amount is " + MAX_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
-            // Check sender balance
-            if (sender.getWalletBalance() < amount) {
-                System.out.println("Insufficient balance. Current balance: $" + sender.getWalletBalance());
+            // Early hint; users.wallet_balance lags the ledger, so read the ledger.
+            // The posting below is what enforces the balance.
+            Money senderBalance = ledgerDAO.getBalance(sender.getId());
+            sender.setBalance(senderBalance);
+            if (senderBalance.isLessThan(amount)) {
+                System.out.println("Insufficient balance. Current balance: " + senderBalance.format());
                 return false;
             }
+            timer.mark(Stage.VALIDATE);
 
             // Find recipient
             User recipient = userDAO.getUserByEmailOrPhone(recipientIdentifier);
@@ -74,22 +110,25 @@ public class PaymentService {
                 System.out.println("Cannot send money to yourself.");
                 return false;
             }
+            timer.mark(Stage.RESOLVE);
 
             // Calculate transaction fee
-            double fee = (amount * TRANSACTION_FEE_PERCENTAGE) / 100;
-            double totalAmount = amount + fee;
+            Money fee = amount.percentOf(TRANSACTION_FEE_BASIS_POINTS);
+            Money totalAmount = amount.plus(fee);
 
             // Verify transaction PIN
             System.out.print("Enter transaction PIN: ");
             String pin = scanner.nextLine();
+            timer.pause();
             if(sender.getTransactionPinHash()==null){
                 System.out.println("Set transaction PIN.");
                 return false;
             }
-            if (!userDAO.verifyPassword(pin, sender.getTransactionPinHash())) {
+            if (!TransferPipeline.authorize(pin, sender.getTransactionPinHash())) {
                 System.out.println("Invalid transaction PIN.");
                 return false;
             }
+            timer.mark(Stage.AUTHORIZE);
 
             // Create transaction
             String transactionId = transactionDAO.generateTransactionId();
@@ -99,27 +138,72 @@ public class PaymentService {
             transaction.setTransactionFee(fee);
             transaction.setStatus("COMPLETED");
 
-            // Update balances
-            userDAO.updateWalletBalance(sender.getId(), -totalAmount);
-            userDAO.updateWalletBalance(recipient.getId(), amount);
+            // Post to the ledger and save the transaction in one commit
+            int recipientId = recipient.getId();
+            JournalEntry entry = transferEntry(transactionId, "Send money",
+                    sender.getId(), recipientId, amount, fee);
+            TransferEngine engine = TransferEngine.get();
+            boolean viaEngine = engine != null;
+            // Both parties stay locked until their in-memory balances are updated
+            try (AccountLocks.Held held = accountLocks.lock(sender.getId(), recipientId)) {
+                Money[] balances;
+                try {
+                    if (viaEngine) {
+                        // Returns once the projector has written the transfer to MySQL, and claimed the key
+                        balances = engine.transfer(transaction, idempotencyKey)
+                                ? new Money[]{ledgerDAO.getBalance(sender.getId()), null} : null;
+                    } else {
+                        balances = TransactionTemplate.execute(() -> {
+                            if (idempotencyKey != null
+                                    && !idempotencyDAO.claim(sender.getId(), idempotencyKey, "SEND", transaction)) {
+                                return null;
+                            }
+                            transaction.setJournalEntryId(ledgerDAO.post(entry));
+                            transactionDAO.createTransaction(transaction);
+                            return new Money[]{ledgerDAO.getBalance(sender.getId()), ledgerDAO.getBalance(recipientId)};
+                        });
+                    }
+                } catch (InsufficientFundsException e) {
+                    System.out.println("Insufficient balance to cover " + totalAmount.format() + " including fee.");
+                    return false;
+                } catch (TransferPendingException e) {
+                    // Accepted and on its way; sending again would pay twice
+                    System.out.println("Your transfer of " + amount.format() + " to " + recipient.getFullName() +
+                            " is still being processed.");
+                    System.out.println("Transaction ID: " + transactionId);
+                    System.out.println("Check your transaction history before sending it again.");
+                    return false;
+                }
 
-            // Save transaction
-            transactionDAO.createTransaction(transaction);
+                if (balances == null) {
+                    return Boolean.TRUE.equals(checkRepeat(sender.getId(), idempotencyKey, "SEND", amount));
+                }
+                if (idempotencyKey != null) {
+                    idempotencyDAO.remember(sender.getId(), idempotencyKey, "SEND", transaction);
+                }
 
-            // Update sender and recipient wallet balances in memory
-            sender.setWalletBalance(sender.getWalletBalance() - totalAmount);
-            User updatedRecipient = userDAO.getUserById(recipient.getId());
-            if (updatedRecipient != null) {
-                recipient.setWalletBalance(updatedRecipient.getWalletBalance());
+                // Update sender and recipient wallet balances in memory
+                sender.setBalance(balances[0]);
+                if (balances[1] != null) {
+                    recipient.setBalance(balances[1]);
+                }
             }
+            timer.mark(Stage.POST);
+
+            int senderId = sender.getId();
+            TransferPipeline.afterCommit(timer, () -> {
+                // The engine's projector notifies the parties itself
+                if (!viaEngine) {
+                    notificationDAO.createTransactionNotifications(senderId, "sent",
+                            recipientId, "received", transactionId, amount);
+                }
+                LoggerUtil.logAudit(String.valueOf(senderId), "SEND_MONEY", amount.toDouble(),
+                        "COMPLETED", transactionId);
+            });
 
-            // Create notifications
-            notificationDAO.createTransactionNotification(sender.getId(), transactionId, amount, "sent");
-            notificationDAO.createTransactionNotification(recipient.getId(), transactionId, amount, "received");
-
-            System.out.println("Successfully sent $" + amount + " to " + recipient.getFullName());
+            System.out.println("Successfully sent " + amount.format() + " to " + recipient.getFullName());
             System.out.println("Transaction ID: " + transactionId);
-            System.out.println("Fee: $" + fee);
+            System.out.println("Fee: " + fee.format());
 
             return true;
 
@@ -129,16 +213,16 @@ public class PaymentService {
         }
     }
 
-    public boolean requestMoney(User requester, String recipientIdentifier, double amount, String note) {
+    public boolean requestMoney(User requester, String recipientIdentifier, Money amount, String note) {
         try {
             // Validate amount
-            if (amount < MIN_TRANSACTION_AMOUNT) {
-                System.out.println("Minimum request amount is $" + MIN_TRANSACTION_AMOUNT);
+            if (amount.isLessThan(MIN_TRANSACTION_AMOUNT)) {
+                System.out.println("Minimum request amount is " + MIN_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
-            if (amount > MAX_TRANSACTION_AMOUNT) {
-                System.out.println("Maximum request amount is $" + MAX_TRANSACTION_AMOUNT);
+            if (amount.isGreaterThan(MAX_TRANSACTION_AMOUNT)) {
+                System.out.println("Maximum request amount is " + MAX_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
@@ -342,11 +426,23 @@ public class PaymentService {
         }
     }
 
-    public boolean addMoneyToWallet(int userId, double amount, int paymentMethodId) {
+    public boolean addMoneyToWallet(int userId, Money amount, int paymentMethodId) {
+        return addMoneyToWallet(userId, amount, paymentMethodId, null);
+    }
+
+    /**
+     * Wallet top-up that a retry with the same idempotency key won't repeat.
+     */
+    public boolean addMoneyToWallet(int userId, Money amount, int paymentMethodId, String idempotencyKey) {
         try {
+            Boolean repeat = idempotencyKey != null ? checkRepeat(userId, idempotencyKey, "DEPOSIT", amount) : null;
+            if (repeat != null) {
+                return repeat;
+            }
+
             // Validate amount
-            if (amount < MIN_TRANSACTION_AMOUNT) {
-                System.out.println("Minimum amount is $" + MIN_TRANSACTION_AMOUNT);
+            if (amount.isLessThan(MIN_TRANSACTION_AMOUNT)) {
+                System.out.println("Minimum amount is " + MIN_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
@@ -374,20 +470,36 @@ public class PaymentService {
             transaction.setDescription("Wallet top-up from card");
             transaction.setStatus("COMPLETED");
 
-            // Update wallet balance
-            userDAO.updateWalletBalance(userId, amount);
-
-            // Save transaction
-            transactionDAO.createTransaction(transaction);
-
-            // Update user object
-            user.setWalletBalance(user.getWalletBalance() + amount);
+            // Post to the ledger, save transaction and notify in one commit
+            JournalEntry entry = new JournalEntry(transactionId, "Wallet top-up")
+                    .debit(JournalEntry.EXTERNAL_ACCOUNT, amount)
+                    .credit(userId, amount);
+            // Held until the in-memory balance is updated
+            try (AccountLocks.Held held = accountLocks.lock(userId)) {
+                Money newBalance = TransactionTemplate.execute(() -> {
+                    if (idempotencyKey != null
+                            && !idempotencyDAO.claim(userId, idempotencyKey, "DEPOSIT", transaction)) {
+                        return null;
+                    }
+                    transaction.setJournalEntryId(ledgerDAO.post(entry));
+                    transactionDAO.createTransaction(transaction);
+                    notificationDAO.createTransactionNotification(userId, transactionId, amount, "added to wallet");
+                    return ledgerDAO.getBalance(userId);
+                });
+
+                if (newBalance == null) {
+                    return Boolean.TRUE.equals(checkRepeat(userId, idempotencyKey, "DEPOSIT", amount));
+                }
+                if (idempotencyKey != null) {
+                    idempotencyDAO.remember(userId, idempotencyKey, "DEPOSIT", transaction);
+                }
 
-            // Create notification
-            notificationDAO.createTransactionNotification(userId, transactionId, amount, "added to wallet");
+                // Update user object
+                user.setBalance(newBalance);
+            }
 
-            System.out.println("Successfully added $" + amount + " to your wallet.");
-            System.out.println("New balance: $" + user.getWalletBalance());
+            System.out.println("Successfully added " + amount.format() + " to your wallet.");
+            System.out.println("New balance: " + user.getBalance().format());
 
             return true;
 
@@ -397,18 +509,32 @@ public class PaymentService {
         }
     }
 
-    public boolean withdrawFromWallet(int userId, double amount) {
+    public boolean withdrawFromWallet(int userId, Money amount) {
+        return withdrawFromWallet(userId, amount, null);
+    }
+
+    /**
+     * Withdrawal that a retry with the same idempotency key won't repeat.
+     */
+    public boolean withdrawFromWallet(int userId, Money amount, String idempotencyKey) {
         try {
+            Boolean repeat = idempotencyKey != null ? checkRepeat(userId, idempotencyKey, "WITHDRAWAL", amount) : null;
+            if (repeat != null) {
+                return repeat;
+            }
+
             // Validate amount
-            if (amount < MIN_TRANSACTION_AMOUNT) {
-                System.out.println("Minimum withdrawal amount is $" + MIN_TRANSACTION_AMOUNT);
+            if (amount.isLessThan(MIN_TRANSACTION_AMOUNT)) {
+                System.out.println("Minimum withdrawal amount is " + MIN_TRANSACTION_AMOUNT.format());
                 return false;
             }
 
-            // Check balance
+            // Early hint from the ledger, not the lagging users.wallet_balance;
+            // the posting below is what enforces the balance
             User user = userDAO.getUserById(userId);
-            if (user.getWalletBalance() < amount) {
-                System.out.println("Insufficient balance. Current balance: $" + user.getWalletBalance());
+            Money balance = ledgerDAO.getBalance(userId);
+            if (balance.isLessThan(amount)) {
+                System.out.println("Insufficient balance. Current balance: " + balance.format());
                 return false;
             }
 
@@ -427,21 +553,43 @@ public class PaymentService {
             transaction.setDescription("Withdrawal to bank account");
             transaction.setStatus("COMPLETED"); // For simulation
 
-            // Update balance
-            userDAO.updateWalletBalance(userId, -amount);
-
-            // Save transaction
-            transactionDAO.createTransaction(transaction);
+            // Post to the ledger, save transaction and notify in one commit
+            JournalEntry entry = new JournalEntry(transactionId, "Withdrawal")
+                    .debit(userId, amount)
+                    .credit(JournalEntry.EXTERNAL_ACCOUNT, amount);
+            // Held until the in-memory balance is updated
+            try (AccountLocks.Held held = accountLocks.lock(userId)) {
+                Money newBalance;
+                try {
+                    newBalance = TransactionTemplate.execute(() -> {
+                        if (idempotencyKey != null
+                                && !idempotencyDAO.claim(userId, idempotencyKey, "WITHDRAWAL", transaction)) {
+                            return null;
+                        }
+                        transaction.setJournalEntryId(ledgerDAO.post(entry));
+                        transactionDAO.createTransaction(transaction);
+                        notificationDAO.createTransactionNotification(userId, transactionId, amount, "withdrawn from wallet");
+                        return ledgerDAO.getBalance(userId);
+                    });
+                } catch (InsufficientFundsException e) {
+                    System.out.println("Insufficient balance.");
+                    return false;
+                }
 
-            // Update user object
-            user.setWalletBalance(user.getWalletBalance() - amount);
+                if (newBalance == null) {
+                    return Boolean.TRUE.equals(checkRepeat(userId, idempotencyKey, "WITHDRAWAL", amount));
+                }
+                if (idempotencyKey != null) {
+                    idempotencyDAO.remember(userId, idempotencyKey, "WITHDRAWAL", transaction);
+                }
 
-            // Create notification
-            notificationDAO.createTransactionNotification(userId, transactionId, amount, "withdrawn from wallet");
+                // Update user object
+                user.setBalance(newBalance);
+            }
 
-            System.out.println("Withdrawal request submitted for $" + amount);
+            System.out.println("Withdrawal request submitted for " + amount.format());
             System.out.println("Transaction ID: " + transactionId);
-            System.out.println("New balance: $" + user.getWalletBalance());
+            System.out.println("New balance: " + user.getBalance().format());
             System.out.println("Note: Withdrawals typically take 1-3 business days to process.");
 
             return true;
@@ -454,9 +602,10 @@ public class PaymentService {
 
     public void viewTransactionHistory(int userId) {
         try {
-            List<Transaction> transactions = transactionDAO.getTransactionsByUserId(userId);
+            int pageSize = config.getHistoryPageSize();
+            TransactionPage page = transactionDAO.getTransactionsPage(userId, null, null, null, null, pageSize);
 
-            if (transactions.isEmpty()) {
+            if (page.isEmpty()) {
                 System.out.println("No transactions found.");
                 return;
             }
@@ -465,54 +614,74 @@ public class PaymentService {
             System.out.println("Date                  | Type       | Amount   | Status     | Description");
             System.out.println("---------------------------------------------------------------------");
 
-            for (Transaction t : transactions) {
-                String date = t.getCreatedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-                String type = t.getTransactionType();
-                String amount = String.format("$%.2f", t.getAmount());
-                String status = t.getStatus();
-                String description = t.getDescription() != null ?
-                        (t.getDescription().length() > 20 ? t.getDescription().substring(0, 20) + "..." : t.getDescription())
-                        : "";
-
-                // Determine if amount is incoming or outgoing
-                if (t.getSenderId() == userId && t.getReceiverId() != userId) {
-                    amount = "-" + amount; // Outgoing
-                } else if (t.getReceiverId() == userId && t.getSenderId() != userId) {
-                    amount = "+" + amount; // Incoming
+            // One builder for the whole table; String.format per row dominated long histories
+            StringBuilder line = new StringBuilder(128);
+            while (true) {
+                printHistoryRows(page, userId, line);
+                if (!page.hasMore()) {
+                    break;
                 }
-
-                System.out.printf("%-20s | %-10s | %-9s | %-10s | %s%n",
-                        date, type, amount, status, description);
+                System.out.print("-- Enter for more, q to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+                page = transactionDAO.getTransactionsPage(userId, null, null, null, page.getNextCursor(), pageSize);
             }
 
             // Show summary
-            double totalSent = transactionDAO.getTotalSentAmount(userId,
+            Money totalSent = transactionDAO.getTotalSentAmount(userId,
                     LocalDateTime.now().minusMonths(1), LocalDateTime.now());
-            double totalReceived = transactionDAO.getTotalReceivedAmount(userId,
+            Money totalReceived = transactionDAO.getTotalReceivedAmount(userId,
                     LocalDateTime.now().minusMonths(1), LocalDateTime.now());
 
             System.out.println("\n--- Last 30 Days Summary ---");
-            System.out.println("Total Sent: $" + String.format("%.2f", totalSent));
-            System.out.println("Total Received: $" + String.format("%.2f", totalReceived));
+            System.out.println("Total Sent: " + totalSent.format());
+            System.out.println("Total Received: " + totalReceived.format());
 
         } catch (SQLException e) {
             System.out.println("Error viewing transaction history: " + e.getMessage());
         }
     }
 
+    private void printHistoryRows(TransactionPage page, int userId, StringBuilder line) {
+        for (Transaction t : page.getTransactions()) {
+            line.setLength(0);
+            String description = t.getDescription() != null ?
+                    (t.getDescription().length() > 20 ? t.getDescription().substring(0, 20) + "..." : t.getDescription())
+                    : "";
+
+            pad(line.append(t.getCreatedAt().format(HISTORY_DATE_FORMAT)), 0, 20).append(" | ");
+            int start = line.length();
+            pad(line.append(t.getTransactionType()), start, 10).append(" | ");
+
+            // Determine if amount is incoming or outgoing
+            start = line.length();
+            if (t.getSenderId() == userId && t.getReceiverId() != userId) {
+                line.append('-'); // Outgoing
+            } else if (t.getReceiverId() == userId && t.getSenderId() != userId) {
+                line.append('+'); // Incoming
+            }
+            pad(t.getAmount().appendTo(line.append('$')), start, 9).append(" | ");
+            start = line.length();
+            pad(line.append(t.getStatus()), start, 10).append(" | ").append(description);
+
+            System.out.println(line);
+        }
+    }
+
     // Business methods
     public boolean createInvoice(int businessUserId, String customerEmail, String customerName,
-                                 double amount, String description, String dueDateStr) {
+                                 Money amount, String description, String dueDateStr) {
         try {
             // Validate business user
-            User businessUser = userDAO.getUserById(businessUserId);
+            User businessUser = userDAO.getUserProfileById(businessUserId);
             if (businessUser == null || !businessUser.getAccountType().equals("BUSINESS")) {
                 System.out.println("Business account required.");
                 return false;
             }
 
             // Validate amount
-            if (amount <= 0) {
+            if (!amount.isPositive()) {
                 System.out.println("Invoice amount must be greater than 0.");
                 return false;
             }
@@ -547,7 +716,7 @@ public class PaymentService {
             System.out.println("Invoice created successfully.");
             System.out.println("Invoice Number: " + invoiceNumber);
             System.out.println("Customer: " + customerName + " (" + customerEmail + ")");
-            System.out.println("Amount: $" + amount);
+            System.out.println("Amount: " + amount.format());
             System.out.println("Due Date: " + dueDate);
 
             return true;
@@ -571,23 +740,29 @@ public class PaymentService {
             System.out.println("Invoice #       | Customer            | Amount     | Status   | Due Date");
             System.out.println("---------------------------------------------------------------------");
 
+            StringBuilder line = new StringBuilder(128);
             for (Invoice invoice : invoices) {
-                String invoiceNo = invoice.getInvoiceNumber();
+                line.setLength(0);
                 String customer = invoice.getCustomerName() != null ?
                         (invoice.getCustomerName().length() > 15 ?
                                 invoice.getCustomerName().substring(0, 15) + "..." : invoice.getCustomerName())
                         : invoice.getCustomerEmail();
-                String amount = String.format("$%.2f", invoice.getTotalAmount());
-                String status = invoice.getStatus();
                 String dueDate = invoice.getDueDate() != null ?
                         invoice.getDueDate().toString() : "N/A";
 
-                System.out.printf("%-15s | %-20s | %-10s | %-8s | %s%n",
-                        invoiceNo, customer, amount, status, dueDate);
+                pad(line.append(invoice.getInvoiceNumber()), 0, 15).append(" | ");
+                int start = line.length();
+                pad(line.append(customer), start, 20).append(" | ");
+                start = line.length();
+                pad(invoice.getTotalAmount().appendTo(line.append('$')), start, 10).append(" | ");
+                start = line.length();
+                pad(line.append(invoice.getStatus()), start, 8).append(" | ").append(dueDate);
+
+                System.out.println(line);
             }
 
             // Show summary
-            double outstanding = invoiceDAO.getTotalOutstandingAmount(businessUserId);
+            Money outstanding = invoiceDAO.getTotalOutstandingAmount(businessUserId);
             int draftCount = invoiceDAO.getInvoiceCountByStatus(businessUserId, "DRAFT");
             int sentCount = invoiceDAO.getInvoiceCountByStatus(businessUserId, "SENT");
             int paidCount = invoiceDAO.getInvoiceCountByStatus(businessUserId, "PAID");
@@ -596,7 +771,7 @@ public class PaymentService {
             System.out.println("Draft Invoices: " + draftCount);
             System.out.println("Sent Invoices: " + sentCount);
             System.out.println("Paid Invoices: " + paidCount);
-            System.out.println("Total Outstanding: $" + String.format("%.2f", outstanding));
+            System.out.println("Total Outstanding: " + outstanding.format());
 
         } catch (SQLException e) {
             System.out.println("Error viewing invoices: " + e.getMessage());
@@ -606,15 +781,15 @@ public class PaymentService {
     public boolean applyForLoan(int businessUserId, double amount, String purpose, int termMonths) {
         try {
             // Validate business user
-            User businessUser = userDAO.getUserById(businessUserId);
+            User businessUser = userDAO.getUserProfileById(businessUserId);
             if (businessUser == null || !businessUser.getAccountType().equals("BUSINESS")) {
                 System.out.println("Business account required.");
                 return false;
             }
 
             // Validate amount
-            double minLoan = Double.parseDouble(properties.getProperty("business.min.loan.amount", "1000.00"));
-            double maxLoan = Double.parseDouble(properties.getProperty("business.max.loan.amount", "100000.00"));
+            double minLoan = config.getMinLoanAmount();
+            double maxLoan = config.getMaxLoanAmount();
 
             if (amount < minLoan) {
                 System.out.println("Minimum loan amount is $" + minLoan);
@@ -699,7 +874,7 @@ public class PaymentService {
 
     public void viewBusinessAnalytics(int businessUserId) {
         try {
-            User businessUser = userDAO.getUserById(businessUserId);
+            User businessUser = userDAO.getUserProfileById(businessUserId);
             if (businessUser == null || !businessUser.getAccountType().equals("BUSINESS")) {
                 System.out.println("Business account required.");
                 return;
@@ -709,45 +884,70 @@ public class PaymentService {
             LocalDateTime monthStart = now.minusMonths(1);
             LocalDateTime yearStart = now.minusYears(1);
 
+            // The queries are independent, so run them concurrently
+            CompletableFuture<Money> monthlySentFuture = AsyncDAO.supply(
+                    () -> transactionDAO.getTotalSentAmount(businessUserId, monthStart, now));
+            CompletableFuture<Money> monthlyReceivedFuture = AsyncDAO.supply(
+                    () -> transactionDAO.getTotalReceivedAmount(businessUserId, monthStart, now));
+            CompletableFuture<Money> yearlyReceivedFuture = AsyncDAO.supply(
+                    () -> transactionDAO.getTotalReceivedAmount(businessUserId, yearStart, now));
+            CompletableFuture<Money> outstandingFuture = AsyncDAO.supply(
+                    () -> invoiceDAO.getTotalOutstandingAmount(businessUserId));
+            CompletableFuture<Money> monthlyPaidFuture = AsyncDAO.supply(
+                    () -> invoiceDAO.getTotalPaidAmount(businessUserId, monthStart, now));
+            CompletableFuture<Money> balanceFuture = AsyncDAO.supply(() -> ledgerDAO.getBalance(businessUserId));
+            CompletableFuture<Double> approvedLoansFuture = AsyncDAO.supply(
+                    () -> loanDAO.getTotalApprovedLoanAmount(businessUserId));
+            CompletableFuture<Integer> completedFuture = AsyncDAO.supply(
+                    () -> transactionDAO.getTransactionCount(businessUserId, "COMPLETED"));
+            CompletableFuture<Integer> pendingFuture = AsyncDAO.supply(
+                    () -> transactionDAO.getTransactionCount(businessUserId, "PENDING"));
+            CompletableFuture<Integer> draftFuture = AsyncDAO.supply(
+                    () -> invoiceDAO.getInvoiceCountByStatus(businessUserId, "DRAFT"));
+            CompletableFuture<Integer> sentFuture = AsyncDAO.supply(
+                    () -> invoiceDAO.getInvoiceCountByStatus(businessUserId, "SENT"));
+            CompletableFuture<Integer> paidFuture = AsyncDAO.supply(
+                    () -> invoiceDAO.getInvoiceCountByStatus(businessUserId, "PAID"));
+
             // Get transaction data
-            double monthlySent = transactionDAO.getTotalSentAmount(businessUserId, monthStart, now);
-            double monthlyReceived = transactionDAO.getTotalReceivedAmount(businessUserId, monthStart, now);
-            double yearlyReceived = transactionDAO.getTotalReceivedAmount(businessUserId, yearStart, now);
+            Money monthlySent = AsyncDAO.await(monthlySentFuture);
+            Money monthlyReceived = AsyncDAO.await(monthlyReceivedFuture);
+            Money yearlyReceived = AsyncDAO.await(yearlyReceivedFuture);
 
             // Get invoice data
-            double outstandingInvoices = invoiceDAO.getTotalOutstandingAmount(businessUserId);
-            double monthlyPaidInvoices = invoiceDAO.getTotalPaidAmount(businessUserId, monthStart, now);
+            Money outstandingInvoices = AsyncDAO.await(outstandingFuture);
+            Money monthlyPaidInvoices = AsyncDAO.await(monthlyPaidFuture);
 
             // Get loan data
-            double totalApprovedLoans = loanDAO.getTotalApprovedLoanAmount(businessUserId);
+            double totalApprovedLoans = AsyncDAO.await(approvedLoansFuture);
 
             System.out.println("\n--- Business Analytics ---");
             System.out.println("=== Financial Overview ===");
-            System.out.println("Current Balance: $" + String.format("%.2f", businessUser.getWalletBalance()));
-            System.out.println("Outstanding Invoices: $" + String.format("%.2f", outstandingInvoices));
+            System.out.println("Current Balance: " + AsyncDAO.await(balanceFuture).format());
+            System.out.println("Outstanding Invoices: " + outstandingInvoices.format());
             System.out.println("Total Approved Loans: $" + String.format("%.2f", totalApprovedLoans));
 
             System.out.println("\n=== Last 30 Days ===");
-            System.out.println("Money Sent: $" + String.format("%.2f", monthlySent));
-            System.out.println("Money Received: $" + String.format("%.2f", monthlyReceived));
-            System.out.println("Invoice Payments: $" + String.format("%.2f", monthlyPaidInvoices));
-            System.out.println("Net Cash Flow: $" + String.format("%.2f", (monthlyReceived + monthlyPaidInvoices - monthlySent)));
+            System.out.println("Money Sent: " + monthlySent.format());
+            System.out.println("Money Received: " + monthlyReceived.format());
+            System.out.println("Invoice Payments: " + monthlyPaidInvoices.format());
+            System.out.println("Net Cash Flow: " + monthlyReceived.plus(monthlyPaidInvoices).minus(monthlySent).format());
 
             System.out.println("\n=== Last 12 Months ===");
-            System.out.println("Total Revenue: $" + String.format("%.2f", yearlyReceived));
+            System.out.println("Total Revenue: " + yearlyReceived.format());
 
             // Show transaction counts
-            int completedCount = transactionDAO.getTransactionCount(businessUserId, "COMPLETED");
-            int pendingCount = transactionDAO.getTransactionCount(businessUserId, "PENDING");
+            int completedCount = AsyncDAO.await(completedFuture);
+            int pendingCount = AsyncDAO.await(pendingFuture);
 
             System.out.println("\n=== Transaction Summary ===");
             System.out.println("Completed Transactions: " + completedCount);
             System.out.println("Pending Transactions: " + pendingCount);
 
             // Show invoice status counts
-            int draftInvoices = invoiceDAO.getInvoiceCountByStatus(businessUserId, "DRAFT");
-            int sentInvoices = invoiceDAO.getInvoiceCountByStatus(businessUserId, "SENT");
-            int paidInvoices = invoiceDAO.getInvoiceCountByStatus(businessUserId, "PAID");
+            int draftInvoices = AsyncDAO.await(draftFuture);
+            int sentInvoices = AsyncDAO.await(sentFuture);
+            int paidInvoices = AsyncDAO.await(paidFuture);
 
             System.out.println("\n=== Invoice Status ===");
             System.out.println("Draft: " + draftInvoices);
@@ -759,10 +959,32 @@ public class PaymentService {
         }
     }
 
-    public boolean acceptPayment(int businessUserId, String customerIdentifier, double amount) {
+    public boolean acceptPayment(int businessUserId, String customerIdentifier, Money amount) {
+        return acceptPayment(businessUserId, customerIdentifier, amount, null);
+    }
+
+    /**
+     * Business payment that a retry with the same idempotency key won't
+     * repeat. Keys are scoped to the business account.
+     */
+    public boolean acceptPayment(int businessUserId, String customerIdentifier, Money amount,
+                                 String idempotencyKey) {
+        TransferPipeline.Timer timer = TransferPipeline.start("acceptPayment");
         try {
+            Boolean repeat = idempotencyKey != null ? checkRepeat(businessUserId, idempotencyKey, "PAYMENT", amount) : null;
+            if (repeat != null) {
+                return repeat;
+            }
+
+            // Validate amount
+            if (amount.isLessThan(MIN_TRANSACTION_AMOUNT)) {
+                System.out.println("Minimum payment amount is " + MIN_TRANSACTION_AMOUNT.format());
+                return false;
+            }
+            timer.mark(Stage.VALIDATE);
+
             // Validate business user
-            User businessUser = userDAO.getUserById(businessUserId);
+            User businessUser = userDAO.getUserProfileById(businessUserId);
             if (businessUser == null || !businessUser.getAccountType().equals("BUSINESS")) {
                 System.out.println("Business account required.");
                 return false;
@@ -779,31 +1001,29 @@ public class PaymentService {
                 return false;
             }
 
-            // Validate amount
-            if (amount < MIN_TRANSACTION_AMOUNT) {
-                System.out.println("Minimum payment amount is $" + MIN_TRANSACTION_AMOUNT);
-                return false;
-            }
-
-            // Check customer balance
-            if (customer.getWalletBalance() < amount) {
+            // Early hint from the ledger, not the lagging users.wallet_balance;
+            // the posting below is what enforces the balance
+            if (ledgerDAO.getBalance(customer.getId()).isLessThan(amount)) {
                 System.out.println("Customer has insufficient balance.");
                 return false;
             }
+            timer.mark(Stage.RESOLVE);
 
             // Calculate transaction fee
-            double fee = (amount * TRANSACTION_FEE_PERCENTAGE) / 100;
-            double totalAmount = amount + fee;
+            Money fee = amount.percentOf(TRANSACTION_FEE_BASIS_POINTS);
+            Money totalAmount = amount.plus(fee);
 
             // Verify customer's transaction PIN
             System.out.println("Customer " + customer.getFullName() + " needs to authorize payment.");
             System.out.print("Enter customer's transaction PIN: ");
             String pin = scanner.nextLine();
+            timer.pause();
 
-            if (!userDAO.verifyPassword(pin, customer.getTransactionPinHash())) {
+            if (!TransferPipeline.authorize(pin, customer.getTransactionPinHash())) {
                 System.out.println("Invalid transaction PIN.");
                 return false;
             }
+            timer.mark(Stage.AUTHORIZE);
 
             // Create transaction
             String transactionId = transactionDAO.generateTransactionId();
@@ -813,24 +1033,51 @@ public class PaymentService {
             transaction.setTransactionFee(fee);
             transaction.setStatus("COMPLETED");
 
-            // Update balances
-            userDAO.updateWalletBalance(customer.getId(), -totalAmount);
-            userDAO.updateWalletBalance(businessUserId, amount);
+            // Post to the ledger and save the transaction in one commit
+            int customerId = customer.getId();
+            JournalEntry entry = transferEntry(transactionId, "Business payment",
+                    customerId, businessUserId, amount, fee);
+            // Both parties stay locked until the in-memory balance is updated
+            try (AccountLocks.Held held = accountLocks.lock(customerId, businessUserId)) {
+                Money businessBalance;
+                try {
+                    businessBalance = TransactionTemplate.execute(() -> {
+                        if (idempotencyKey != null
+                                && !idempotencyDAO.claim(businessUserId, idempotencyKey, "PAYMENT", transaction)) {
+                            return null;
+                        }
+                        transaction.setJournalEntryId(ledgerDAO.post(entry));
+                        transactionDAO.createTransaction(transaction);
+                        return ledgerDAO.getBalance(businessUserId);
+                    });
+                } catch (InsufficientFundsException e) {
+                    System.out.println("Customer has insufficient balance.");
+                    return false;
+                }
 
-            // Save transaction
-            transactionDAO.createTransaction(transaction);
+                if (businessBalance == null) {
+                    return Boolean.TRUE.equals(checkRepeat(businessUserId, idempotencyKey, "PAYMENT", amount));
+                }
+                if (idempotencyKey != null) {
+                    idempotencyDAO.remember(businessUserId, idempotencyKey, "PAYMENT", transaction);
+                }
 
-            // Update business user balance in memory
-            businessUser.setWalletBalance(businessUser.getWalletBalance() + amount);
+                // Update business user balance in memory
+                businessUser.setBalance(businessBalance);
+            }
+            timer.mark(Stage.POST);
 
-            // Create notifications
-            notificationDAO.createTransactionNotification(customer.getId(), transactionId, amount, "paid");
-            notificationDAO.createTransactionNotification(businessUserId, transactionId, amount, "received as payment");
+            TransferPipeline.afterCommit(timer, () -> {
+                notificationDAO.createTransactionNotifications(customerId, "paid",
+                        businessUserId, "received as payment", transactionId, amount);
+                LoggerUtil.logAudit(String.valueOf(businessUserId), "PAYMENT", amount.toDouble(),
+                        "COMPLETED", transactionId);
+            });
 
             System.out.println("Payment accepted successfully!");
-            System.out.println("Amount: $" + amount);
+            System.out.println("Amount: " + amount.format());
             System.out.println("Transaction ID: " + transactionId);
-            System.out.println("Fee: $" + fee);
+            System.out.println("Fee: " + fee.format());
             System.out.println("Customer: " + customer.getFullName());
 
             return true;
@@ -842,6 +1089,47 @@ public class PaymentService {
     }
 
     // Helper methods
+
+    // Null if the key is unused. Otherwise reports its earlier use: true if this is a retry of that
+    // request, false if the key was used for a different operation or amount, which is rejected
+    private Boolean checkRepeat(int userId, String idempotencyKey, String operation, Money amount)
+            throws SQLException {
+        IdempotencyDAO.UsedKey used = idempotencyDAO.findKey(userId, idempotencyKey);
+        if (used == null) {
+            return null;
+        }
+        if (!used.matches(operation, amount)) {
+            System.out.println("Request rejected: its key was already used for a " + used.operation() +
+                    " of " + used.amount().format() + ".");
+            return false;
+        }
+        Transaction original = used.transaction();
+        System.out.println("This request was already processed.");
+        System.out.println("Transaction ID: " + original.getTransactionId());
+        System.out.println("Amount: " + original.getAmount().format() + " (" + original.getStatus() + ")");
+        return true;
+    }
+
+    private JournalEntry transferEntry(String transactionId, String description,
+                                       int payerId, int payeeId, Money amount, Money fee) {
+        JournalEntry entry = new JournalEntry(transactionId, description)
+                .debit(payerId, amount)
+                .credit(payeeId, amount);
+        // Fees under half a cent round to nothing and get no lines
+        if (!fee.isZero()) {
+            entry.debit(payerId, fee).credit(JournalEntry.FEE_ACCOUNT, fee);
+        }
+        return entry;
+    }
+
+    // Pads the text appended since start with spaces to at least width characters
+    private static StringBuilder pad(StringBuilder sb, int start, int width) {
+        for (int i = sb.length() - start; i < width; i++) {
+            sb.append(' ');
+        }
+        return sb;
+    }
+
     private boolean isValidCardNumber(String cardNumber) {
         // Remove non-digits
         cardNumber = cardNumber.replaceAll("[^0-9]", "");
@@ -869,9 +1157,11 @@ public class PaymentService {
         return (sum % 10 == 0);
     }
 
-//    get Wallet Balance
-    public double getWalletBalance(int id){
-        return paymentMethodDAO.getWalletBalance(id);
+    /**
+     * Current wallet balance from the ledger; users.wallet_balance may trail it.
+     */
+    public Money getWalletBalance(int id) throws SQLException {
+        return ledgerDAO.getBalance(id);
     }
 
     public void close() {
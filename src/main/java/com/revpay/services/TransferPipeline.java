@@ -0,0 +1,170 @@
+package com.revpay.services;
+
+import com.revpay.dao.AsyncDAO;
+import com.revpay.utils.LoggerUtil;
+import org.apache.logging.log4j.Logger;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stages of a transfer (sendMoney, acceptPayment) and where their time goes.
+ *
+ * A transfer runs validate, resolve, authorize, post and then its side
+ * effects. PIN checks (bcrypt, ~100 ms of CPU each) run on a pool sized to
+ * the CPU count, so concurrent transfers can't starve each other of CPU.
+ * Only the post stage touches the database inside a transaction;
+ * notifications and the audit line are written asynchronously after commit.
+ *
+ * Every stage is timed. Totals per stage are kept for the statistics screen,
+ * and each transfer logs its breakdown at debug level.
+ */
+public final class TransferPipeline {
+    private static final Logger logger = LoggerUtil.getLogger(TransferPipeline.class);
+
+    public enum Stage { VALIDATE, RESOLVE, AUTHORIZE, POST, SIDE_EFFECTS }
+
+    private static final ExecutorService authorizers = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "pin-verify-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final Map<Stage, StageStats> stats = new EnumMap<>(Stage.class);
+    static {
+        for (Stage stage : Stage.values()) {
+            stats.put(stage, new StageStats());
+        }
+    }
+
+    private static final class StageStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Post-commit work; runs off the caller's thread.
+     */
+    @FunctionalInterface
+    public interface SideEffect {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Stage timings of one transfer. {@link #mark} closes the current stage;
+     * {@link #pause} drops time that belongs to no stage, such as waiting
+     * for the user to type a PIN.
+     */
+    public static final class Timer {
+        private final String operation;
+        private final long[] nanos = new long[Stage.values().length];
+        private long stageStart = System.nanoTime();
+
+        private Timer(String operation) {
+            this.operation = operation;
+        }
+
+        public void mark(Stage stage) {
+            long now = System.nanoTime();
+            record(stage, now - stageStart);
+            stageStart = now;
+        }
+
+        private void record(Stage stage, long elapsed) {
+            nanos[stage.ordinal()] += elapsed;
+            stats.get(stage).record(elapsed);
+        }
+
+        public void pause() {
+            stageStart = System.nanoTime();
+        }
+
+        private void log() {
+            if (logger.isDebugEnabled()) {
+                StringBuilder sb = new StringBuilder(operation).append(" stages (us):");
+                for (Stage stage : Stage.values()) {
+                    sb.append(' ').append(stage.name().toLowerCase()).append('=')
+                            .append(TimeUnit.NANOSECONDS.toMicros(nanos[stage.ordinal()]));
+                }
+                logger.debug(sb.toString());
+            }
+        }
+    }
+
+    private TransferPipeline() {}
+
+    public static Timer start(String operation) {
+        return new Timer(operation);
+    }
+
+    /**
+     * Check a PIN against its bcrypt hash on the CPU pool and wait for the
+     * answer. A null hash never matches.
+     */
+    public static boolean authorize(String pin, String pinHash) {
+        if (pinHash == null) {
+            return false;
+        }
+        try {
+            return authorizers.submit(() -> BCrypt.checkpw(pin, pinHash)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            logger.warn("PIN check failed", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Run post-commit side effects in the background. Failures are logged;
+     * the transfer itself has already committed.
+     */
+    public static void afterCommit(Timer timer, SideEffect sideEffect) {
+        long start = System.nanoTime();
+        AsyncDAO.supply(() -> {
+            sideEffect.run();
+            return null;
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("Side effects of {} failed", timer.operation, error);
+            }
+            timer.record(Stage.SIDE_EFFECTS, System.nanoTime() - start);
+            timer.log();
+        });
+    }
+
+    /**
+     * Calls, average and maximum time per stage.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Transfer stages:");
+        for (Stage stage : Stage.values()) {
+            StageStats s = stats.get(stage);
+            long count = s.count.sum();
+            sb.append("\n  ").append(stage.name().toLowerCase()).append(": calls=").append(count)
+                    .append(", avgMs=").append(count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(s.totalNanos.sum() / count))
+                    .append(", maxMs=").append(TimeUnit.NANOSECONDS.toMillis(s.maxNanos.get()));
+        }
+        return sb.toString();
+    }
+}
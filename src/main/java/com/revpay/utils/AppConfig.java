@@ -0,0 +1,365 @@
+package com.revpay.utils;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Typed, immutable view of application.properties.
+ *
+ * The file is read and validated once, on first use; every later caller gets
+ * the same snapshot. Invalid values fail fast with all problems listed instead
+ * of surfacing later as a NumberFormatException in the middle of a payment.
+ */
+public final class AppConfig {
+    private static final Logger logger = LoggerUtil.getLogger(AppConfig.class);
+    private static final String RESOURCE = "application.properties";
+
+    private static volatile AppConfig instance;
+
+    private final Properties properties;
+    private final List<String> problems = new ArrayList<>();
+
+    // Application
+    private final String appName;
+    private final String appVersion;
+    private final int maxLoginAttempts;
+
+    // Database
+    private final int poolMaxSize;
+    private final int txMaxRetries;
+    private final long txRetryBackoffMs;
+    private final long readStickyWindowMs;
+    private final boolean statsEnabled;
+    private final long slowQueryThresholdMs;
+    private final int statsTopN;
+
+    // Ledger
+    private final long ledgerCompactionIntervalMs;
+    private final long ledgerCompactionLagMs;
+    private final Map<Integer, Integer> ledgerHotAccounts;
+
+    // Idempotency keys
+    private final int idempotencyTtlHours;
+    private final int idempotencyCacheSize;
+    private final long idempotencyPurgeIntervalMs;
+    private final int idempotencyPurgeBatchSize;
+    private final int idempotencyPurgeMaxBatches;
+
+    // Account locks
+    private final int lockStripes;
+    private final long lockTimeoutMs;
+
+    // Transfer engine
+    private final boolean engineEnabled;
+    private final int engineShards;
+    private final int engineRingSize;
+    private final int engineBatchSize;
+    private final String engineWalDir;
+    private final int engineWalSizeMb;
+    private final long engineSubmitTimeoutMs;
+    private final long engineProjectorRetryMs;
+    private final long engineProjectionTimeoutMs;
+
+    // Transactions
+    private final int historyPageSize;
+    private final long searchIndexMaxDocs;
+    private final int rollupRebuildChunkUsers;
+    private final long archiveIntervalMs;
+    private final int archiveAfterDays;
+    private final int archiveBatchSize;
+    private final long archivePauseMs;
+    private final int archiveMaxBatches;
+    private final long archiveHorizonRefreshMs;
+    private final int idsNodeId;
+
+    // Security
+    private final String encryptionKey;
+    private final String encryptionIv;
+    private final int passwordMinLength;
+    private final int pinLength;
+
+    // Notifications
+    private final int notificationRetentionDays;
+    private final int batchSize;
+
+    // Business
+    private final double minLoanAmount;
+    private final double maxLoanAmount;
+    private final int invoiceDueDaysDefault;
+
+    private AppConfig(Properties source) {
+        this.properties = new Properties();
+        this.properties.putAll(source);
+
+        this.appName = properties.getProperty("app.name", "RevPay");
+        this.appVersion = properties.getProperty("app.version", "");
+        this.maxLoginAttempts = intValue("app.max.login.attempts", 5, 1);
+
+        this.poolMaxSize = intValue("db.pool.max.size", 10, 1);
+        this.txMaxRetries = intValue("db.tx.max.retries", 3, 0);
+        this.txRetryBackoffMs = longValue("db.tx.retry.backoff.ms", 50, 0);
+        this.readStickyWindowMs = longValue("db.read.sticky.window.ms", 5000, 0);
+        this.statsEnabled = booleanValue("db.stats.enabled", true);
+        this.slowQueryThresholdMs = longValue("db.slow.query.threshold.ms", 500, 0);
+        this.statsTopN = intValue("db.stats.top.n", 10, 1);
+        // ConnectionPool reads these from Properties (replicas get a copy); checked here to fail at startup
+        intValue("db.pool.min.size", 2, 0);
+        longValue("db.pool.connection.timeout.ms", 30000, 1);
+        longValue("db.pool.idle.timeout.ms", 600000, 0);
+        longValue("db.pool.max.lifetime.ms", 1800000, 0);
+        intValue("db.pool.validation.timeout.seconds", 5, 1);
+        longValue("db.pool.leak.detection.threshold.ms", 60000, 0);
+        intValue("db.statement.cache.size", 64, 0);
+        longValue("db.pool.housekeeping.interval.ms", 30000, 0);
+
+        this.ledgerCompactionIntervalMs = longValue("ledger.compaction.interval.ms", 60000, 0);
+        this.ledgerCompactionLagMs = longValue("ledger.compaction.lag.ms", 60000, 0);
+        this.ledgerHotAccounts = hotAccounts("ledger.hot.accounts",
+                intValue("ledger.hot.default.slots", 8, 1, 1024));
+
+        this.idempotencyTtlHours = intValue("idempotency.ttl.hours", 24, 1);
+        this.idempotencyCacheSize = intValue("idempotency.cache.size", 10000, 0);
+        this.idempotencyPurgeIntervalMs = longValue("idempotency.purge.interval.ms", 300000, 0);
+        this.idempotencyPurgeBatchSize = intValue("idempotency.purge.batch.size", 1000, 1);
+        this.idempotencyPurgeMaxBatches = intValue("idempotency.purge.max.batches", 10, 1);
+
+        this.lockStripes = intValue("locks.stripes", 1024, 1, 1 << 20);
+        this.lockTimeoutMs = longValue("locks.timeout.ms", 5000, 1);
+
+        this.engineEnabled = booleanValue("engine.enabled", false);
+        this.engineShards = intValue("engine.shards", 4, 1, 256);
+        this.engineRingSize = intValue("engine.ring.size", 8192, 1);
+        this.engineBatchSize = intValue("engine.batch.size", 256, 1);
+        this.engineWalDir = properties.getProperty("engine.wal.dir", "data/wal");
+        // The log is one mapped file per shard, addressed with int offsets
+        this.engineWalSizeMb = intValue("engine.wal.size.mb", 64, 1, 2047);
+        this.engineSubmitTimeoutMs = longValue("engine.submit.timeout.ms", 5000, 1);
+        this.engineProjectorRetryMs = longValue("engine.projector.retry.ms", 1000, 1);
+        this.engineProjectionTimeoutMs = longValue("engine.projection.timeout.ms", 30000, 1);
+
+        this.historyPageSize = intValue("history.page.size", 20, 1, 1000);
+        this.searchIndexMaxDocs = longValue("search.index.max.docs", 500000, 1);
+        this.rollupRebuildChunkUsers = intValue("rollup.rebuild.chunk.users", 1000, 1);
+        this.archiveIntervalMs = longValue("archive.interval.ms", 3600000, 0);
+        this.archiveAfterDays = intValue("archive.after.days", 365, 1);
+        // Each batch is bound as an IN (...) list
+        this.archiveBatchSize = intValue("archive.batch.size", 500, 1, 10000);
+        this.archivePauseMs = longValue("archive.pause.ms", 200, 0);
+        this.archiveMaxBatches = intValue("archive.max.batches", 200, 1);
+        this.archiveHorizonRefreshMs = longValue("archive.horizon.refresh.ms", 60000, 0);
+        this.idsNodeId = intValue("ids.node.id", 0, 0, IdGenerator.MAX_NODE_ID);
+
+        this.encryptionKey = properties.getProperty("encryption.aes.key", "YourSecretKey12345");
+        this.encryptionIv = properties.getProperty("encryption.aes.iv", "YourIV12345678901");
+        this.passwordMinLength = intValue("security.password.min.length", 8, 1);
+        this.pinLength = intValue("security.pin.length", 6, 1);
+
+        this.notificationRetentionDays = intValue("notification.retention.days", 30, 1);
+        this.batchSize = intValue("notification.batch.size", 100, 1);
+
+        this.minLoanAmount = doubleValue("business.min.loan.amount", 1000.00);
+        this.maxLoanAmount = doubleValue("business.max.loan.amount", 100000.00);
+        this.invoiceDueDaysDefault = intValue("business.invoice.due.days.default", 30, 0);
+
+        if (minLoanAmount > maxLoanAmount) {
+            problems.add("business.min.loan.amount is greater than business.max.loan.amount");
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid " + RESOURCE + ": " + String.join("; ", problems));
+        }
+    }
+
+    public static AppConfig get() {
+        AppConfig current = instance;
+        if (current == null) {
+            synchronized (AppConfig.class) {
+                current = instance;
+                if (current == null) {
+                    current = new AppConfig(load());
+                    instance = current;
+                    logger.debug("Configuration loaded from {}", RESOURCE);
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Properties load() {
+        try (InputStream input = AppConfig.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (input == null) {
+                logger.error("Unable to find {} file", RESOURCE);
+                throw new RuntimeException("Unable to find " + RESOURCE);
+            }
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            logger.error("Failed to load {}", RESOURCE, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int intValue(String key, int defaultValue, int min) {
+        return intValue(key, defaultValue, min, Integer.MAX_VALUE);
+    }
+
+    private int intValue(String key, int defaultValue, int min, int max) {
+        return (int) longValue(key, defaultValue, min, max);
+    }
+
+    private long longValue(String key, long defaultValue, long min) {
+        return longValue(key, defaultValue, min, Long.MAX_VALUE);
+    }
+
+    private long longValue(String key, long defaultValue, long min, long max) {
+        String raw = properties.getProperty(key);
+        if (raw == null || raw.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long value = Long.parseLong(raw.trim());
+            if (value < min) {
+                problems.add(key + " must be at least " + min);
+                return defaultValue;
+            }
+            if (value > max) {
+                problems.add(key + " must be at most " + max);
+                return defaultValue;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            problems.add(key + " is not a whole number: " + raw);
+            return defaultValue;
+        }
+    }
+
+    private boolean booleanValue(String key, boolean defaultValue) {
+        String raw = properties.getProperty(key);
+        if (raw == null || raw.trim().isEmpty()) {
+            return defaultValue;
+        }
+        String value = raw.trim();
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (!value.equalsIgnoreCase("false")) {
+            problems.add(key + " must be true or false: " + raw);
+            return defaultValue;
+        }
+        return false;
+    }
+
+    // Comma-separated id[:slots] list; slots default to defaultSlots
+    private Map<Integer, Integer> hotAccounts(String key, int defaultSlots) {
+        Map<Integer, Integer> accounts = new HashMap<>();
+        for (String item : properties.getProperty(key, "").split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            String[] parts = item.split(":");
+            try {
+                int slots = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : defaultSlots;
+                if (parts.length > 2 || slots < 1 || slots > 1024) {
+                    problems.add(key + " entry must be id or id:slots with 1-1024 slots: " + item);
+                    continue;
+                }
+                accounts.put(Integer.parseInt(parts[0].trim()), slots);
+            } catch (NumberFormatException e) {
+                problems.add(key + " entry is not id or id:slots: " + item);
+            }
+        }
+        return Collections.unmodifiableMap(accounts);
+    }
+
+    private double doubleValue(String key, double defaultValue) {
+        String raw = properties.getProperty(key);
+        if (raw == null || raw.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double value = Double.parseDouble(raw.trim());
+            if (value < 0) {
+                problems.add(key + " must not be negative");
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            problems.add(key + " is not a number: " + raw);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Raw value for settings without a typed getter (replica URLs and credentials).
+     */
+    public String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Copy of all raw settings, for components configured from Properties.
+     */
+    public Properties toProperties() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    public String getAppName() { return appName; }
+    public String getAppVersion() { return appVersion; }
+    public int getMaxLoginAttempts() { return maxLoginAttempts; }
+    public int getPoolMaxSize() { return poolMaxSize; }
+    public int getTxMaxRetries() { return txMaxRetries; }
+    public long getTxRetryBackoffMs() { return txRetryBackoffMs; }
+    public long getReadStickyWindowMs() { return readStickyWindowMs; }
+    public boolean isStatsEnabled() { return statsEnabled; }
+    public long getSlowQueryThresholdMs() { return slowQueryThresholdMs; }
+    public int getStatsTopN() { return statsTopN; }
+    public long getLedgerCompactionIntervalMs() { return ledgerCompactionIntervalMs; }
+    public long getLedgerCompactionLagMs() { return ledgerCompactionLagMs; }
+    /** Hot account id -> slot count. */
+    public Map<Integer, Integer> getLedgerHotAccounts() { return ledgerHotAccounts; }
+    public int getIdempotencyTtlHours() { return idempotencyTtlHours; }
+    public int getIdempotencyCacheSize() { return idempotencyCacheSize; }
+    public long getIdempotencyPurgeIntervalMs() { return idempotencyPurgeIntervalMs; }
+    public int getIdempotencyPurgeBatchSize() { return idempotencyPurgeBatchSize; }
+    public int getIdempotencyPurgeMaxBatches() { return idempotencyPurgeMaxBatches; }
+    public int getLockStripes() { return lockStripes; }
+    public long getLockTimeoutMs() { return lockTimeoutMs; }
+    public boolean isEngineEnabled() { return engineEnabled; }
+    public int getEngineShards() { return engineShards; }
+    public int getEngineRingSize() { return engineRingSize; }
+    public int getEngineBatchSize() { return engineBatchSize; }
+    public String getEngineWalDir() { return engineWalDir; }
+    public int getEngineWalSizeMb() { return engineWalSizeMb; }
+    public long getEngineSubmitTimeoutMs() { return engineSubmitTimeoutMs; }
+    public long getEngineProjectorRetryMs() { return engineProjectorRetryMs; }
+    public long getEngineProjectionTimeoutMs() { return engineProjectionTimeoutMs; }
+    public int getHistoryPageSize() { return historyPageSize; }
+    public long getSearchIndexMaxDocs() { return searchIndexMaxDocs; }
+    public int getRollupRebuildChunkUsers() { return rollupRebuildChunkUsers; }
+    public long getArchiveIntervalMs() { return archiveIntervalMs; }
+    public int getArchiveAfterDays() { return archiveAfterDays; }
+    public int getArchiveBatchSize() { return archiveBatchSize; }
+    public long getArchivePauseMs() { return archivePauseMs; }
+    public int getArchiveMaxBatches() { return archiveMaxBatches; }
+    public long getArchiveHorizonRefreshMs() { return archiveHorizonRefreshMs; }
+    public int getIdsNodeId() { return idsNodeId; }
+    public String getEncryptionKey() { return encryptionKey; }
+    public String getEncryptionIv() { return encryptionIv; }
+    public int getPasswordMinLength() { return passwordMinLength; }
+    public int getPinLength() { return pinLength; }
+    public int getNotificationRetentionDays() { return notificationRetentionDays; }
+    public int getBatchSize() { return batchSize; }
+    public double getMinLoanAmount() { return minLoanAmount; }
+    public double getMaxLoanAmount() { return maxLoanAmount; }
+    public int getInvoiceDueDaysDefault() { return invoiceDueDaysDefault; }
+}
@@ -0,0 +1,98 @@
+package com.revpay.utils;
+
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01 UTC,
+ * 10 bits of node id and a 12-bit sequence within the millisecond.
+ *
+ * Ids from one generator are strictly increasing, so they land at the end of
+ * the unique indexes they go into. Generation is a single CAS on the last id
+ * handed out. When a millisecond's 4096 sequence numbers run out, or the
+ * clock steps backwards, the generator keeps counting from its last id
+ * rather than waiting for the clock; it is never behind the wall clock, and
+ * only ahead of it by what it borrowed.
+ *
+ * Processes writing to the same database need distinct {@code ids.node.id}s.
+ */
+public final class IdGenerator {
+    private static final Logger logger = LoggerUtil.getLogger(IdGenerator.class);
+
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1704067200000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    // Warn when the clock steps back further than this
+    private static final long REGRESSION_WARN_MILLIS = 1000;
+
+    // Timestamp and sequence of the last id, node bits left out
+    private final AtomicLong last = new AtomicLong();
+    private final int nodeId;
+    private final LongSupplier clock;
+    // Millisecond a clock regression was last reported at, so it's reported once
+    private volatile long regressionReportedAt = -1;
+
+    private static final class Holder {
+        static final IdGenerator SHARED = new IdGenerator(
+                AppConfig.get().getIdsNodeId());
+    }
+
+    /**
+     * The generator used by the DAOs, with the node id from configuration.
+     */
+    public static IdGenerator shared() {
+        return Holder.SHARED;
+    }
+
+    public IdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * Generator reading the time from {@code clock}; for tests.
+     */
+    public IdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        while (true) {
+            long previous = last.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            long previousMillis = previous >>> SEQUENCE_BITS;
+            // A new millisecond starts its sequence at zero; otherwise count on
+            long next = now > previousMillis ? now << SEQUENCE_BITS : previous + 1;
+            if (last.compareAndSet(previous, next)) {
+                if (previousMillis - now > REGRESSION_WARN_MILLIS && regressionReportedAt != previousMillis) {
+                    regressionReportedAt = previousMillis;
+                    logger.warn("Clock moved back {} ms; ids continue from the last one issued",
+                            previousMillis - now);
+                }
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                        | (long) nodeId << SEQUENCE_BITS
+                        | (next & ((1L << SEQUENCE_BITS) - 1));
+            }
+        }
+    }
+
+    /**
+     * Next id as a string with the given prefix, e.g. {@code TXN363052711936102400}.
+     */
+    public String next(String prefix) {
+        return prefix + nextId();
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+}
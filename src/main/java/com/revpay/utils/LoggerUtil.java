@@ -78,11 +78,16 @@ public class LoggerUtil {
      * @param data Data to mask
      * @return Masked data
      */
-    private static Object maskSensitiveData(Object data) {
+    public static Object maskSensitiveData(Object data) {
         if (data == null) return null;
 
         String str = data.toString();
 
+        // Mask BCrypt hashes (passwords, PINs, security answers)
+        if (str.startsWith("$2a$") || str.startsWith("$2b$") || str.startsWith("$2y$")) {
+            return "***MASKED***";
+        }
+
         // Mask passwords
         if (str.toLowerCase().contains("password") || str.toLowerCase().contains("passwd")) {
             return "***MASKED***";
@@ -0,0 +1,48 @@
+-- Double-entry ledger for wallet balances.
+--
+-- Every money movement is one journal_entries row plus ledger_entries lines
+-- that sum to zero. User wallets use the user id as account_id; system
+-- accounts are negative (-1 external cards/banks, -2 fee revenue).
+-- A wallet balance is its snapshot plus the sum of its lines after
+-- last_entry_id. users.wallet_balance becomes a cached copy refreshed by
+-- the compaction job.
+
+CREATE TABLE journal_entries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    reference VARCHAR(50) NOT NULL,
+    description VARCHAR(255),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_journal_reference (reference)
+) ENGINE=InnoDB;
+
+CREATE TABLE ledger_entries (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    journal_entry_id BIGINT NOT NULL,
+    account_id INT NOT NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_ledger_account (account_id, id),
+    INDEX idx_ledger_created (created_at),
+    FOREIGN KEY (journal_entry_id) REFERENCES journal_entries(id)
+) ENGINE=InnoDB;
+
+CREATE TABLE ledger_balance_snapshots (
+    account_id INT PRIMARY KEY,
+    balance DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    last_entry_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
+
+ALTER TABLE transactions ADD COLUMN journal_entry_id BIGINT NULL,
+    ADD INDEX idx_transactions_journal (journal_entry_id);
+
+-- Opening balances: current wallets, offset by the external account so the
+-- ledger as a whole sums to zero
+INSERT INTO ledger_balance_snapshots (account_id, balance, last_entry_id)
+SELECT id, wallet_balance, 0 FROM users;
+
+INSERT INTO ledger_balance_snapshots (account_id, balance, last_entry_id)
+SELECT -1, -COALESCE(SUM(wallet_balance), 0), 0 FROM users;
+
+INSERT INTO ledger_balance_snapshots (account_id, balance, last_entry_id)
+VALUES (-2, 0, 0);
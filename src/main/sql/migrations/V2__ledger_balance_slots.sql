@@ -0,0 +1,16 @@
+-- Balance slots for hot accounts.
+--
+-- A hot account (ledger.hot.accounts) keeps its balance in several
+-- snapshot rows, one per slot, so concurrent debits lock different rows.
+-- Every other account only ever uses slot 0, so existing rows keep their
+-- meaning. An account's balance is the sum over its slots.
+
+ALTER TABLE ledger_entries
+    ADD COLUMN slot SMALLINT NOT NULL DEFAULT 0 AFTER account_id,
+    DROP INDEX idx_ledger_account,
+    ADD INDEX idx_ledger_account_slot (account_id, slot, id);
+
+ALTER TABLE ledger_balance_snapshots
+    ADD COLUMN slot SMALLINT NOT NULL DEFAULT 0 AFTER account_id,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (account_id, slot);
@@ -0,0 +1,15 @@
+-- Idempotency keys for sendMoney, acceptPayment, addMoneyToWallet and
+-- withdrawFromWallet. A key is claimed in the same transaction that moves
+-- the money; the primary key makes a concurrent retry wait and then fail.
+-- Expired rows are purged in batches through idx_idempotency_expires.
+
+CREATE TABLE idempotency_keys (
+    user_id INT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    transaction_id VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, idempotency_key),
+    INDEX idx_idempotency_expires (expires_at)
+) ENGINE=InnoDB;
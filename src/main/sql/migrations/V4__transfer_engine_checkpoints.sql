@@ -0,0 +1,9 @@
+-- Transfer engine: the last write-ahead log record of each shard that has
+-- been written to the ledger and transactions tables. Updated in the same
+-- transaction as those rows; recovery replays log records past it.
+
+CREATE TABLE transfer_engine_checkpoints (
+    shard INT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
@@ -0,0 +1,9 @@
+-- Per-party indexes for transaction history. TransactionDAO reads a user's
+-- history as a UNION ALL of the rows they sent and the rows they received;
+-- each half is a range scan on one of these, already in created_at order.
+-- InnoDB appends the primary key, so (created_at, id) cursors and ties are
+-- covered too. The sender index also serves getTotalSentAmount and the
+-- receiver index getTotalReceivedAmount.
+
+CREATE INDEX idx_transactions_sender_created ON transactions (sender_id, created_at);
+CREATE INDEX idx_transactions_receiver_created ON transactions (receiver_id, created_at);
@@ -0,0 +1,16 @@
+-- Per-user daily totals of transactions, kept by TransactionDAO in the same
+-- transaction as the rows they summarize. A transaction counts once per
+-- party: SENT for the sender, RECEIVED for the receiver, or one SELF row when
+-- both are the same user. Populate it after applying this script with:
+--   mvn compile exec:java -Dexec.mainClass=com.revpay.Main -Dexec.args=--rebuild-rollups
+
+CREATE TABLE transaction_daily_rollup (
+    user_id INT NOT NULL,
+    day DATE NOT NULL,
+    direction VARCHAR(8) NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    txn_count BIGINT NOT NULL,
+    amount_sum DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (user_id, day, direction, transaction_type, status)
+) ENGINE=InnoDB;
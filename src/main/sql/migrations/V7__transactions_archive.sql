@@ -0,0 +1,41 @@
+-- Cold storage for old transactions. TransactionArchiveDAO moves COMPLETED
+-- rows older than archive.after.days here in small batches; TransactionDAO
+-- reads through to this table whenever a query reaches back far enough.
+-- Rows keep their id, so (created_at, id) cursors work across both tables,
+-- and their transaction_daily_rollup rows stay where they are.
+--
+-- The table is compressed and partitioned by month. Only p_future exists at
+-- first; the archiver splits a pYYYYMM partition off it for each month
+-- before moving that month's rows. MySQL wants the partitioning column in
+-- every unique key, so the primary key is (id, created_at) and
+-- transaction_id is indexed but not declared unique (it was unique when the
+-- row was live). Partitioned tables can't have foreign keys.
+
+CREATE TABLE transactions_archive (
+    id INT NOT NULL,
+    transaction_id VARCHAR(50) NOT NULL,
+    sender_id INT NOT NULL,
+    receiver_id INT NOT NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    transaction_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    description TEXT,
+    payment_method_id INT,
+    transaction_fee DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    is_recurring BOOLEAN NOT NULL DEFAULT FALSE,
+    recurring_frequency VARCHAR(20),
+    invoice_id INT,
+    created_at TIMESTAMP NOT NULL,
+    journal_entry_id BIGINT,
+    PRIMARY KEY (id, created_at),
+    INDEX idx_archive_transaction_id (transaction_id),
+    INDEX idx_archive_sender_created (sender_id, created_at),
+    INDEX idx_archive_receiver_created (receiver_id, created_at),
+    INDEX idx_archive_created (created_at)
+) ENGINE=InnoDB ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8
+PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- Lets the archiver find the oldest COMPLETED rows without a table scan
+CREATE INDEX idx_transactions_status_created ON transactions (status, created_at);
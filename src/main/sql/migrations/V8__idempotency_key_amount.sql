@@ -0,0 +1,6 @@
+-- The amount a key was first used for, next to its operation, so a retry
+-- with the same key but a different operation or amount is rejected instead
+-- of being answered with the earlier transaction. Rows from before this
+-- migration have no amount; IdempotencyDAO falls back to their transaction's.
+
+ALTER TABLE idempotency_keys ADD COLUMN amount DECIMAL(15, 2) NULL AFTER operation;
@@ -0,0 +1,25 @@
+-- Compaction marks each ledger line it folds instead of keeping a
+-- last_entry_id high-water mark per snapshot. Ids are assigned at insert,
+-- not at commit, so a posting that commits late can have an id below lines
+-- already folded; with the mark moved past it, nothing would ever count it.
+-- A balance is now its snapshots plus the account's unfolded lines.
+--
+-- Lines at or below the old mark were folded already. A line that committed
+-- after the mark had passed it was never counted before this migration
+-- either; it is marked folded too, so balances don't change here.
+
+ALTER TABLE ledger_entries
+    ADD COLUMN folded BOOLEAN NOT NULL DEFAULT FALSE AFTER amount;
+
+UPDATE ledger_entries e
+JOIN ledger_balance_snapshots s ON s.account_id = e.account_id AND s.slot = e.slot
+SET e.folded = TRUE
+WHERE e.id <= s.last_entry_id;
+
+-- Balance reads scan an account's unfolded lines; compaction scans all unfolded lines in id order
+ALTER TABLE ledger_entries
+    DROP INDEX idx_ledger_account_slot,
+    ADD INDEX idx_ledger_account_slot_folded (account_id, slot, folded),
+    ADD INDEX idx_ledger_folded (folded, id);
+
+ALTER TABLE ledger_balance_snapshots DROP COLUMN last_entry_id;
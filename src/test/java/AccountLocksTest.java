@@ -0,0 +1,155 @@
+import com.revpay.services.AccountLocks;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountLocksTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+    private static final int ACCOUNTS = 32;
+
+    // Lock the given accounts on another thread and keep them until released
+    private static Thread holdOnOtherThread(AccountLocks locks, CountDownLatch release, int... userIds)
+            throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (AccountLocks.Held held = locks.lock(userIds)) {
+                locked.countDown();
+                release.await();
+            } catch (SQLException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS), "Holder should get its locks");
+        return holder;
+    }
+
+    @Test
+    void testOppositeOrderTransfersDoNotDeadlock() throws Exception {
+        System.out.println("Testing transfers locking the same accounts in opposite orders...");
+
+        // Few stripes, so most transfers share stripes with each other
+        AccountLocks locks = new AccountLocks(4, TimeUnit.SECONDS.toMillis(30));
+        long[] balances = new long[ACCOUNTS];
+        Arrays.fill(balances, 1_000);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] workers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                workers[t] = pool.submit(() -> {
+                    Random random = new Random(seed);
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int from = random.nextInt(ACCOUNTS);
+                        int to = random.nextInt(ACCOUNTS);
+                        // Half the threads name the payee first
+                        try (AccountLocks.Held held = seed % 2 == 0 ? locks.lock(from, to) : locks.lock(to, from)) {
+                            // Unsynchronized read-modify-write: only correct under the locks
+                            balances[from] -= 1;
+                            balances[to] += 1;
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        assertEquals(ACCOUNTS * 1_000L, total, "No update should be lost");
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, locks.getAcquisitions());
+        assertEquals(0, locks.getTimeouts());
+        System.out.println("✓ " + locks);
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        AccountLocks locks = new AccountLocks(1024, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOnOtherThread(locks, release, 7);
+        try {
+            long start = System.nanoTime();
+            SQLException e = assertThrows(SQLException.class, () -> locks.lock(7));
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(e.getMessage().contains("Timed out"), e.getMessage());
+            assertTrue(waitedMs >= 90 && waitedMs < 5_000, "Should give up after about 100 ms, took " + waitedMs);
+            assertEquals(1, locks.getTimeouts());
+            assertEquals(1, locks.getContended());
+        } finally {
+            release.countDown();
+            holder.join(5_000);
+        }
+
+        // Free again once the holder is done
+        try (AccountLocks.Held held = locks.lock(7)) {
+            assertEquals(2, locks.getAcquisitions());
+        }
+    }
+
+    @Test
+    void testTimeoutReleasesStripesAlreadyTaken() throws Exception {
+        AccountLocks locks = new AccountLocks(1024, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOnOtherThread(locks, release, 2);
+        try {
+            assertThrows(SQLException.class, () -> locks.lock(1, 2));
+
+            // Account 1's stripe must not stay locked by the failed attempt
+            CountDownLatch done = new CountDownLatch(0);
+            holdOnOtherThread(locks, done, 1).join(5_000);
+        } finally {
+            release.countDown();
+            holder.join(5_000);
+        }
+    }
+
+    @Test
+    void testSameAccountTwice() throws Exception {
+        AccountLocks locks = new AccountLocks(1, 100);
+        // One stripe: every id shares it, and it is taken once
+        try (AccountLocks.Held held = locks.lock(3, 3, 4)) {
+            assertEquals(1, locks.getAcquisitions());
+        }
+        // Fully released: another thread gets it at once
+        holdOnOtherThread(locks, new CountDownLatch(0), 4).join(5_000);
+        assertEquals(2, locks.getAcquisitions());
+        assertEquals(0, locks.getContended());
+    }
+
+    @Test
+    void testInterruptedWhileWaiting() throws Exception {
+        AccountLocks locks = new AccountLocks(16, TimeUnit.SECONDS.toMillis(30));
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = holdOnOtherThread(locks, release, 9);
+        try {
+            Thread.currentThread().interrupt();
+            SQLException e = assertThrows(SQLException.class, () -> locks.lock(9));
+            assertTrue(Thread.interrupted(), "Interrupt status should be kept");
+            assertInstanceOf(InterruptedException.class, e.getCause());
+        } finally {
+            release.countDown();
+            holder.join(5_000);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import com.revpay.utils.IdGenerator;
+import org.junit.jupiter.api.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void testUniqueAcrossThreads() throws Exception {
+        System.out.println("Testing id uniqueness across threads...");
+
+        IdGenerator generator = new IdGenerator(7);
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] workers = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                workers[t] = pool.submit(() -> {
+                    start.await();
+                    long previous = Long.MIN_VALUE;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = generator.nextId();
+                        assertTrue(id > previous, "Ids seen by one thread should increase");
+                        previous = id;
+                        ids.add(id);
+                    }
+                    return null;
+                });
+            }
+
+            long began = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+            long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began));
+
+            assertEquals(THREADS * IDS_PER_THREAD, ids.size(), "Every id should be unique");
+            System.out.println("✓ " + ids.size() + " unique ids in " + elapsedMs + " ms ("
+                    + (ids.size() * 1000L / elapsedMs) + " ids/s)");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testMonotonicWhenClockMovesBack() {
+        System.out.println("Testing ids across a clock regression...");
+
+        AtomicLong now = new AtomicLong(IdGenerator.EPOCH_MILLIS + 1_000_000);
+        IdGenerator generator = new IdGenerator(1, now::get);
+
+        long before = generator.nextId();
+        now.addAndGet(-5_000);
+        long during = generator.nextId();
+        now.addAndGet(10_000);
+        long after = generator.nextId();
+
+        assertTrue(during > before, "Ids should keep increasing while the clock is behind");
+        assertTrue(after > during, "Ids should keep increasing once the clock catches up");
+        System.out.println("✓ Ids stay ordered across a 5 s clock step back");
+    }
+
+    @Test
+    void testSequenceOverflowBorrowsNextMillisecond() {
+        System.out.println("Testing more than 4096 ids within one millisecond...");
+
+        IdGenerator generator = new IdGenerator(0, () -> IdGenerator.EPOCH_MILLIS + 42);
+        long previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "Ids should increase past the end of a millisecond's sequence");
+            previous = id;
+        }
+        System.out.println("✓ Sequence overflow carries into the timestamp");
+    }
+
+    @Test
+    void testPrefixAndNodeId() {
+        IdGenerator generator = new IdGenerator(IdGenerator.MAX_NODE_ID);
+        String id = generator.next("TXN");
+
+        assertTrue(id.startsWith("TXN"), "Prefix should be kept");
+        long value = Long.parseLong(id.substring(3));
+        assertEquals(IdGenerator.MAX_NODE_ID, (value >>> 12) & IdGenerator.MAX_NODE_ID, "Node id should be encoded");
+        assertTrue(id.length() <= 50, "Id should fit the VARCHAR(50) id columns");
+
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE_ID + 1));
+    }
+}
@@ -0,0 +1,120 @@
+import com.revpay.models.Money;
+import org.junit.jupiter.api.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void testParse() {
+        assertEquals(1200, Money.parse("12").getCents());
+        assertEquals(1250, Money.parse("12.5").getCents());
+        assertEquals(1205, Money.parse("12.05").getCents());
+        assertEquals(123456, Money.parse("$1,234.56").getCents());
+        assertEquals(-310, Money.parse("-3.10").getCents());
+        assertEquals(-310, Money.parse("-$3.10").getCents());
+        assertEquals(50, Money.parse(".5").getCents());
+        assertEquals(700, Money.parse(" 7. ").getCents());
+        assertEquals(0, Money.parse("0.00").getCents());
+    }
+
+    @Test
+    void testParseRejectsBadInput() {
+        for (String text : new String[]{"", " ", "-", "$", ".", "abc", "1.234", "1.2.3", "--1", "1e3", "+5", "1 000"}) {
+            assertThrows(NumberFormatException.class, () -> Money.parse(text), "Should reject \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void testParseRejectsOverflow() {
+        // Fits a long as dollars but not as cents
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("100000000000000000"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07").getCents());
+    }
+
+    @Test
+    void testRounding() {
+        assertEquals(101, Money.of(1.005).getCents(), "Doubles round as the decimal they print as");
+        assertEquals(100, Money.of(1.004).getCents());
+        assertEquals(-101, Money.of(-1.005).getCents(), "Half up rounds away from zero");
+        assertEquals(30, Money.of(0.1 + 0.2).getCents());
+        assertEquals(1235, Money.of(new BigDecimal("12.345")).getCents());
+        assertEquals(1234, Money.of(new BigDecimal("12.3449")).getCents());
+        assertEquals(Money.ZERO, Money.of((BigDecimal) null));
+
+        // 1.5% of $10.00 is 15 cents; of $0.33 it is 0.495 cents, which rounds to 0
+        assertEquals(15, Money.parse("10").percentOf(150).getCents());
+        assertEquals(0, Money.parse("0.33").percentOf(150).getCents());
+        assertEquals(1, Money.parse("0.34").percentOf(150).getCents());
+        assertEquals(-1, Money.parse("-0.34").percentOf(150).getCents());
+    }
+
+    @Test
+    void testArithmetic() {
+        Money a = Money.parse("10.25");
+        Money b = Money.parse("0.75");
+        assertEquals(Money.parse("11"), a.plus(b));
+        assertEquals(Money.parse("9.50"), a.minus(b));
+        assertEquals(Money.parse("-10.25"), a.negate());
+        assertEquals(Money.parse("30.75"), a.times(3));
+        assertSame(a, a.plus(Money.ZERO));
+        assertSame(a, a.minus(Money.ZERO));
+    }
+
+    @Test
+    void testOverflow() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+        Money min = Money.ofCents(Long.MIN_VALUE);
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> min.minus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> max.times(2));
+        assertThrows(ArithmeticException.class, () -> max.percentOf(150));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1E+20")));
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("12.50", Money.parse("12.5").toString());
+        assertEquals("0.05", Money.ofCents(5).toString());
+        assertEquals("-1234.05", Money.parse("-1234.05").toString());
+        assertEquals("$12.50", Money.parse("12.5").format());
+        assertEquals("-$3.00", Money.parse("-3").format());
+        assertEquals("$0.00", Money.ZERO.format());
+        assertEquals("total=7.10", Money.parse("7.1").appendTo(new StringBuilder("total=")).toString());
+        assertEquals(new BigDecimal("7.10"), Money.parse("7.1").toBigDecimal());
+        assertEquals(7.1, Money.parse("7.1").toDouble());
+    }
+
+    @Test
+    void testComparisons() {
+        Money small = Money.parse("1.99");
+        Money large = Money.parse("2");
+        assertTrue(small.isLessThan(large));
+        assertFalse(large.isLessThan(small));
+        assertTrue(large.isGreaterThan(small));
+        assertFalse(small.isLessThan(Money.parse("1.99")));
+        assertTrue(small.compareTo(large) < 0);
+        assertEquals(0, large.compareTo(Money.ofCents(200)));
+
+        assertTrue(Money.ZERO.isZero());
+        assertTrue(Money.parse("-0.01").isNegative());
+        assertTrue(Money.parse("0.01").isPositive());
+        assertFalse(Money.ZERO.isPositive() || Money.ZERO.isNegative());
+
+        assertEquals(Money.ofCents(12345), Money.parse("123.45"));
+        assertEquals(Money.ofCents(12345).hashCode(), Money.parse("123.45").hashCode());
+        assertNotEquals(Money.ofCents(1), Money.ofCents(2));
+        assertNotEquals(Money.ofCents(100), 100L);
+
+        List<Money> amounts = new ArrayList<>(List.of(large, Money.ZERO, small, Money.parse("-5")));
+        Collections.sort(amounts);
+        assertEquals(List.of(Money.parse("-5"), Money.ZERO, small, large), amounts);
+    }
+}
@@ -0,0 +1,116 @@
+import com.revpay.models.Money;
+import com.revpay.models.Transaction;
+import com.revpay.models.TransactionPage;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionPageTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 3, 15, 12, 0);
+
+    // Newest first, as getTransactionsPage orders them
+    private static final Comparator<Transaction> NEWEST_FIRST =
+            Comparator.comparing(Transaction::getCreatedAt).thenComparingInt(Transaction::getId).reversed();
+
+    private static Transaction row(int id, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction("TXN" + id, 1, 2, Money.ofCents(100), "SEND");
+        transaction.setId(id);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+
+    // What the query returns: rows strictly before the cursor, newest first, at most pageSize + 1
+    private static List<Transaction> query(List<Transaction> history, TransactionPage.Cursor after, int pageSize) {
+        List<Transaction> rows = new ArrayList<>();
+        for (Transaction t : history) {
+            if (after == null || t.getCreatedAt().isBefore(after.createdAt())
+                    || (t.getCreatedAt().equals(after.createdAt()) && t.getId() < after.id())) {
+                rows.add(t);
+            }
+        }
+        rows.sort(NEWEST_FIRST);
+        return new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize + 1)));
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        TransactionPage.Cursor cursor = new TransactionPage.Cursor(NOON.withNano(123_456_000), 42);
+        assertEquals(cursor, TransactionPage.Cursor.decode(cursor.encode()));
+
+        TransactionPage.Cursor midnight = new TransactionPage.Cursor(LocalDateTime.of(2024, 1, 1, 0, 0), 7);
+        assertEquals(midnight, TransactionPage.Cursor.decode(midnight.encode()));
+    }
+
+    @Test
+    void testMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> TransactionPage.Cursor.decode("no separator"));
+        assertThrows(RuntimeException.class, () -> TransactionPage.Cursor.decode("yesterday|5"));
+        assertThrows(NumberFormatException.class, () -> TransactionPage.Cursor.decode(NOON + "|five"));
+    }
+
+    @Test
+    void testPageBoundaries() {
+        List<Transaction> rows = List.of(row(3, NOON), row(2, NOON), row(1, NOON));
+
+        TransactionPage shorter = TransactionPage.fromRows(rows, 5);
+        assertEquals(3, shorter.getTransactions().size());
+        assertFalse(shorter.hasMore(), "Fewer rows than a page is the last page");
+
+        TransactionPage exact = TransactionPage.fromRows(rows, 3);
+        assertEquals(3, exact.getTransactions().size());
+        assertFalse(exact.hasMore(), "Exactly a page with no extra row is the last page");
+
+        TransactionPage more = TransactionPage.fromRows(rows, 2);
+        assertEquals(2, more.getTransactions().size(), "The extra row is not part of the page");
+        assertTrue(more.hasMore());
+        assertEquals(new TransactionPage.Cursor(NOON, 2), more.getNextCursor(), "Cursor points at the last row kept");
+
+        TransactionPage empty = TransactionPage.fromRows(List.of(), 10);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.hasMore());
+    }
+
+    @Test
+    void testWalkAcrossPagesWithTies() {
+        // Several rows per timestamp, so pages have to split ties on id
+        List<Transaction> history = new ArrayList<>();
+        int id = 1;
+        for (int minute = 0; minute < 10; minute++) {
+            for (int i = 0; i < 3; i++) {
+                history.add(row(id++, NOON.plusMinutes(minute)));
+            }
+        }
+
+        for (int pageSize = 1; pageSize <= history.size() + 1; pageSize++) {
+            Set<Integer> seen = new HashSet<>();
+            List<Transaction> walked = new ArrayList<>();
+            TransactionPage.Cursor cursor = null;
+            int pages = 0;
+            do {
+                // Through the string form, as a client would hand it back
+                TransactionPage.Cursor after = cursor == null ? null : TransactionPage.Cursor.decode(cursor.encode());
+                TransactionPage page = TransactionPage.fromRows(query(history, after, pageSize), pageSize);
+                for (Transaction t : page.getTransactions()) {
+                    assertTrue(seen.add(t.getId()), "Row " + t.getId() + " repeated with page size " + pageSize);
+                    walked.add(t);
+                }
+                cursor = page.getNextCursor();
+                pages++;
+            } while (cursor != null);
+
+            List<Transaction> expected = new ArrayList<>(history);
+            expected.sort(NEWEST_FIRST);
+            assertEquals(expected, walked, "Every row once, newest first, with page size " + pageSize);
+            // The extra row means an exact multiple needs no trailing empty page
+            assertEquals((history.size() + pageSize - 1) / pageSize, pages, "Page count with page size " + pageSize);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import com.revpay.dao.TransactionSearchIndex;
+import com.revpay.dao.TransactionSearchIndex.Entry;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSearchIndexTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+    private static final int CAROL = 3;
+
+    // What the database holds, oldest first per user
+    private Map<Integer, List<Entry>> rows;
+    private Map<Integer, Integer> loads;
+    private TransactionSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        rows = new HashMap<>();
+        loads = new HashMap<>();
+        index = newIndex(1000);
+
+        save("TXN100", "Coffee beans", ALICE, BOB, "alice", "bob_smith");
+        save("TXN101", "Rent for March", ALICE, CAROL, "alice", "carol");
+        save("TXN102", null, BOB, ALICE, "bob_smith", "alice");
+        save("TXN203", "Concert TICKETS", ALICE, BOB, "alice", "bob_smith");
+    }
+
+    private TransactionSearchIndex newIndex(long maxDocs) {
+        return new TransactionSearchIndex((userId, handler) -> {
+            loads.merge(userId, 1, Integer::sum);
+            for (Entry entry : rows.getOrDefault(userId, List.of())) {
+                handler.handle(entry);
+            }
+        }, maxDocs);
+    }
+
+    // Store a transaction in the fake database as both parties see it
+    private void save(String transactionId, String description, int senderId, int receiverId,
+                      String senderName, String receiverName) {
+        rows.computeIfAbsent(senderId, k -> new ArrayList<>())
+                .add(new Entry(transactionId, description, receiverId, receiverName));
+        rows.computeIfAbsent(receiverId, k -> new ArrayList<>())
+                .add(new Entry(transactionId, description, senderId, senderName));
+    }
+
+    @Test
+    void testSubstringMatchesAnyField() throws Exception {
+        assertEquals(List.of("TXN100"), index.search(ALICE, "coffee"), "Description");
+        assertEquals(List.of("TXN101"), index.search(ALICE, "carol"), "Counterparty username");
+        assertEquals(List.of("TXN203"), index.search(ALICE, "txn2"), "Transaction id");
+        assertEquals(List.of("TXN101"), index.search(ALICE, "for mar"), "Inside a description, across a space");
+        assertEquals(List.of(), index.search(ALICE, "groceries"));
+    }
+
+    @Test
+    void testCaseInsensitiveNewestFirst() throws Exception {
+        assertEquals(List.of("TXN203"), index.search(ALICE, "tickets"));
+        assertEquals(List.of("TXN203"), index.search(ALICE, "TiCkEtS"));
+        assertEquals(List.of("TXN203", "TXN102", "TXN100"), index.search(ALICE, "BOB_s"),
+                "Every transaction with Bob, newest first");
+        assertEquals(List.of("TXN203", "TXN102", "TXN101", "TXN100"), index.search(ALICE, "txn"));
+    }
+
+    @Test
+    void testTrigramsMustAppearInOrder() throws Exception {
+        // Holds the trigrams "abc" and "bcd" but not "abcd"
+        save("TXN300", "abc bcd", ALICE, BOB, "alice", "bob_smith");
+        assertEquals(List.of(), index.search(ALICE, "abcd"));
+        assertEquals(List.of("TXN300"), index.search(ALICE, "abc bcd"));
+    }
+
+    @Test
+    void testMatchDoesNotSpanFields() throws Exception {
+        // Description ends in "beans", username starts with "bob"
+        assertEquals(List.of(), index.search(ALICE, "beansbob"));
+        assertEquals(List.of(), index.search(ALICE, "100coffee"));
+    }
+
+    @Test
+    void testShortTerms() throws Exception {
+        assertEquals(List.of("TXN101"), index.search(ALICE, "ca"));
+        assertEquals(List.of("TXN203", "TXN100"), index.search(ALICE, "co"), "\"Concert\" and \"Coffee\"");
+        assertEquals(List.of("TXN102", "TXN101", "TXN100"), index.search(ALICE, "1"));
+        assertEquals(List.of(), index.search(ALICE, "zq"));
+    }
+
+    @Test
+    void testOnlyOwnTransactions() throws Exception {
+        assertEquals(List.of(), index.search(CAROL, "coffee"), "Carol wasn't party to the coffee payment");
+        assertEquals(List.of("TXN101"), index.search(CAROL, "rent"));
+    }
+
+    @Test
+    void testOnCreatedUpdatesLoadedIndexes() throws Exception {
+        index.search(ALICE, "anything");
+        assertEquals(1, loads.get(ALICE));
+
+        save("TXN400", "Birthday gift", ALICE, BOB, "alice", "bob_smith");
+        index.onCreated("TXN400", "Birthday gift", ALICE, BOB);
+
+        assertEquals(List.of("TXN400"), index.search(ALICE, "birthday"));
+        assertEquals(List.of("TXN400", "TXN203", "TXN102", "TXN100"), index.search(ALICE, "bob"),
+                "New transactions come first");
+        assertEquals(1, loads.get(ALICE), "Kept current without a reload");
+        assertNull(loads.get(BOB), "Bob hasn't searched, so nothing is built for him");
+
+        // Bob's first search reads the row from the database
+        assertEquals(List.of("TXN400"), index.search(BOB, "birthday"));
+    }
+
+    @Test
+    void testUnknownCounterpartyRebuilds() throws Exception {
+        index.search(CAROL, "rent");
+
+        // Carol has never dealt with Bob, so her index doesn't know his username
+        save("TXN500", "Dinner", BOB, CAROL, "bob_smith", "carol");
+        index.onCreated("TXN500", "Dinner", BOB, CAROL);
+
+        assertEquals(List.of("TXN500"), index.search(CAROL, "bob_smith"));
+        assertEquals(2, loads.get(CAROL), "Dropped and rebuilt on the next search");
+    }
+
+    @Test
+    void testEvictsLeastRecentlySearched() throws Exception {
+        // Alice has 4 transactions, Bob 3 and Carol 1
+        TransactionSearchIndex small = newIndex(5);
+        small.search(ALICE, "txn");
+        small.search(CAROL, "txn");
+        small.search(BOB, "txn");
+        assertTrue(small.toString().contains("evictions=1"), small.toString());
+
+        // Carol was searched after Alice, so she is still loaded
+        small.search(CAROL, "rent");
+        assertEquals(1, loads.get(CAROL));
+        assertEquals(List.of("TXN203", "TXN102", "TXN101", "TXN100"), small.search(ALICE, "txn"));
+        assertEquals(2, loads.get(ALICE), "Alice was evicted and is rebuilt");
+    }
+}